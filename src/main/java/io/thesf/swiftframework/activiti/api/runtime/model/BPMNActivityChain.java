@@ -1,61 +1,100 @@
-/* Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package io.thesf.swiftframework.activiti.api.runtime.model;
-
-import org.activiti.api.process.model.BPMNActivity;
-
-import java.util.List;
-
-/**
- * Chain for {@link BPMNActivity}.
- *
- * @author VirtualCry
- */
-public interface BPMNActivityChain extends List<BPMNActivity>  {
-
-    /**
-     * Get last activity.
-     *
-     * @return The {@link BPMNActivity}.
-     */
-    BPMNActivity getLastActivity();
-
-
-    /**
-     * Get index of the second last task.
-     *
-     * @return index
-     */
-    int getSecondLastTaskIndex();
-
-
-    /**
-     * Get the second last task.
-     *
-     * @return The {@link BPMNActivity}.
-     */
-    BPMNActivity getSecondLastTask();
-
-
-    /**
-     * Returns a chain that is a substring of this chain. The
-     * sub chain begins at the specified {@code beginIndex} and
-     * extends to the chain at index {@code endIndex}.
-     * Thus the length of the sub chain is {@code endIndex - beginIndex + 1}.
-     *
-     * @param beginIndex    the beginning index, inclusive.
-     * @param endIndex      the ending index, inclusive.
-     * @return A new {@link BPMNActivityChain}.
-     */
-    BPMNActivityChain subActivityChain(int beginIndex, int endIndex);
-}
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.api.runtime.model;
+
+import org.activiti.api.process.model.BPMNActivity;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Chain for {@link BPMNActivity}.
+ *
+ * @author VirtualCry
+ */
+public interface BPMNActivityChain extends List<BPMNActivity>  {
+
+    /**
+     * Get last activity.
+     *
+     * @return The {@link BPMNActivity}.
+     */
+    BPMNActivity getLastActivity();
+
+
+    /**
+     * Get index of the second last task.
+     *
+     * @return index
+     */
+    int getSecondLastTaskIndex();
+
+
+    /**
+     * Get index of the second last task, judging tasks with the predicate.
+     *
+     * @param taskPredicate predicate to judge if the activity is a task
+     * @return index
+     */
+    int getSecondLastTaskIndex(Predicate<BPMNActivity> taskPredicate);
+
+
+    /**
+     * Get index of the n-th last task, judging tasks with the predicate. The last activity is counted if it is a task.
+     *
+     * @param n             n, 1 for the last task
+     * @param taskPredicate predicate to judge if the activity is a task
+     * @return index, -1 if there are fewer tasks.
+     */
+    int getLastTaskIndex(int n, Predicate<BPMNActivity> taskPredicate);
+
+
+    /**
+     * Get index of the last task of the element before the last activity, judging tasks with the predicate.
+     *
+     * @param elementId     elementId
+     * @param taskPredicate predicate to judge if the activity is a task
+     * @return index, -1 if not found.
+     */
+    int getLastTaskIndex(String elementId, Predicate<BPMNActivity> taskPredicate);
+
+
+    /**
+     * Get the second last task.
+     *
+     * @return The {@link BPMNActivity}.
+     */
+    BPMNActivity getSecondLastTask();
+
+
+    /**
+     * Get the second last task, judging tasks with the predicate.
+     *
+     * @param taskPredicate predicate to judge if the activity is a task
+     * @return The {@link BPMNActivity}.
+     */
+    BPMNActivity getSecondLastTask(Predicate<BPMNActivity> taskPredicate);
+
+
+    /**
+     * Returns a chain that is a substring of this chain. The
+     * sub chain begins at the specified {@code beginIndex} and
+     * extends to the chain at index {@code endIndex}.
+     * Thus the length of the sub chain is {@code endIndex - beginIndex + 1}.
+     *
+     * @param beginIndex    the beginning index, inclusive.
+     * @param endIndex      the ending index, inclusive.
+     * @return A new {@link BPMNActivityChain}.
+     */
+    BPMNActivityChain subActivityChain(int beginIndex, int endIndex);
+}
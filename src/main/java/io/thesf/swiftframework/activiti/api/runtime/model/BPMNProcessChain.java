@@ -1,170 +1,231 @@
-/* Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package io.thesf.swiftframework.activiti.api.runtime.model;
-
-import org.activiti.api.process.model.BPMNActivity;
-
-import java.util.Collection;
-import java.util.Map;
-import java.util.Set;
-
-/**
- * Chain for {@link BPMNActivityChain}.
- *
- * @author VirtualCry
- */
-public interface BPMNProcessChain {
-
-    /**
-     * Get activity chains which are running.
-     *
-     * @return The {@link Set<BPMNActivityChain>}.
-     */
-    Set<BPMNActivityChain> getRunningActivityChains();
-
-
-    /**
-     * Get activity chains which are not running.
-     *
-     * @return The {@link Set<BPMNActivityChain>}.
-     */
-    Set<BPMNActivityChain> getHistoricActivityChains();
-
-
-    /**
-     * Get suspended activity counter.
-     *
-     * @return The counter.
-     */
-    Map<String, Integer> getSuspendedActivityCounter();
-
-
-    /**
-     * Suspend activity.
-     *
-     * @param activity  activity
-     */
-    void suspend(BPMNActivity activity);
-
-
-    /**
-     * Judge if the activity is suspended.
-     *
-     * @param activity  activity
-     * @return result
-     */
-    boolean isSuspended(BPMNActivity activity);
-
-
-    /**
-     * Get the number of suspended activity.
-     *
-     * @param activity  activity
-     * @return count
-     */
-    int getSuspendedCount(BPMNActivity activity);
-
-
-    /**
-     * Clear the specified activities.
-     *
-     * @param activity  activity
-     */
-    void clearSuspended(BPMNActivity activity);
-
-
-    /**
-     * Clear all specified activities.
-     */
-    void clearAllSuspended();
-
-
-    /**
-     * Run the specified chain.
-     *
-     * @param activityChain activityChain
-     */
-    void run(BPMNActivityChain activityChain);
-
-
-    /**
-     * Run the specified chains.
-     *
-     * @param activityChains activityChains
-     */
-    void runAll(Collection<BPMNActivityChain> activityChains);
-
-
-    /**
-     * Rerun the specified chain.
-     *
-     * @param activityChain activityChain
-     */
-    void reRun(BPMNActivityChain activityChain);
-
-
-    /**
-     * Rerun the specified chains.
-     *
-     * @param activityChains activityChains
-     */
-    void reRunAll(Collection<BPMNActivityChain> activityChains);
-
-
-    /**
-     * Exit the specified chain.
-     *
-     * @param activityChain activityChain
-     */
-    void exit(BPMNActivityChain activityChain);
-
-
-    /**
-     * Exit the specified chains.
-     *
-     * @param activityChains activityChains
-     */
-    void exitAll(Collection<BPMNActivityChain> activityChains);
-
-
-    /**
-     * Delete the specified running chain.
-     *
-     * @param activityChain activityChain
-     */
-    void deleteRunning(BPMNActivityChain activityChain);
-
-
-    /**
-     * Delete the specified running chains.
-     *
-     * @param activityChains activityChains
-     */
-    void deleteAllRunning(Collection<BPMNActivityChain> activityChains);
-
-
-    /**
-     * Delete the specified historic chain.
-     *
-     * @param activityChain activityChain
-     */
-    void deleteHistory(BPMNActivityChain activityChain);
-
-
-    /**
-     * Delete the specified historic chains.
-     *
-     * @param activityChains activityChains
-     */
-    void deleteAllHistories(Collection<BPMNActivityChain> activityChains);
-}
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.api.runtime.model;
+
+import org.activiti.api.process.model.BPMNActivity;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Chain for {@link BPMNActivityChain}.
+ *
+ * @author VirtualCry
+ */
+public interface BPMNProcessChain {
+
+    /**
+     * Get activity chains which are running.
+     *
+     * @return The {@link Set<BPMNActivityChain>}.
+     */
+    Set<BPMNActivityChain> getRunningActivityChains();
+
+
+    /**
+     * Get activity chains which are not running.
+     *
+     * @return The {@link Set<BPMNActivityChain>}.
+     */
+    Set<BPMNActivityChain> getHistoricActivityChains();
+
+
+    /**
+     * Get running activity chains whose last activity is the specified element.
+     *
+     * @param lastElementId element id of the last activity
+     * @return The {@link Set<BPMNActivityChain>}.
+     */
+    Set<BPMNActivityChain> getRunningActivityChains(String lastElementId);
+
+
+    /**
+     * Get target of {@literal Roll back} from the running task to the previous task of each running chain.
+     * The target is indexed by task element when the chains run and stop.
+     *
+     * @param elementId     element id of the running task
+     * @return The {@link BPMNRollBackTarget}, with empty sets if there is no running task of the element.
+     */
+    BPMNRollBackTarget getRollBackTarget(String elementId);
+
+
+    /**
+     * Set the predicate to judge if an activity is a task, which indexes targets of {@literal Roll back}.
+     * Tasks are judged by the activity type if it is not set.
+     *
+     * @param taskPredicate predicate to judge if the activity is a task, ignored if null.
+     */
+    void setTaskPredicate(Predicate<BPMNActivity> taskPredicate);
+
+
+    /**
+     * Derive target of {@literal Roll back} from the running activity, to the task resolved from each running chain.
+     * The target is not indexed.
+     *
+     * @param elementId                 element id of the running activity
+     * @param targetTaskIndexResolver   resolver of the index of the target task in a running chain, -1 if not found.
+     * @return The {@link BPMNRollBackTarget}, with empty sets if there is no running activity of the element.
+     */
+    BPMNRollBackTarget deriveRollBackTarget(String elementId, ToIntFunction<BPMNActivityChain> targetTaskIndexResolver);
+
+
+    /**
+     * Get suspended activity counter.
+     *
+     * @return The counter.
+     */
+    Map<String, Integer> getSuspendedActivityCounter();
+
+
+    /**
+     * Suspend activity.
+     *
+     * @param activity  activity
+     */
+    void suspend(BPMNActivity activity);
+
+
+    /**
+     * Judge if the activity is suspended.
+     *
+     * @param activity  activity
+     * @return result
+     */
+    boolean isSuspended(BPMNActivity activity);
+
+
+    /**
+     * Get the number of suspended activity.
+     *
+     * @param activity  activity
+     * @return count
+     */
+    int getSuspendedCount(BPMNActivity activity);
+
+
+    /**
+     * Clear the specified activities.
+     *
+     * @param activity  activity
+     */
+    void clearSuspended(BPMNActivity activity);
+
+
+    /**
+     * Clear all specified activities.
+     */
+    void clearAllSuspended();
+
+
+    /**
+     * Run the specified chain.
+     *
+     * @param activityChain activityChain
+     */
+    void run(BPMNActivityChain activityChain);
+
+
+    /**
+     * Run the specified chains.
+     *
+     * @param activityChains activityChains
+     */
+    void runAll(Collection<BPMNActivityChain> activityChains);
+
+
+    /**
+     * Rerun the specified chain.
+     *
+     * @param activityChain activityChain
+     */
+    void reRun(BPMNActivityChain activityChain);
+
+
+    /**
+     * Rerun the specified chains.
+     *
+     * @param activityChains activityChains
+     */
+    void reRunAll(Collection<BPMNActivityChain> activityChains);
+
+
+    /**
+     * Exit the specified chain.
+     *
+     * @param activityChain activityChain
+     */
+    void exit(BPMNActivityChain activityChain);
+
+
+    /**
+     * Exit the specified chains.
+     *
+     * @param activityChains activityChains
+     */
+    void exitAll(Collection<BPMNActivityChain> activityChains);
+
+
+    /**
+     * Delete the specified running chain.
+     *
+     * @param activityChain activityChain
+     */
+    void deleteRunning(BPMNActivityChain activityChain);
+
+
+    /**
+     * Delete the specified running chains.
+     *
+     * @param activityChains activityChains
+     */
+    void deleteAllRunning(Collection<BPMNActivityChain> activityChains);
+
+
+    /**
+     * Delete the specified historic chain.
+     *
+     * @param activityChain activityChain
+     */
+    void deleteHistory(BPMNActivityChain activityChain);
+
+
+    /**
+     * Delete the specified historic chains.
+     *
+     * @param activityChains activityChains
+     */
+    void deleteAllHistories(Collection<BPMNActivityChain> activityChains);
+
+
+    /**
+     * Get the highest sequence of the record payloads applied to the chain.
+     *
+     * @return sequence
+     */
+    long getAppliedSequence();
+
+
+    /**
+     * Mark the specified sequence as applied.
+     * Sequences skipped by the highest applied one are kept as gaps, so that sequences which arrive out of order
+     * are accepted however far behind they are, and sequences which never arrive, such as those of rolled back transactions,
+     * only leave their gaps.
+     *
+     * @param sequence  sequence of the record payload, 0 means the payload is not sequenced.
+     * @return false if the sequence has been applied already.
+     */
+    boolean advanceAppliedSequence(long sequence);
+}
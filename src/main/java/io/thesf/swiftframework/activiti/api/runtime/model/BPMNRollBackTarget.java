@@ -0,0 +1,64 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.api.runtime.model;
+
+import org.activiti.api.process.model.BPMNActivity;
+
+import java.util.Set;
+
+/**
+ * Target of {@literal Roll back} from one running activity, derived from {@link BPMNProcessChain}.
+ *
+ * @author VirtualCry
+ */
+public interface BPMNRollBackTarget {
+
+    /**
+     * Get element id of the running activity to roll back from.
+     *
+     * @return elementId
+     */
+    String getElementId();
+
+
+    /**
+     * Get tasks to roll back to.
+     *
+     * @return The {@link Set<BPMNActivity>}.
+     */
+    Set<BPMNActivity> getTargetTasks();
+
+
+    /**
+     * Get activity chains which end at the target tasks, shared by the chains to roll back.
+     *
+     * @return The {@link Set<BPMNActivityChain>}.
+     */
+    Set<BPMNActivityChain> getCommonActivityChains();
+
+
+    /**
+     * Get running activity chains that need to be rolled back.
+     *
+     * @return The {@link Set<BPMNActivityChain>}.
+     */
+    Set<BPMNActivityChain> getTurnBackActivityChains();
+
+
+    /**
+     * Get historic activity chains that need to be reran.
+     *
+     * @return The {@link Set<BPMNActivityChain>}.
+     */
+    Set<BPMNActivityChain> getRecoveryActivityChains();
+}
@@ -0,0 +1,45 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.api.runtime.model;
+
+/**
+ * Outcome of one target of a bulk operation, such as {@literal Bulk Free Jump}.
+ *
+ * @author VirtualCry
+ */
+public interface BulkOperationResult {
+
+    /**
+     * Get the target of the operation, such as process instance id or task id.
+     *
+     * @return id
+     */
+    String getId();
+
+    String getProcessInstanceId();
+
+    Status getStatus();
+
+    /**
+     * Get the reason of failure.
+     *
+     * @return message, null if succeeded.
+     */
+    String getMessage();
+
+
+    enum Status {
+        SUCCEEDED,
+        FAILED
+    }
+}
@@ -0,0 +1,35 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.api.runtime.model;
+
+/**
+ * Template of {@link TaskAssigneeDefinition}, shared by all instances of a process definition.
+ *
+ * 1. A template without version applies to all versions of the process definition key.
+ * 2. A template with version takes precedence over the one without version.
+ * 3. A {@link TaskAssigneeDefinition} of the process instance overrides the templates.
+ *
+ * @author VirtualCry
+ */
+public interface TaskAssigneeTemplate {
+
+    String getId();
+
+    String getProcessDefinitionKey();
+
+    Integer getProcessDefinitionVersion();
+
+    String getTaskDefinitionKey();
+
+    String getAssignee();
+}
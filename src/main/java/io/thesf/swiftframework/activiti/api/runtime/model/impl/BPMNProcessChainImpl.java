@@ -1,130 +1,296 @@
-/* Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package io.thesf.swiftframework.activiti.api.runtime.model.impl;
-
-import io.thesf.swiftframework.activiti.api.runtime.model.BPMNActivityChain;
-import io.thesf.swiftframework.activiti.api.runtime.model.BPMNProcessChain;
-import lombok.Getter;
-import org.activiti.api.process.model.BPMNActivity;
-
-import java.util.*;
-import java.util.stream.Collectors;
-
-/**
- * Implement of {@link BPMNProcessChain}.
- *
- * @author VirtualCry
- */
-@Getter
-public class BPMNProcessChainImpl implements BPMNProcessChain {
-
-    private final Set<BPMNActivityChain>        runningActivityChains;
-    private final Set<BPMNActivityChain>        historicActivityChains;
-    private final Map<String, Integer>          suspendedActivityCounter;
-
-    public BPMNProcessChainImpl() {
-        this.runningActivityChains = new HashSet<>();
-        this.historicActivityChains = new HashSet<>();
-        this.suspendedActivityCounter = new HashMap<>();
-    }
-
-
-    @Override
-    public void suspend(BPMNActivity activity) {
-        this.suspendedActivityCounter.compute(activity.getElementId(), (element, count) -> count != null ? count + 1 : 1);
-    }
-
-    @Override
-    public boolean isSuspended(BPMNActivity activity) {
-        return this.getSuspendedCount(activity) > 0;
-    }
-
-    @Override
-    public int getSuspendedCount(BPMNActivity activity) {
-        return this.suspendedActivityCounter.getOrDefault(activity.getElementId(), 0);
-    }
-
-    @Override
-    public void clearSuspended(BPMNActivity activity) {
-        this.suspendedActivityCounter.remove(activity.getElementId());
-    }
-
-    @Override
-    public void clearAllSuspended() {
-        this.suspendedActivityCounter.clear();
-    }
-
-    @Override
-    public void run(BPMNActivityChain activityChain) {
-        this.runningActivityChains.add(activityChain);
-    }
-
-    @Override
-    public void runAll(Collection<BPMNActivityChain> activityChains) {
-        this.runningActivityChains.addAll(activityChains);
-    }
-
-    @Override
-    public void reRun(BPMNActivityChain activityChain) {
-        this.historicActivityChains.stream()
-                .filter(historicActivityChain -> historicActivityChain.equals(activityChain))
-                .findAny()
-                .ifPresent(candidateActivityChain -> {
-                    this.historicActivityChains.remove(candidateActivityChain);
-                    this.runningActivityChains.add(candidateActivityChain);
-                });
-    }
-
-    @Override
-    public void reRunAll(Collection<BPMNActivityChain> activityChains) {
-        List<BPMNActivityChain> candidateActivityChains = this.historicActivityChains.stream()
-                .filter(activityChains::contains)
-                .collect(Collectors.toList());
-        if (!candidateActivityChains.isEmpty()) {
-            this.historicActivityChains.removeAll(candidateActivityChains);
-            this.runningActivityChains.addAll(candidateActivityChains);
-        }
-    }
-
-    @Override
-    public void exit(BPMNActivityChain activityChain) {
-        this.runningActivityChains.remove(activityChain);
-        this.historicActivityChains.add(activityChain);
-    }
-
-    @Override
-    public void exitAll(Collection<BPMNActivityChain> activityChains) {
-        this.runningActivityChains.removeAll(activityChains);
-        this.historicActivityChains.addAll(activityChains);
-    }
-
-    @Override
-    public void deleteRunning(BPMNActivityChain activityChain) {
-        this.runningActivityChains.remove(activityChain);
-    }
-
-    @Override
-    public void deleteAllRunning(Collection<BPMNActivityChain> activityChains) {
-        this.runningActivityChains.removeAll(activityChains);
-    }
-
-    @Override
-    public void deleteHistory(BPMNActivityChain activityChain) {
-        this.historicActivityChains.remove(activityChain);
-    }
-
-    @Override
-    public void deleteAllHistories(Collection<BPMNActivityChain> activityChains) {
-        this.historicActivityChains.removeAll(activityChains);
-    }
-}
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.api.runtime.model.impl;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.BPMNActivityChain;
+import io.thesf.swiftframework.activiti.api.runtime.model.BPMNProcessChain;
+import io.thesf.swiftframework.activiti.api.runtime.model.BPMNRollBackTarget;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.activiti.api.process.model.BPMNActivity;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Implement of {@link BPMNProcessChain}.
+ *
+ * 1. Running chains are indexed by the element id of their last activity.
+ * 2. Targets of {@literal Roll back} are indexed by task element while the chains run and stop,
+ * see {@link BPMNRollBackTargetIndex}, so that a rollback is a lookup of its element.
+ * 3. Tasks are judged with the task predicate, which is set by the recorders from the analysis of the process definition.
+ * 4. Chains are changed and indexed while the process chain is locked, and targets are looked up without locking.
+ * 5. Indexes are not serialized, and are rebuilt when needed.
+ * 6. Applied sequences are kept as the highest one, and the gaps of sequences below it which are not applied yet.
+ *
+ * @author VirtualCry
+ */
+@Getter
+public class BPMNProcessChainImpl implements BPMNProcessChain {
+
+    private final Set<BPMNActivityChain>        runningActivityChains;
+    private final Set<BPMNActivityChain>        historicActivityChains;
+    private final Map<String, Integer>          suspendedActivityCounter;
+    private long                                appliedSequence;
+    @Getter(AccessLevel.NONE)
+    private final TreeMap<Long, Long>           unappliedSequenceRanges;
+
+    @Getter(AccessLevel.NONE)
+    private transient Predicate<BPMNActivity>               taskPredicate;
+    @Getter(AccessLevel.NONE)
+    private transient Map<String, Set<BPMNActivityChain>>   runningActivityChainIndex;
+    @Getter(AccessLevel.NONE)
+    private transient volatile BPMNRollBackTargetIndex      rollBackTargetIndex;
+
+    public BPMNProcessChainImpl() {
+        this.runningActivityChains = new HashSet<>();
+        this.historicActivityChains = new HashSet<>();
+        this.suspendedActivityCounter = new HashMap<>();
+        this.unappliedSequenceRanges = new TreeMap<>();
+    }
+
+
+    @Override
+    public synchronized Set<BPMNActivityChain> getRunningActivityChains(String lastElementId) {
+        return Collections.unmodifiableSet(this.getRunningActivityChainIndex().getOrDefault(lastElementId, Collections.emptySet()));
+    }
+
+    @Override
+    public BPMNRollBackTarget getRollBackTarget(String elementId) {
+        BPMNRollBackTargetIndex rollBackTargetIndex = this.rollBackTargetIndex;
+        if (rollBackTargetIndex == null)
+            rollBackTargetIndex = this.getRollBackTargetIndex();
+        return rollBackTargetIndex.get(elementId);
+    }
+
+    @Override
+    public synchronized void setTaskPredicate(Predicate<BPMNActivity> taskPredicate) {
+        if (taskPredicate != null && taskPredicate != this.taskPredicate) {
+            this.taskPredicate = taskPredicate;
+            this.rollBackTargetIndex = null;
+        }
+    }
+
+    @Override
+    public synchronized BPMNRollBackTarget deriveRollBackTarget(String elementId, ToIntFunction<BPMNActivityChain> targetTaskIndexResolver) {
+
+        // Get target tasks and the activity chains with the same execution path
+        Set<BPMNActivity> targetTasks = new HashSet<>();
+        Set<BPMNActivityChain> commonActivityChains = new HashSet<>();
+        for (BPMNActivityChain activityChain : this.getRunningActivityChains(elementId)) {
+            int targetTaskIndex = targetTaskIndexResolver.applyAsInt(activityChain);
+            if (targetTaskIndex < 0)
+                throw new RuntimeException("Could not find last task from task " + elementId);
+            targetTasks.add(activityChain.get(targetTaskIndex));
+            commonActivityChains.add(activityChain.subActivityChain(0, targetTaskIndex));
+        }
+
+        // Get the running activity chains that need to be rolled back
+        Set<BPMNActivityChain> turnBackActivityChains = this.runningActivityChains.stream()
+                .filter(activityChain -> commonActivityChains.stream().anyMatch(commonActivityChain -> startsWith(activityChain, commonActivityChain)))
+                .collect(Collectors.toSet());
+
+        // Get the historic activity chains that need to be reran
+        Set<BPMNActivityChain> recoveryActivityChains = commonActivityChains.stream()
+                .filter(this.historicActivityChains::contains)
+                .collect(Collectors.toSet());
+
+        return new BPMNRollBackTargetImpl(
+                elementId,
+                Collections.unmodifiableSet(targetTasks),
+                Collections.unmodifiableSet(commonActivityChains),
+                Collections.unmodifiableSet(turnBackActivityChains),
+                Collections.unmodifiableSet(recoveryActivityChains)
+        );
+    }
+
+
+    @Override
+    public void suspend(BPMNActivity activity) {
+        this.suspendedActivityCounter.compute(activity.getElementId(), (element, count) -> count != null ? count + 1 : 1);
+    }
+
+    @Override
+    public boolean isSuspended(BPMNActivity activity) {
+        return this.getSuspendedCount(activity) > 0;
+    }
+
+    @Override
+    public int getSuspendedCount(BPMNActivity activity) {
+        return this.suspendedActivityCounter.getOrDefault(activity.getElementId(), 0);
+    }
+
+    @Override
+    public void clearSuspended(BPMNActivity activity) {
+        this.suspendedActivityCounter.remove(activity.getElementId());
+    }
+
+    @Override
+    public void clearAllSuspended() {
+        this.suspendedActivityCounter.clear();
+    }
+
+    @Override
+    public synchronized void run(BPMNActivityChain activityChain) {
+        if (this.runningActivityChains.add(activityChain))
+            this.indexRunning(activityChain);
+    }
+
+    @Override
+    public synchronized void runAll(Collection<BPMNActivityChain> activityChains) {
+        activityChains.forEach(this::run);
+    }
+
+    @Override
+    public synchronized void reRun(BPMNActivityChain activityChain) {
+        this.historicActivityChains.stream()
+                .filter(historicActivityChain -> historicActivityChain.equals(activityChain))
+                .findAny()
+                .ifPresent(candidateActivityChain -> {
+                    this.removeHistory(candidateActivityChain);
+                    this.run(candidateActivityChain);
+                });
+    }
+
+    @Override
+    public synchronized void reRunAll(Collection<BPMNActivityChain> activityChains) {
+        List<BPMNActivityChain> candidateActivityChains = this.historicActivityChains.stream()
+                .filter(activityChains::contains)
+                .collect(Collectors.toList());
+        if (!candidateActivityChains.isEmpty()) {
+            candidateActivityChains.forEach(this::removeHistory);
+            this.runAll(candidateActivityChains);
+        }
+    }
+
+    @Override
+    public synchronized void exit(BPMNActivityChain activityChain) {
+        this.deleteRunning(activityChain);
+        this.addHistory(activityChain);
+    }
+
+    @Override
+    public synchronized void exitAll(Collection<BPMNActivityChain> activityChains) {
+        this.deleteAllRunning(activityChains);
+        activityChains.forEach(this::addHistory);
+    }
+
+    @Override
+    public synchronized void deleteRunning(BPMNActivityChain activityChain) {
+        if (this.runningActivityChains.remove(activityChain))
+            this.unindexRunning(activityChain);
+    }
+
+    @Override
+    public synchronized void deleteAllRunning(Collection<BPMNActivityChain> activityChains) {
+        activityChains.forEach(this::deleteRunning);
+    }
+
+    @Override
+    public synchronized void deleteHistory(BPMNActivityChain activityChain) {
+        this.removeHistory(activityChain);
+    }
+
+    @Override
+    public synchronized void deleteAllHistories(Collection<BPMNActivityChain> activityChains) {
+        activityChains.forEach(this::removeHistory);
+    }
+
+    @Override
+    public synchronized boolean advanceAppliedSequence(long sequence) {
+        if (sequence <= 0)
+            return true;
+        if (sequence > this.appliedSequence) {
+            // Keep the sequences skipped as a gap, from the first to the last one
+            if (sequence > this.appliedSequence + 1)
+                this.unappliedSequenceRanges.put(this.appliedSequence + 1, sequence - 1);
+            this.appliedSequence = sequence;
+            return true;
+        }
+        Map.Entry<Long, Long> unappliedSequenceRange = this.unappliedSequenceRanges.floorEntry(sequence);
+        if (unappliedSequenceRange == null || unappliedSequenceRange.getValue() < sequence)
+            return false;
+        // Split the gap around the sequence applied
+        this.unappliedSequenceRanges.remove(unappliedSequenceRange.getKey());
+        if (unappliedSequenceRange.getKey() < sequence)
+            this.unappliedSequenceRanges.put(unappliedSequenceRange.getKey(), sequence - 1);
+        if (unappliedSequenceRange.getValue() > sequence)
+            this.unappliedSequenceRanges.put(sequence + 1, unappliedSequenceRange.getValue());
+        return true;
+    }
+
+
+    private void indexRunning(BPMNActivityChain activityChain) {
+        this.getRunningActivityChainIndex().computeIfAbsent(lastElementIdOf(activityChain), key -> new HashSet<>()).add(activityChain);
+        if (this.rollBackTargetIndex != null)
+            this.rollBackTargetIndex.run(activityChain);
+        else
+            this.getRollBackTargetIndex();
+    }
+
+    private void unindexRunning(BPMNActivityChain activityChain) {
+        Map<String, Set<BPMNActivityChain>> runningActivityChainIndex = this.getRunningActivityChainIndex();
+        String lastElementId = lastElementIdOf(activityChain);
+        Set<BPMNActivityChain> indexedActivityChains = runningActivityChainIndex.get(lastElementId);
+        if (indexedActivityChains != null && indexedActivityChains.remove(activityChain) && indexedActivityChains.isEmpty())
+            runningActivityChainIndex.remove(lastElementId);
+        if (this.rollBackTargetIndex != null)
+            this.rollBackTargetIndex.stop(activityChain);
+    }
+
+    private void addHistory(BPMNActivityChain activityChain) {
+        if (this.historicActivityChains.add(activityChain) && this.rollBackTargetIndex != null)
+            this.rollBackTargetIndex.historic(activityChain, true);
+    }
+
+    private void removeHistory(BPMNActivityChain activityChain) {
+        if (this.historicActivityChains.remove(activityChain) && this.rollBackTargetIndex != null)
+            this.rollBackTargetIndex.historic(activityChain, false);
+    }
+
+    private Map<String, Set<BPMNActivityChain>> getRunningActivityChainIndex() {
+        if (this.runningActivityChainIndex == null) {
+            this.runningActivityChainIndex = new HashMap<>();
+            this.runningActivityChains.forEach(activityChain ->
+                    this.runningActivityChainIndex.computeIfAbsent(lastElementIdOf(activityChain), key -> new HashSet<>()).add(activityChain));
+        }
+        return this.runningActivityChainIndex;
+    }
+
+    private synchronized BPMNRollBackTargetIndex getRollBackTargetIndex() {
+        if (this.rollBackTargetIndex == null)
+            this.rollBackTargetIndex = new BPMNRollBackTargetIndex(
+                    this.taskPredicate != null ? this.taskPredicate : BPMNActivityChainImpl::isTask,
+                    this.runningActivityChains,
+                    this.historicActivityChains
+            );
+        return this.rollBackTargetIndex;
+    }
+
+    private static String lastElementIdOf(BPMNActivityChain activityChain) {
+        BPMNActivity lastActivity = activityChain.getLastActivity();
+        return lastActivity == null ? null : lastActivity.getElementId();
+    }
+
+    private static boolean startsWith(BPMNActivityChain activityChain, BPMNActivityChain prefixActivityChain) {
+        if (prefixActivityChain.size() > activityChain.size())
+            return false;
+        for (int i = 0; i < prefixActivityChain.size(); i++) {
+            if (!prefixActivityChain.get(i).equals(activityChain.get(i)))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,39 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.api.runtime.model.impl;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.BPMNActivityChain;
+import io.thesf.swiftframework.activiti.api.runtime.model.BPMNRollBackTarget;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import org.activiti.api.process.model.BPMNActivity;
+
+import java.util.Set;
+
+/**
+ * Implement of {@link BPMNRollBackTarget}.
+ *
+ * @author VirtualCry
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+public class BPMNRollBackTargetImpl implements BPMNRollBackTarget {
+
+    private final String                    elementId;
+    private final Set<BPMNActivity>         targetTasks;
+    private final Set<BPMNActivityChain>    commonActivityChains;
+    private final Set<BPMNActivityChain>    turnBackActivityChains;
+    private final Set<BPMNActivityChain>    recoveryActivityChains;
+}
@@ -0,0 +1,292 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.api.runtime.model.impl;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.BPMNActivityChain;
+import io.thesf.swiftframework.activiti.api.runtime.model.BPMNRollBackTarget;
+import org.activiti.api.process.model.BPMNActivity;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Index of {@link BPMNRollBackTarget} of one {@link BPMNProcessChainImpl}, maintained while the chains are recorded.
+ *
+ * 1. Each running chain whose last activity is a task is a source of its element. The common chain of a source
+ * ends with its second last task, which is the target task.
+ * 2. Common chains are kept in a prefix tree of activities. A running chain walks the tree once when it runs or stops,
+ * and turns back with every element owning a common chain on its path.
+ * 3. Historic chains equal to a common chain are recovered with the owning elements.
+ * 4. Targets are built from the entry of the element at first lookup, and dropped when the entry changes,
+ * so that lookups without changes do not lock.
+ *
+ * Warning:
+ * 1. Changes must be made while the process chain is locked, as the running and historic chains are read.
+ *
+ * @author VirtualCry
+ */
+class BPMNRollBackTargetIndex {
+
+    private final Predicate<BPMNActivity>           taskPredicate;
+    private final Collection<BPMNActivityChain>     runningActivityChains;
+    private final Set<BPMNActivityChain>            historicActivityChains;
+    private final Map<String, Entry>                entries;
+    private final PrefixNode                        commonActivityChainTree;
+    private final Map<String, BPMNRollBackTarget>   targets;
+
+    BPMNRollBackTargetIndex(Predicate<BPMNActivity> taskPredicate,
+                            Collection<BPMNActivityChain> runningActivityChains,
+                            Set<BPMNActivityChain> historicActivityChains) {
+        this.taskPredicate = taskPredicate;
+        this.runningActivityChains = runningActivityChains;
+        this.historicActivityChains = historicActivityChains;
+        this.entries = new HashMap<>();
+        this.commonActivityChainTree = new PrefixNode();
+        this.targets = new ConcurrentHashMap<>();
+        runningActivityChains.forEach(activityChain -> this.index(activityChain, false));
+        runningActivityChains.forEach(this::turnBack);
+    }
+
+
+    /**
+     * Get target of {@literal Roll back} from the running task.
+     *
+     * @param elementId element id of the running task
+     * @return The {@link BPMNRollBackTarget}, with empty sets if there is no running task of the element.
+     */
+    BPMNRollBackTarget get(String elementId) {
+        BPMNRollBackTarget target = this.targets.get(elementId);
+        return target != null ? target : this.build(elementId);
+    }
+
+    /**
+     * Index the chain which starts running.
+     *
+     * @param activityChain activityChain
+     */
+    synchronized void run(BPMNActivityChain activityChain) {
+        this.turnBack(activityChain);
+        this.index(activityChain, true);
+    }
+
+    /**
+     * Unindex the chain which stops running.
+     *
+     * @param activityChain activityChain
+     */
+    synchronized void stop(BPMNActivityChain activityChain) {
+
+        // Stop turning back with the elements owning common chains on the path of the chain
+        this.forEachOwner(activityChain, elementId -> {
+            Map<BPMNActivityChain, Integer> turnBackActivityChains = this.entries.get(elementId).turnBackActivityChains;
+            turnBackActivityChains.computeIfPresent(activityChain, (key, count) -> count > 1 ? count - 1 : null);
+            this.targets.remove(elementId);
+        });
+
+        // Unindex the chain as a source of its last task
+        BPMNActivity lastActivity = activityChain.getLastActivity();
+        Entry entry = lastActivity == null ? null : this.entries.get(lastActivity.getElementId());
+        if (entry == null || !entry.commonActivityChains.containsKey(activityChain))
+            return;
+        String elementId = lastActivity.getElementId();
+        BPMNActivityChain commonActivityChain = entry.commonActivityChains.remove(activityChain);
+        if (commonActivityChain != null && entry.commonActivityChainCounts.merge(commonActivityChain, -1, Integer::sum) == 0) {
+            entry.commonActivityChainCounts.remove(commonActivityChain);
+            this.disown(elementId, entry, commonActivityChain);
+        }
+        if (entry.commonActivityChains.isEmpty())
+            this.entries.remove(elementId);
+        this.targets.remove(elementId);
+    }
+
+    /**
+     * Update recovery of the elements owning the chain, when the chain is added to or removed from history.
+     *
+     * @param activityChain activityChain
+     * @param historic      if the chain is historic now
+     */
+    synchronized void historic(BPMNActivityChain activityChain, boolean historic) {
+        PrefixNode node = this.commonActivityChainTree.find(activityChain);
+        if (node == null)
+            return;
+        node.owners.forEach(elementId -> {
+            Set<BPMNActivityChain> recoveryActivityChains = this.entries.get(elementId).recoveryActivityChains;
+            if (historic)
+                recoveryActivityChains.add(activityChain);
+            else
+                recoveryActivityChains.remove(activityChain);
+            this.targets.remove(elementId);
+        });
+    }
+
+
+    private synchronized BPMNRollBackTarget build(String elementId) {
+        Entry entry = this.entries.get(elementId);
+        if (entry == null)
+            return new BPMNRollBackTargetImpl(elementId, Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+        if (entry.commonActivityChains.containsValue(null))
+            throw new RuntimeException("Could not find last task from task " + elementId);
+
+        Set<BPMNActivity> targetTasks = new HashSet<>();
+        entry.commonActivityChainCounts.keySet().forEach(commonActivityChain -> targetTasks.add(commonActivityChain.getLastActivity()));
+        BPMNRollBackTarget target = new BPMNRollBackTargetImpl(
+                elementId,
+                Collections.unmodifiableSet(targetTasks),
+                Collections.unmodifiableSet(new HashSet<>(entry.commonActivityChainCounts.keySet())),
+                Collections.unmodifiableSet(new HashSet<>(entry.turnBackActivityChains.keySet())),
+                Collections.unmodifiableSet(new HashSet<>(entry.recoveryActivityChains))
+        );
+        this.targets.put(elementId, target);
+        return target;
+    }
+
+    /**
+     * Turn back the running chain with the elements owning common chains on its path.
+     *
+     * @param activityChain activityChain
+     */
+    private void turnBack(BPMNActivityChain activityChain) {
+        this.forEachOwner(activityChain, elementId -> {
+            this.entries.get(elementId).turnBackActivityChains.merge(activityChain, 1, Integer::sum);
+            this.targets.remove(elementId);
+        });
+    }
+
+    /**
+     * Index the running chain as a source of its last activity, if it is a task.
+     *
+     * @param activityChain activityChain
+     * @param turnBack      if running chains starting with a new common chain turn back at once
+     */
+    private void index(BPMNActivityChain activityChain, boolean turnBack) {
+        BPMNActivity lastActivity = activityChain.getLastActivity();
+        if (lastActivity == null || !this.isTask(lastActivity))
+            return;
+        String elementId = lastActivity.getElementId();
+        Entry entry = this.entries.computeIfAbsent(elementId, key -> new Entry());
+        int targetTaskIndex = activityChain.getSecondLastTaskIndex(this.taskPredicate);
+        BPMNActivityChain commonActivityChain = targetTaskIndex < 0 ? null : activityChain.subActivityChain(0, targetTaskIndex);
+        entry.commonActivityChains.put(activityChain, commonActivityChain);
+        if (commonActivityChain != null && entry.commonActivityChainCounts.merge(commonActivityChain, 1, Integer::sum) == 1)
+            this.own(elementId, entry, commonActivityChain, turnBack);
+        this.targets.remove(elementId);
+    }
+
+    private boolean isTask(BPMNActivity activity) {
+        return activity instanceof FreeJumpBPMNActivityImpl || this.taskPredicate.test(activity);
+    }
+
+    private void own(String elementId, Entry entry, BPMNActivityChain commonActivityChain, boolean turnBack) {
+        this.commonActivityChainTree.insert(commonActivityChain).owners.add(elementId);
+        if (turnBack) {
+            for (BPMNActivityChain activityChain : this.runningActivityChains) {
+                if (startsWith(activityChain, commonActivityChain))
+                    entry.turnBackActivityChains.merge(activityChain, 1, Integer::sum);
+            }
+        }
+        if (this.historicActivityChains.contains(commonActivityChain))
+            entry.recoveryActivityChains.add(commonActivityChain);
+    }
+
+    private void disown(String elementId, Entry entry, BPMNActivityChain commonActivityChain) {
+        this.commonActivityChainTree.remove(commonActivityChain, elementId);
+        Iterator<Map.Entry<BPMNActivityChain, Integer>> iterator = entry.turnBackActivityChains.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<BPMNActivityChain, Integer> turnBackActivityChain = iterator.next();
+            if (startsWith(turnBackActivityChain.getKey(), commonActivityChain) && turnBackActivityChain.setValue(turnBackActivityChain.getValue() - 1) == 1)
+                iterator.remove();
+        }
+        entry.recoveryActivityChains.remove(commonActivityChain);
+    }
+
+    private void forEachOwner(BPMNActivityChain activityChain, Consumer<String> action) {
+        PrefixNode node = this.commonActivityChainTree;
+        for (BPMNActivity activity : activityChain) {
+            node = node.children.get(activity);
+            if (node == null)
+                return;
+            node.owners.forEach(action);
+        }
+    }
+
+    private static boolean startsWith(BPMNActivityChain activityChain, BPMNActivityChain prefixActivityChain) {
+        if (prefixActivityChain.size() > activityChain.size())
+            return false;
+        for (int i = 0; i < prefixActivityChain.size(); i++) {
+            if (!prefixActivityChain.get(i).equals(activityChain.get(i)))
+                return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Indexed state of one task element.
+     */
+    private static class Entry {
+
+        /** Running chains of the element, and their common chains, null if there is no target task. */
+        private final Map<BPMNActivityChain, BPMNActivityChain>     commonActivityChains = new HashMap<>();
+        private final Map<BPMNActivityChain, Integer>               commonActivityChainCounts = new HashMap<>();
+        /** Running chains starting with common chains, and the number of common chains they start with. */
+        private final Map<BPMNActivityChain, Integer>               turnBackActivityChains = new HashMap<>();
+        private final Set<BPMNActivityChain>                        recoveryActivityChains = new HashSet<>();
+    }
+
+    /**
+     * Node of the prefix tree, owned by the elements whose common chain ends at the node.
+     */
+    private static class PrefixNode {
+
+        private final Map<BPMNActivity, PrefixNode>     children = new HashMap<>();
+        private final Set<String>                       owners = new HashSet<>();
+
+        private PrefixNode find(BPMNActivityChain activityChain) {
+            PrefixNode node = this;
+            for (BPMNActivity activity : activityChain) {
+                node = node.children.get(activity);
+                if (node == null)
+                    return null;
+            }
+            return node;
+        }
+
+        private PrefixNode insert(BPMNActivityChain activityChain) {
+            PrefixNode node = this;
+            for (BPMNActivity activity : activityChain)
+                node = node.children.computeIfAbsent(activity, key -> new PrefixNode());
+            return node;
+        }
+
+        private void remove(BPMNActivityChain activityChain, String owner) {
+            Deque<PrefixNode> path = new ArrayDeque<>(activityChain.size());
+            PrefixNode node = this;
+            for (BPMNActivity activity : activityChain) {
+                path.push(node);
+                node = node.children.get(activity);
+                if (node == null)
+                    return;
+            }
+            node.owners.remove(owner);
+
+            // Prune the nodes which are neither owned nor on the path of other common chains
+            for (int i = activityChain.size() - 1; i >= 0 && node.owners.isEmpty() && node.children.isEmpty(); i--) {
+                PrefixNode parent = path.pop();
+                parent.children.remove(activityChain.get(i));
+                node = parent;
+            }
+        }
+    }
+}
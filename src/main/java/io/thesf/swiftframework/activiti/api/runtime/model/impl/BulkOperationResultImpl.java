@@ -0,0 +1,44 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.api.runtime.model.impl;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.BulkOperationResult;
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * Implement of {@link BulkOperationResult}.
+ *
+ * @author VirtualCry
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter @Setter
+@ToString
+public class BulkOperationResultImpl implements BulkOperationResult, Serializable {
+
+    protected String    id;
+    protected String    processInstanceId;
+    protected Status    status;
+    protected String    message;
+
+    public static BulkOperationResult succeeded(String id, String processInstanceId) {
+        return new BulkOperationResultImpl(id, processInstanceId, Status.SUCCEEDED, null);
+    }
+
+    public static BulkOperationResult failed(String id, String processInstanceId, String message) {
+        return new BulkOperationResultImpl(id, processInstanceId, Status.FAILED, message);
+    }
+}
@@ -1,35 +1,35 @@
-/* Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package io.thesf.swiftframework.activiti.api.runtime.model.impl;
-
-import io.thesf.swiftframework.activiti.api.runtime.model.TaskAssigneeDefinition;
-import lombok.*;
-
-import java.io.Serializable;
-
-/**
- * Implement of {@link TaskAssigneeDefinition}.
- *
- * @author VirtualCry
- */
-@Builder
-@AllArgsConstructor
-@NoArgsConstructor
-@Getter @Setter
-public class TaskAssigneeDefinitionImpl implements TaskAssigneeDefinition, Serializable {
-
-    protected String    id;
-    protected String    processInstanceId;
-    protected String    taskDefinitionKey;
-    protected String    assignee;
-}
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.api.runtime.model.impl;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.TaskAssigneeDefinition;
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * Implement of {@link TaskAssigneeDefinition}.
+ *
+ * @author VirtualCry
+ */
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter @Setter
+public class TaskAssigneeDefinitionImpl implements TaskAssigneeDefinition, Serializable {
+
+    protected String    id;
+    protected String    processInstanceId;
+    protected String    taskDefinitionKey;
+    protected String    assignee;
+}
@@ -0,0 +1,115 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.cache;
+
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Implement of {@link CacheManager}. Use {@link LinkedHashMap} in access order as bounded local cache,
+ * the least recently used entry is evicted when the capacity is exceeded.
+ *
+ * Warning:
+ * 1. Views, such as {@link #keySet()} and {@link #values()}, are snapshots.
+ *
+ * @author VirtualCry
+ */
+public class LruCacheManagerImpl<K, V> implements CacheManager<K, V> {
+
+    private final LinkedHashMap<K, V>       cache;
+
+    public LruCacheManagerImpl(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive, but got " + capacity + ".");
+        this.cache = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+
+    @Override
+    public synchronized int size() {
+        return this.cache.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return this.cache.isEmpty();
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+        return this.cache.containsKey(key);
+    }
+
+    @Override
+    public synchronized boolean containsValue(Object value) {
+        return this.cache.containsValue(value);
+    }
+
+    @Override
+    public synchronized V get(Object key) {
+        return this.cache.get(key);
+    }
+
+    @Override
+    public synchronized V put(K key, V value) {
+        return this.cache.put(key, value);
+    }
+
+    @Override
+    public synchronized V remove(Object key) {
+        return this.cache.remove(key);
+    }
+
+    @Override
+    public synchronized void putAll(Map<? extends K, ? extends V> m) {
+        this.cache.putAll(m);
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.cache.clear();
+    }
+
+    @Override
+    public synchronized Set<K> keySet() {
+        return new LinkedHashSet<>(this.cache.keySet());
+    }
+
+    @Override
+    public synchronized Collection<V> values() {
+        return new ArrayList<>(this.cache.values());
+    }
+
+    @Override
+    public synchronized Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> entries = new LinkedHashSet<>();
+        this.cache.forEach((key, value) -> entries.add(new AbstractMap.SimpleImmutableEntry<>(key, value)));
+        return entries;
+    }
+
+    @Override
+    public synchronized V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+        return this.cache.computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public synchronized V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        return this.cache.compute(key, remappingFunction);
+    }
+}
@@ -0,0 +1,74 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.delegate.event.ActivitiEntityEvent;
+import org.activiti.engine.delegate.event.ActivitiEvent;
+import org.activiti.engine.delegate.event.ActivitiEventListener;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.repository.ProcessDefinition;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+
+/**
+ * Invalidate all {@link ProcessDefinitionScopedCache} beans when a process definition is deleted,
+ * such as when its deployment is deleted.
+ *
+ * 1. Registered to the event dispatcher of the process engine at startup, so declaring it as a bean is enough.
+ *
+ * @author VirtualCry
+ */
+@Slf4j
+public class ProcessDefinitionCacheInvalidator implements ActivitiEventListener, ApplicationContextAware, SmartInitializingSingleton {
+
+    private ApplicationContext          ctx;
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.ctx = applicationContext;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        ProcessEngineConfigurationImpl processEngineConfiguration = (ProcessEngineConfigurationImpl) this.ctx
+                .getBean(ProcessEngine.class).getProcessEngineConfiguration();
+        processEngineConfiguration.getEventDispatcher().addEventListener(this, ActivitiEventType.ENTITY_DELETED);
+    }
+
+    @Override
+    public void onEvent(ActivitiEvent event) {
+        if (event instanceof ActivitiEntityEvent && ((ActivitiEntityEvent) event).getEntity() instanceof ProcessDefinition)
+            this.invalidate(((ProcessDefinition) ((ActivitiEntityEvent) event).getEntity()).getId());
+    }
+
+    @Override
+    public boolean isFailOnException() {
+        return false;
+    }
+
+    /**
+     * Invalidate all entries of the process definition.
+     *
+     * @param processDefinitionId   processDefinitionId
+     */
+    public void invalidate(String processDefinitionId) {
+        log.debug("Invalidate caches of process definition [{}].", processDefinitionId);
+        this.ctx.getBeansOfType(ProcessDefinitionScopedCache.class).values()
+                .forEach(cache -> cache.invalidate(processDefinitionId));
+    }
+}
@@ -0,0 +1,57 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Cache Manager for entries computed from process definitions, keyed by process definition id and then by key,
+ * such as element id.
+ *
+ * Warning:
+ * 1. Entries usually hold compiled expressions or BPMN model elements, so use local cache only.
+ *
+ * @author VirtualCry
+ */
+public class ProcessDefinitionCacheManager<K, V> extends DelegateCacheManager<String, Map<K, V>>
+        implements ProcessDefinitionScopedCache {
+
+    public ProcessDefinitionCacheManager() {
+        this(new LocalCacheManagerImpl<>());
+    }
+
+    public ProcessDefinitionCacheManager(CacheManager<String, Map<K, V>> delegate) {
+        super(delegate);
+    }
+
+
+    /**
+     * Get entry of the process definition, compute it if absent.
+     *
+     * @param processDefinitionId   processDefinitionId
+     * @param key                   key
+     * @param mappingFunction       mappingFunction
+     * @return The entry.
+     */
+    public V get(String processDefinitionId, K key, Function<? super K, ? extends V> mappingFunction) {
+        return this.computeIfAbsent(processDefinitionId, definitionId -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public void invalidate(String processDefinitionId) {
+        this.remove(processDefinitionId);
+    }
+}
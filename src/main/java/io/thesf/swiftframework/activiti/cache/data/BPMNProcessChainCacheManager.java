@@ -1,24 +1,35 @@
-/* Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package io.thesf.swiftframework.activiti.cache.data;
-
-import io.thesf.swiftframework.activiti.api.runtime.model.BPMNProcessChain;
-import io.thesf.swiftframework.activiti.cache.CacheManager;
-
-/**
- * Cache Manager for {@link BPMNProcessChain}.
- *
- * @author VirtualCry
- */
-public interface BPMNProcessChainCacheManager extends CacheManager<String, BPMNProcessChain> {
-}
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.cache.data;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.BPMNProcessChain;
+import io.thesf.swiftframework.activiti.cache.CacheManager;
+
+/**
+ * Cache Manager for {@link BPMNProcessChain}.
+ *
+ * @author VirtualCry
+ */
+public interface BPMNProcessChainCacheManager extends CacheManager<String, BPMNProcessChain> {
+
+    /**
+     * Run the action as one update of the chain of the process instance.
+     * Implementations may load the chain once before the action and write it back once after the action.
+     *
+     * @param processInstanceId processInstanceId
+     * @param action            action
+     */
+    default void batchUpdate(String processInstanceId, Runnable action) {
+        action.run();
+    }
+}
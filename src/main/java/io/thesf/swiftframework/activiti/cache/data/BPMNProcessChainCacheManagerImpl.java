@@ -1,34 +1,126 @@
-/* Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package io.thesf.swiftframework.activiti.cache.data;
-
-import io.thesf.swiftframework.activiti.api.runtime.model.BPMNProcessChain;
-import io.thesf.swiftframework.activiti.cache.CacheManager;
-import io.thesf.swiftframework.activiti.cache.DelegateCacheManager;
-
-/**
- * Implement of {@link BPMNProcessChainCacheManager}.
- *
- * Warning:
- * 1. Local cache is used by default. If the workflow service is deployed as multiple instances,
- * use distributed cache, such as Redis, Memcache, etc.
- *
- * @author VirtualCry
- */
-public class BPMNProcessChainCacheManagerImpl extends DelegateCacheManager<String, BPMNProcessChain>
-        implements BPMNProcessChainCacheManager {
-
-    public BPMNProcessChainCacheManagerImpl(CacheManager<String, BPMNProcessChain> delegate) {
-        super(delegate);
-    }
-}
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.cache.data;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.BPMNProcessChain;
+import io.thesf.swiftframework.activiti.cache.CacheManager;
+import io.thesf.swiftframework.activiti.cache.DelegateCacheManager;
+
+import java.util.function.Function;
+
+/**
+ * Implement of {@link BPMNProcessChainCacheManager}.
+ *
+ * 1. Within {@link #batchUpdate(String, Runnable)}, the chain of the process instance is read from the delegate once,
+ * all reads and writes of that process instance are served by the pinned chain, and the result is written back once.
+ *
+ * Warning:
+ * 1. Local cache is used by default. If the workflow service is deployed as multiple instances,
+ * use distributed cache, such as Redis, Memcache, etc.
+ *
+ * @author VirtualCry
+ */
+public class BPMNProcessChainCacheManagerImpl extends DelegateCacheManager<String, BPMNProcessChain>
+        implements BPMNProcessChainCacheManager {
+
+    private final ThreadLocal<PinnedChain>      pinnedChain = new ThreadLocal<>();
+
+    public BPMNProcessChainCacheManagerImpl(CacheManager<String, BPMNProcessChain> delegate) {
+        super(delegate);
+    }
+
+
+    @Override
+    public void batchUpdate(String processInstanceId, Runnable action) {
+        if (processInstanceId == null || this.pinnedChain.get() != null) {
+            action.run();
+            return;
+        }
+
+        PinnedChain pinned = new PinnedChain(processInstanceId, super.get(processInstanceId));
+        this.pinnedChain.set(pinned);
+        try {
+            action.run();
+        } finally {
+            this.pinnedChain.remove();
+            if (pinned.chain != null)
+                super.put(processInstanceId, pinned.chain);
+            else if (pinned.removed)
+                super.remove(processInstanceId);
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        PinnedChain pinned = this.getPinnedChain(key);
+        return pinned != null ? pinned.chain != null : super.containsKey(key);
+    }
+
+    @Override
+    public BPMNProcessChain get(Object key) {
+        PinnedChain pinned = this.getPinnedChain(key);
+        return pinned != null ? pinned.chain : super.get(key);
+    }
+
+    @Override
+    public BPMNProcessChain put(String key, BPMNProcessChain value) {
+        PinnedChain pinned = this.getPinnedChain(key);
+        if (pinned == null)
+            return super.put(key, value);
+        BPMNProcessChain previous = pinned.chain;
+        pinned.chain = value;
+        return previous;
+    }
+
+    @Override
+    public BPMNProcessChain remove(Object key) {
+        PinnedChain pinned = this.getPinnedChain(key);
+        if (pinned == null)
+            return super.remove(key);
+        BPMNProcessChain previous = pinned.chain;
+        pinned.chain = null;
+        pinned.removed = true;
+        return previous;
+    }
+
+    @Override
+    public BPMNProcessChain computeIfAbsent(String key, Function<? super String, ? extends BPMNProcessChain> mappingFunction) {
+        PinnedChain pinned = this.getPinnedChain(key);
+        if (pinned == null)
+            return super.computeIfAbsent(key, mappingFunction);
+        if (pinned.chain == null)
+            pinned.chain = mappingFunction.apply(key);
+        return pinned.chain;
+    }
+
+    private PinnedChain getPinnedChain(Object key) {
+        PinnedChain pinned = this.pinnedChain.get();
+        return pinned != null && pinned.processInstanceId.equals(key) ? pinned : null;
+    }
+
+
+    /**
+     * The chain of the process instance under {@link #batchUpdate(String, Runnable)}.
+     */
+    private static class PinnedChain {
+
+        private final String                processInstanceId;
+        private BPMNProcessChain            chain;
+        private boolean                     removed;
+
+        PinnedChain(String processInstanceId, BPMNProcessChain chain) {
+            this.processInstanceId = processInstanceId;
+            this.chain = chain;
+        }
+    }
+}
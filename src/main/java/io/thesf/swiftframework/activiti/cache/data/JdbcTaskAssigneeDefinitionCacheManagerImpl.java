@@ -0,0 +1,355 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.cache.data;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.TaskAssigneeDefinition;
+import io.thesf.swiftframework.activiti.api.runtime.model.impl.TaskAssigneeDefinitionImpl;
+import io.thesf.swiftframework.activiti.cache.CacheManager;
+import io.thesf.swiftframework.activiti.cache.LruCacheManagerImpl;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Implement of {@link TaskAssigneeDefinitionCacheManager}. Store definitions in the table of the engine {@link DataSource},
+ * with a bounded read-through cache of definitions per process instance in front.
+ *
+ * 1. Writes go to the table directly, {@link #saveAll(Collection)} is one batched insert.
+ * 2. Definitions of a process instance are loaded with one query by index, and cached until they expire.
+ * 3. Cached definitions of a process instance are evicted when it is written on this node, and again after the transaction completes.
+ * Until then, definitions of the process instance read inside the writing transaction are not cached,
+ * so that uncommitted definitions are never visible to other transactions.
+ * 4. Each assignee of a definition, see {@link TaskAssigneeIndex#parseAssignees(String)}, is written to the table suffixed with
+ * {@literal _USER}, so that definitions of an assignee are queried by index.
+ *
+ * Warning:
+ * 1. The {@link DataSource} must be the one managed by the transaction manager of the process engine,
+ * otherwise definitions are not written in the engine transaction.
+ * 2. Writes of other nodes are visible after the cached definitions expire. Set the time to live to zero to disable the cache.
+ * 3. Views, such as {@link #keySet()} and {@link #values()}, scan the whole table.
+ * 4. The table is created by the scripts in {@literal io/thesf/swiftframework/activiti/db/create}.
+ *
+ * @author VirtualCry
+ */
+public class JdbcTaskAssigneeDefinitionCacheManagerImpl extends AbstractMap<String, TaskAssigneeDefinition>
+        implements TaskAssigneeDefinitionCacheManager {
+
+    public static final String      DEFAULT_TABLE_NAME = "ACT_SWIFT_TASK_ASSIGNEE";
+
+    private static final int        DEFAULT_CACHE_CAPACITY = 10000;
+    private static final long       DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(1);
+
+    private static final RowMapper<TaskAssigneeDefinition> ROW_MAPPER = (resultSet, rowNum) -> TaskAssigneeDefinitionImpl.builder()
+            .id(resultSet.getString("ID_"))
+            .processInstanceId(resultSet.getString("PROC_INST_ID_"))
+            .taskDefinitionKey(resultSet.getString("TASK_DEF_KEY_"))
+            .assignee(resultSet.getString("ASSIGNEE_"))
+            .build();
+
+    private final JdbcTemplate                                      jdbcTemplate;
+    private final CacheManager<String, CachedDefinitions>           cache;
+    private final long                                              timeToLive;
+    private final String                                            insertSql;
+    private final String                                            updateSql;
+    private final String                                            deleteSql;
+    private final String                                            deleteByProcessInstanceIdSql;
+    private final String                                            deleteAllSql;
+    private final String                                            selectSql;
+    private final String                                            selectByIdSql;
+    private final String                                            selectByProcessInstanceIdSql;
+    private final String                                            countSql;
+    private final String                                            insertUserSql;
+    private final String                                            deleteUserSql;
+    private final String                                            deleteUserByProcessInstanceIdSql;
+    private final String                                            deleteAllUserSql;
+    private final String                                            selectByAssigneeSql;
+    private final String                                            selectByAssigneeAfterSql;
+    private final String                                            countByAssigneeSql;
+
+    public JdbcTaskAssigneeDefinitionCacheManagerImpl(DataSource dataSource) {
+        this(dataSource, DEFAULT_TABLE_NAME, DEFAULT_CACHE_CAPACITY, DEFAULT_TIME_TO_LIVE);
+    }
+
+    public JdbcTaskAssigneeDefinitionCacheManagerImpl(DataSource dataSource,
+                                                      String tableName,
+                                                      int cacheCapacity,
+                                                      long timeToLive) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.cache = new LruCacheManagerImpl<>(cacheCapacity);
+        this.timeToLive = timeToLive;
+        this.insertSql = "insert into " + tableName + " (ID_, PROC_INST_ID_, TASK_DEF_KEY_, ASSIGNEE_) values (?, ?, ?, ?)";
+        this.updateSql = "update " + tableName + " set PROC_INST_ID_ = ?, TASK_DEF_KEY_ = ?, ASSIGNEE_ = ? where ID_ = ?";
+        this.deleteSql = "delete from " + tableName + " where ID_ = ?";
+        this.deleteByProcessInstanceIdSql = "delete from " + tableName + " where PROC_INST_ID_ = ?";
+        this.deleteAllSql = "delete from " + tableName;
+        this.selectSql = "select ID_, PROC_INST_ID_, TASK_DEF_KEY_, ASSIGNEE_ from " + tableName;
+        this.selectByIdSql = selectSql + " where ID_ = ?";
+        this.selectByProcessInstanceIdSql = selectSql + " where PROC_INST_ID_ = ?";
+        this.countSql = "select count(*) from " + tableName;
+
+        String userTableName = tableName + "_USER";
+        this.insertUserSql = "insert into " + userTableName + " (ASSIGNEE_, DEF_ID_, PROC_INST_ID_, TASK_DEF_KEY_) values (?, ?, ?, ?)";
+        this.deleteUserSql = "delete from " + userTableName + " where DEF_ID_ = ?";
+        this.deleteUserByProcessInstanceIdSql = "delete from " + userTableName + " where PROC_INST_ID_ = ?";
+        this.deleteAllUserSql = "delete from " + userTableName;
+        String selectByAssigneePrefixSql = "select D.ID_, D.PROC_INST_ID_, D.TASK_DEF_KEY_, D.ASSIGNEE_ from " + userTableName + " U"
+                + " inner join " + tableName + " D on D.ID_ = U.DEF_ID_"
+                + " where U.ASSIGNEE_ = ?";
+        String selectByAssigneeSuffixSql = " order by U.PROC_INST_ID_, U.TASK_DEF_KEY_, U.DEF_ID_ limit ?";
+        this.selectByAssigneeSql = selectByAssigneePrefixSql + selectByAssigneeSuffixSql;
+        this.selectByAssigneeAfterSql = selectByAssigneePrefixSql
+                + " and (U.PROC_INST_ID_ > ? or (U.PROC_INST_ID_ = ? and (U.TASK_DEF_KEY_ > ? or (U.TASK_DEF_KEY_ = ? and U.DEF_ID_ > ?))))"
+                + selectByAssigneeSuffixSql;
+        this.countByAssigneeSql = "select count(*) from " + userTableName + " where ASSIGNEE_ = ?";
+    }
+
+
+    @Override
+    public List<TaskAssigneeDefinition> findByProcessInstanceId(String processInstanceId) {
+        if (timeToLive <= 0)
+            return this.load(processInstanceId);
+
+        // Definitions written by current transaction are read from the table, and not cached before it completes
+        if (this.isPendingEviction(processInstanceId))
+            return this.load(processInstanceId);
+
+        long now = System.currentTimeMillis();
+        CachedDefinitions cachedDefinitions = cache.get(processInstanceId);
+        if (cachedDefinitions == null || now - cachedDefinitions.getLoadTime() > timeToLive) {
+            cachedDefinitions = new CachedDefinitions(Collections.unmodifiableList(this.load(processInstanceId)), now);
+            cache.put(processInstanceId, cachedDefinitions);
+        }
+        return cachedDefinitions.getDefinitions();
+    }
+
+    @Override
+    public Optional<TaskAssigneeDefinition> findByProcessInstanceIdAndTaskDefinitionKey(String processInstanceId, String taskDefinitionKey) {
+        return this.findByProcessInstanceId(processInstanceId).stream()
+                .filter(taskAssigneeDefinition -> taskAssigneeDefinition.getTaskDefinitionKey().equals(taskDefinitionKey))
+                .findAny();
+    }
+
+    @Override
+    public void saveAll(Collection<? extends TaskAssigneeDefinition> taskAssigneeDefinitions) {
+        if (taskAssigneeDefinitions.isEmpty())
+            return;
+
+        // Replace rows of the same ids, then insert all with one batch.
+        List<Object[]> ids = taskAssigneeDefinitions.stream()
+                .map(taskAssigneeDefinition -> new Object[] { taskAssigneeDefinition.getId() })
+                .collect(Collectors.toList());
+        jdbcTemplate.batchUpdate(deleteUserSql, ids);
+        jdbcTemplate.batchUpdate(deleteSql, ids);
+        jdbcTemplate.batchUpdate(insertSql, taskAssigneeDefinitions.stream()
+                .map(taskAssigneeDefinition -> new Object[] {
+                        taskAssigneeDefinition.getId(),
+                        taskAssigneeDefinition.getProcessInstanceId(),
+                        taskAssigneeDefinition.getTaskDefinitionKey(),
+                        taskAssigneeDefinition.getAssignee()
+                })
+                .collect(Collectors.toList()));
+        jdbcTemplate.batchUpdate(insertUserSql, taskAssigneeDefinitions.stream()
+                .flatMap(taskAssigneeDefinition -> TaskAssigneeIndex.parseAssignees(taskAssigneeDefinition.getAssignee()).stream()
+                        .map(assignee -> new Object[] {
+                                assignee,
+                                taskAssigneeDefinition.getId(),
+                                taskAssigneeDefinition.getProcessInstanceId(),
+                                taskAssigneeDefinition.getTaskDefinitionKey()
+                        }))
+                .collect(Collectors.toList()));
+
+        this.evict(taskAssigneeDefinitions.stream()
+                .map(TaskAssigneeDefinition::getProcessInstanceId)
+                .collect(Collectors.toSet()));
+    }
+
+    @Override
+    public void removeByProcessInstanceId(String processInstanceId) {
+        jdbcTemplate.update(deleteUserByProcessInstanceIdSql, processInstanceId);
+        jdbcTemplate.update(deleteByProcessInstanceIdSql, processInstanceId);
+        this.evict(Collections.singleton(processInstanceId));
+    }
+
+    @Override
+    public List<TaskAssigneeDefinition> findByAssignee(String assignee, TaskAssigneeDefinition after, int maxResults) {
+        if (maxResults <= 0)
+            return Collections.emptyList();
+        if (after == null)
+            return jdbcTemplate.query(selectByAssigneeSql, ROW_MAPPER, assignee, maxResults);
+        return jdbcTemplate.query(selectByAssigneeAfterSql, ROW_MAPPER, assignee,
+                after.getProcessInstanceId(), after.getProcessInstanceId(),
+                after.getTaskDefinitionKey(), after.getTaskDefinitionKey(),
+                after.getId(), maxResults);
+    }
+
+    @Override
+    public int countByAssignee(String assignee) {
+        Integer count = jdbcTemplate.queryForObject(countByAssigneeSql, Integer.class, assignee);
+        return count != null ? count : 0;
+    }
+
+    @Override
+    public int size() {
+        Integer count = jdbcTemplate.queryForObject(countSql, Integer.class);
+        return count != null ? count : 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.get(key) != null;
+    }
+
+    @Override
+    public TaskAssigneeDefinition get(Object key) {
+        return jdbcTemplate.query(selectByIdSql, ROW_MAPPER, key).stream().findAny().orElse(null);
+    }
+
+    @Override
+    public TaskAssigneeDefinition put(String key, TaskAssigneeDefinition value) {
+        TaskAssigneeDefinition previous = this.get(key);
+        if (previous != null) {
+            jdbcTemplate.update(deleteUserSql, key);
+            jdbcTemplate.update(updateSql, value.getProcessInstanceId(), value.getTaskDefinitionKey(), value.getAssignee(), key);
+        } else
+            jdbcTemplate.update(insertSql, key, value.getProcessInstanceId(), value.getTaskDefinitionKey(), value.getAssignee());
+        jdbcTemplate.batchUpdate(insertUserSql, TaskAssigneeIndex.parseAssignees(value.getAssignee()).stream()
+                .map(assignee -> new Object[] { assignee, key, value.getProcessInstanceId(), value.getTaskDefinitionKey() })
+                .collect(Collectors.toList()));
+
+        Set<String> processInstanceIds = new HashSet<>();
+        processInstanceIds.add(value.getProcessInstanceId());
+        if (previous != null)
+            processInstanceIds.add(previous.getProcessInstanceId());
+        this.evict(processInstanceIds);
+        return previous;
+    }
+
+    @Override
+    public TaskAssigneeDefinition remove(Object key) {
+        TaskAssigneeDefinition previous = this.get(key);
+        if (previous != null) {
+            jdbcTemplate.update(deleteUserSql, key);
+            jdbcTemplate.update(deleteSql, key);
+            this.evict(Collections.singleton(previous.getProcessInstanceId()));
+        }
+        return previous;
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends TaskAssigneeDefinition> m) {
+        m.forEach(this::put);
+    }
+
+    @Override
+    public void clear() {
+        jdbcTemplate.update(deleteAllUserSql);
+        jdbcTemplate.update(deleteAllSql);
+        cache.clear();
+    }
+
+    @Override
+    public Set<Entry<String, TaskAssigneeDefinition>> entrySet() {
+        Set<Entry<String, TaskAssigneeDefinition>> entries = new LinkedHashSet<>();
+        jdbcTemplate.query(selectSql, ROW_MAPPER)
+                .forEach(taskAssigneeDefinition -> entries.add(new SimpleImmutableEntry<>(taskAssigneeDefinition.getId(), taskAssigneeDefinition)));
+        return entries;
+    }
+
+    /**
+     * Load definitions of the process instance from the table.
+     *
+     * @param processInstanceId processInstanceId
+     * @return The definitions.
+     */
+    protected List<TaskAssigneeDefinition> load(String processInstanceId) {
+        return jdbcTemplate.query(selectByProcessInstanceIdSql, ROW_MAPPER, processInstanceId);
+    }
+
+    /**
+     * Evict cached definitions of the process instances now, and again after current transaction completes.
+     *
+     * @param processInstanceIds processInstanceIds
+     */
+    protected void evict(Collection<String> processInstanceIds) {
+        processInstanceIds.forEach(cache::remove);
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+            this.getEvictionTransactionBuffer().addAll(processInstanceIds);
+    }
+
+    /**
+     * Whether the process instance is written by current transaction, and its cached definitions are evicted after it completes.
+     *
+     * @param processInstanceId processInstanceId
+     * @return true if the eviction is pending.
+     */
+    protected boolean isPendingEviction(String processInstanceId) {
+        EvictionTransactionBuffer evictionBuffer = (EvictionTransactionBuffer) TransactionSynchronizationManager.getResource(this);
+        return evictionBuffer != null && evictionBuffer.contains(processInstanceId);
+    }
+
+    /**
+     * Get the buffer bound to current transaction.
+     *
+     * @return The {@link EvictionTransactionBuffer}.
+     */
+    protected EvictionTransactionBuffer getEvictionTransactionBuffer() {
+        EvictionTransactionBuffer evictionBuffer = (EvictionTransactionBuffer) TransactionSynchronizationManager.getResource(this);
+        if (evictionBuffer == null) {
+            evictionBuffer = new EvictionTransactionBuffer();
+            TransactionSynchronizationManager.registerSynchronization(evictionBuffer);
+            TransactionSynchronizationManager.bindResource(this, evictionBuffer);
+        }
+        return evictionBuffer;
+    }
+
+
+    /**
+     * Definitions of one process instance in cache.
+     */
+    @AllArgsConstructor
+    @Getter
+    protected static class CachedDefinitions {
+        private final List<TaskAssigneeDefinition>  definitions;
+        private final long                          loadTime;
+    }
+
+    /**
+     * Process instances written in current transaction.
+     */
+    protected class EvictionTransactionBuffer extends TransactionSynchronizationAdapter {
+
+        private final Set<String>       processInstanceIds = new HashSet<>();
+
+        public void addAll(Collection<String> processInstanceIds) {
+            this.processInstanceIds.addAll(processInstanceIds);
+        }
+
+        public boolean contains(String processInstanceId) {
+            return this.processInstanceIds.contains(processInstanceId);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(JdbcTaskAssigneeDefinitionCacheManagerImpl.this);
+            this.processInstanceIds.forEach(cache::remove);
+        }
+    }
+}
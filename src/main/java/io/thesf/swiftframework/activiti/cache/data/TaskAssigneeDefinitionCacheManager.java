@@ -1,31 +1,66 @@
-/* Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package io.thesf.swiftframework.activiti.cache.data;
-
-import io.thesf.swiftframework.activiti.api.runtime.model.TaskAssigneeDefinition;
-import io.thesf.swiftframework.activiti.cache.CacheManager;
-
-import java.util.List;
-import java.util.Optional;
-
-/**
- * Cache Manager for {@link TaskAssigneeDefinition}.
- *
- * @author VirtualCry
- */
-public interface TaskAssigneeDefinitionCacheManager extends CacheManager<String, TaskAssigneeDefinition> {
-
-    List<TaskAssigneeDefinition> findByProcessInstanceId(String processInstanceId);
-
-    Optional<TaskAssigneeDefinition> findByProcessInstanceIdAndTaskDefinitionKey(String processInstanceId, String taskDefinitionKey);
-}
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.cache.data;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.TaskAssigneeDefinition;
+import io.thesf.swiftframework.activiti.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Cache Manager for {@link TaskAssigneeDefinition}.
+ *
+ * @author VirtualCry
+ */
+public interface TaskAssigneeDefinitionCacheManager extends CacheManager<String, TaskAssigneeDefinition> {
+
+    List<TaskAssigneeDefinition> findByProcessInstanceId(String processInstanceId);
+
+    Optional<TaskAssigneeDefinition> findByProcessInstanceIdAndTaskDefinitionKey(String processInstanceId, String taskDefinitionKey);
+
+    /**
+     * Save definitions, keyed by their ids, with one batched write if supported.
+     *
+     * @param taskAssigneeDefinitions taskAssigneeDefinitions
+     */
+    void saveAll(Collection<? extends TaskAssigneeDefinition> taskAssigneeDefinitions);
+
+    /**
+     * Remove all definitions of the process instance.
+     *
+     * @param processInstanceId processInstanceId
+     */
+    void removeByProcessInstanceId(String processInstanceId);
+
+    /**
+     * Find one page of the definitions assigned to the user, sorted by process instance, task definition key, then id.
+     * A definition with multiple assignees, such as {@literal SYSTEM_JOINTLY_ASSIGN}, is found by each of them.
+     * Pages are found by the last definition of the previous page, instead of by offset.
+     *
+     * @param assignee      assignee
+     * @param after         last definition of the previous page, null for the first page
+     * @param maxResults    max size of the page
+     * @return The definitions.
+     */
+    List<TaskAssigneeDefinition> findByAssignee(String assignee, TaskAssigneeDefinition after, int maxResults);
+
+    /**
+     * Count the definitions assigned to the user.
+     *
+     * @param assignee assignee
+     * @return The count.
+     */
+    int countByAssignee(String assignee);
+}
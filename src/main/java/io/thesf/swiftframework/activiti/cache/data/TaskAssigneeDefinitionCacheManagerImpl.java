@@ -1,52 +1,145 @@
-/* Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package io.thesf.swiftframework.activiti.cache.data;
-
-import io.thesf.swiftframework.activiti.api.runtime.model.TaskAssigneeDefinition;
-import io.thesf.swiftframework.activiti.cache.CacheManager;
-import io.thesf.swiftframework.activiti.cache.DelegateCacheManager;
-
-import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
-
-/**
- * Implement of {@link TaskAssigneeDefinitionCacheManager}.
- *
- * Warning:
- * 1. Local cache is used by default. If the workflow service is deployed as multiple instances,
- * use distributed cache, such as Redis, Memcache, etc.
- *
- * @author VirtualCry
- */
-public class TaskAssigneeDefinitionCacheManagerImpl extends DelegateCacheManager<String, TaskAssigneeDefinition>
-        implements TaskAssigneeDefinitionCacheManager {
-
-    public TaskAssigneeDefinitionCacheManagerImpl(CacheManager<String, TaskAssigneeDefinition> delegate) {
-        super(delegate);
-    }
-
-    @Override
-    public List<TaskAssigneeDefinition> findByProcessInstanceId(String processInstanceId) {
-        return this.values().stream()
-                .filter(taskAssigneeDefinition -> taskAssigneeDefinition.getProcessInstanceId().equals(processInstanceId))
-                .collect(Collectors.toList());
-    }
-
-    @Override
-    public Optional<TaskAssigneeDefinition> findByProcessInstanceIdAndTaskDefinitionKey(String processInstanceId, String taskDefinitionKey) {
-        return this.values().stream()
-                .filter(taskAssigneeDefinition -> taskAssigneeDefinition.getProcessInstanceId().equals(processInstanceId))
-                .findAny();
-    }
-}
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.cache.data;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.TaskAssigneeDefinition;
+import io.thesf.swiftframework.activiti.cache.CacheManager;
+import io.thesf.swiftframework.activiti.cache.DelegateCacheManager;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Implement of {@link TaskAssigneeDefinitionCacheManager}.
+ *
+ * 1. Definitions are indexed by assignee with {@link TaskAssigneeIndex}, which is kept on each write of this manager.
+ * 2. Ids of definitions are indexed by process instance as well, so that {@link #removeByProcessInstanceId} removes through the index.
+ *
+ * Warning:
+ * 1. Local cache is used by default. If the workflow service is deployed as multiple instances,
+ * use distributed cache, such as Redis, Memcache, etc.
+ * 2. The index only sees writes through this manager. Writes through views, such as {@link #values()},
+ * or to the delegate directly, are not indexed.
+ * 3. The index is kept in the memory of this node. With a distributed delegate, definitions written by other nodes
+ * are not indexed, so {@link #findByAssignee}, {@link #countByAssignee} and {@link #removeByProcessInstanceId} miss them.
+ * Use {@link JdbcTaskAssigneeDefinitionCacheManagerImpl} to query by assignee across nodes.
+ *
+ * @author VirtualCry
+ */
+public class TaskAssigneeDefinitionCacheManagerImpl extends DelegateCacheManager<String, TaskAssigneeDefinition>
+        implements TaskAssigneeDefinitionCacheManager {
+
+    private final TaskAssigneeIndex         assigneeIndex = new TaskAssigneeIndex();
+    private final Map<String, Set<String>>  processInstanceIndex = new HashMap<>();
+
+    public TaskAssigneeDefinitionCacheManagerImpl(CacheManager<String, TaskAssigneeDefinition> delegate) {
+        super(delegate);
+        delegate.forEach((key, value) -> {
+            assigneeIndex.add(value);
+            this.indexProcessInstance(key, value);
+        });
+    }
+
+
+    @Override
+    public synchronized TaskAssigneeDefinition put(String key, TaskAssigneeDefinition value) {
+        TaskAssigneeDefinition previous = super.put(key, value);
+        if (previous != null) {
+            assigneeIndex.remove(previous);
+            this.unindexProcessInstance(key, previous);
+        }
+        assigneeIndex.add(value);
+        this.indexProcessInstance(key, value);
+        return previous;
+    }
+
+    @Override
+    public synchronized TaskAssigneeDefinition remove(Object key) {
+        TaskAssigneeDefinition previous = super.remove(key);
+        if (previous != null) {
+            assigneeIndex.remove(previous);
+            this.unindexProcessInstance((String) key, previous);
+        }
+        return previous;
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends TaskAssigneeDefinition> m) {
+        m.forEach(this::put);
+    }
+
+    @Override
+    public synchronized void clear() {
+        super.clear();
+        assigneeIndex.clear();
+        processInstanceIndex.clear();
+    }
+
+    @Override
+    public synchronized TaskAssigneeDefinition computeIfAbsent(String key,
+                                                               Function<? super String, ? extends TaskAssigneeDefinition> mappingFunction) {
+        TaskAssigneeDefinition value = this.get(key);
+        if (value == null && (value = mappingFunction.apply(key)) != null)
+            this.put(key, value);
+        return value;
+    }
+
+    @Override
+    public List<TaskAssigneeDefinition> findByProcessInstanceId(String processInstanceId) {
+        return this.values().stream()
+                .filter(taskAssigneeDefinition -> taskAssigneeDefinition.getProcessInstanceId().equals(processInstanceId))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Optional<TaskAssigneeDefinition> findByProcessInstanceIdAndTaskDefinitionKey(String processInstanceId, String taskDefinitionKey) {
+        return this.values().stream()
+                .filter(taskAssigneeDefinition -> taskAssigneeDefinition.getProcessInstanceId().equals(processInstanceId)
+                        && taskAssigneeDefinition.getTaskDefinitionKey().equals(taskDefinitionKey))
+                .findAny();
+    }
+
+    @Override
+    public void saveAll(Collection<? extends TaskAssigneeDefinition> taskAssigneeDefinitions) {
+        taskAssigneeDefinitions.forEach(taskAssigneeDefinition -> this.put(taskAssigneeDefinition.getId(), taskAssigneeDefinition));
+    }
+
+    @Override
+    public synchronized void removeByProcessInstanceId(String processInstanceId) {
+        Set<String> keys = processInstanceIndex.get(processInstanceId);
+        if (keys != null)
+            new ArrayList<>(keys).forEach(this::remove);
+    }
+
+    @Override
+    public List<TaskAssigneeDefinition> findByAssignee(String assignee, TaskAssigneeDefinition after, int maxResults) {
+        return assigneeIndex.find(assignee, after, maxResults);
+    }
+
+    @Override
+    public int countByAssignee(String assignee) {
+        return assigneeIndex.count(assignee);
+    }
+
+
+    private void indexProcessInstance(String key, TaskAssigneeDefinition value) {
+        processInstanceIndex.computeIfAbsent(value.getProcessInstanceId(), processInstanceId -> new HashSet<>()).add(key);
+    }
+
+    private void unindexProcessInstance(String key, TaskAssigneeDefinition value) {
+        Set<String> keys = processInstanceIndex.get(value.getProcessInstanceId());
+        if (keys != null && keys.remove(key) && keys.isEmpty())
+            processInstanceIndex.remove(value.getProcessInstanceId());
+    }
+}
@@ -0,0 +1,159 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.cache.data;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.thesf.swiftframework.activiti.api.runtime.model.TaskAssigneeDefinition;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Inverted index from assignee to {@link TaskAssigneeDefinition}.
+ *
+ * 1. A definition is indexed under every assignee of it, see {@link #parseAssignees(String)}.
+ * 2. Definitions of one assignee are sorted by {@link #ORDER}, and paged by the last definition of the previous page,
+ * so that a page is found from the last definition on, instead of skipping the definitions before it.
+ * 3. Definitions of one assignee are counted on each write, so that a count is a lookup.
+ *
+ * Warning:
+ * 1. The index is kept by the owner on each write. Definitions are compared by fields,
+ * so the definition removed must be the one indexed before, not a modified one.
+ * 2. The index is kept in the memory of this node, and only sees the writes of this node.
+ *
+ * @author VirtualCry
+ */
+public class TaskAssigneeIndex {
+
+    /** Order of definitions: process instance, task definition key, then id. */
+    public static final Comparator<TaskAssigneeDefinition> ORDER = Comparator
+            .comparing(TaskAssigneeDefinition::getProcessInstanceId, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(TaskAssigneeDefinition::getTaskDefinitionKey, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(TaskAssigneeDefinition::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, AssigneeDefinitions>      index = new ConcurrentHashMap<>();
+
+
+    /**
+     * Index the definition under its assignees.
+     *
+     * @param taskAssigneeDefinition taskAssigneeDefinition
+     */
+    public void add(TaskAssigneeDefinition taskAssigneeDefinition) {
+        for (String assignee : parseAssignees(taskAssigneeDefinition.getAssignee()))
+            index.compute(assignee, (key, definitions) -> {
+                if (definitions == null)
+                    definitions = new AssigneeDefinitions();
+                if (definitions.definitions.add(taskAssigneeDefinition))
+                    definitions.count++;
+                return definitions;
+            });
+    }
+
+    /**
+     * Remove the definition from its assignees.
+     *
+     * @param taskAssigneeDefinition taskAssigneeDefinition
+     */
+    public void remove(TaskAssigneeDefinition taskAssigneeDefinition) {
+        for (String assignee : parseAssignees(taskAssigneeDefinition.getAssignee()))
+            index.computeIfPresent(assignee, (key, definitions) -> {
+                if (definitions.definitions.remove(taskAssigneeDefinition))
+                    definitions.count--;
+                return definitions.count == 0 ? null : definitions;
+            });
+    }
+
+    public void clear() {
+        index.clear();
+    }
+
+    /**
+     * Find one page of the definitions of the assignee, in {@link #ORDER}.
+     *
+     * @param assignee      assignee
+     * @param after         last definition of the previous page, null for the first page
+     * @param maxResults    max size of the page
+     * @return The definitions.
+     */
+    public List<TaskAssigneeDefinition> find(String assignee, TaskAssigneeDefinition after, int maxResults) {
+        AssigneeDefinitions definitions = index.get(assignee);
+        if (definitions == null || maxResults <= 0)
+            return Collections.emptyList();
+
+        List<TaskAssigneeDefinition> page = new ArrayList<>(Math.min(maxResults, 64));
+        Iterator<TaskAssigneeDefinition> iterator = after != null
+                ? definitions.definitions.tailSet(after, false).iterator()
+                : definitions.definitions.iterator();
+        while (page.size() < maxResults && iterator.hasNext())
+            page.add(iterator.next());
+        return page;
+    }
+
+    /**
+     * Count the definitions of the assignee.
+     *
+     * @param assignee assignee
+     * @return The count.
+     */
+    public int count(String assignee) {
+        AssigneeDefinitions definitions = index.get(assignee);
+        return definitions != null ? definitions.count : 0;
+    }
+
+    /**
+     * Parse the assignees of a definition. The value may be a single assignee, a JSON array,
+     * such as the list of {@link io.thesf.swiftframework.activiti.api.runtime.model.ExecutionVariables#SYSTEM_JOINTLY_ASSIGN},
+     * or a comma separated list.
+     *
+     * @param assignee assignee of the definition
+     * @return The distinct assignees.
+     */
+    public static Collection<String> parseAssignees(String assignee) {
+        if (StringUtils.isEmpty(assignee))
+            return Collections.emptySet();
+
+        Set<String> assignees = new LinkedHashSet<>();
+        String value = assignee.trim();
+        if (value.startsWith("[")) {
+            try {
+                for (JsonNode node : objectMapper.readTree(value))
+                    if (!node.isNull() && !StringUtils.isEmpty(node.asText()))
+                        assignees.add(node.asText());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex); }
+        } else {
+            for (String token : StringUtils.commaDelimitedListToStringArray(value))
+                if (!StringUtils.isEmpty(token.trim()))
+                    assignees.add(token.trim());
+        }
+        return assignees;
+    }
+
+
+    /**
+     * Definitions of one assignee, counted on each write.
+     */
+    private static class AssigneeDefinitions {
+
+        private final NavigableSet<TaskAssigneeDefinition>  definitions = new ConcurrentSkipListSet<>(ORDER);
+        private volatile int                                count;
+    }
+}
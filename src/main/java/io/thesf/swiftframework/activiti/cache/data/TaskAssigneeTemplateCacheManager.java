@@ -0,0 +1,36 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.cache.data;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.TaskAssigneeTemplate;
+import io.thesf.swiftframework.activiti.cache.CacheManager;
+
+import java.util.Map;
+
+/**
+ * Cache Manager for {@link TaskAssigneeTemplate}.
+ *
+ * @author VirtualCry
+ */
+public interface TaskAssigneeTemplateCacheManager extends CacheManager<String, TaskAssigneeTemplate> {
+
+    /**
+     * Find templates applied to the version of the process definition, keyed by task definition key.
+     * A template of the version takes precedence over the one without version.
+     *
+     * @param processDefinitionKey      processDefinitionKey
+     * @param processDefinitionVersion  processDefinitionVersion
+     * @return The templates.
+     */
+    Map<String, TaskAssigneeTemplate> findByProcessDefinition(String processDefinitionKey, Integer processDefinitionVersion);
+}
@@ -0,0 +1,313 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.bpmn.analysis;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.impl.BPMNActivityChainImpl;
+import lombok.Getter;
+import org.activiti.api.process.model.BPMNActivity;
+import org.activiti.bpmn.model.*;
+import org.activiti.bpmn.model.Process;
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Static analysis of the {@link Process} model of one process definition.
+ *
+ * 1. Each flow node, including those in sub processes, is given a dense id, which is its index.
+ * 2. Fan-out count is the number of outgoing flows taken by the flow node, when it does not depend on the process instance.
+ * 3. Task predecessors are the tasks which may be the last task before the flow node, by the definition.
+ * 4. Reachability is the set of flow nodes reachable from the flow node through sequence flows.
+ * 5. Task predicate judges activities by the kind of their flow node, and by the activity type if the flow node is unknown.
+ *
+ * The analysis is immutable, so it can be shared by all process instances of the process definition.
+ *
+ * @see ProcessDefinitionAnalyzer
+ * @author VirtualCry
+ */
+public class ProcessDefinitionAnalysis {
+
+    /** Fan-out count which depends on the process instance. */
+    public static final int             DYNAMIC_FAN_OUT = -1;
+
+    @Getter
+    private final String                processDefinitionId;
+    private final String[]              elementIds;
+    private final Map<String, Integer>  indexes;
+    private final ElementKind[]         kinds;
+    private final int[]                 fanOutCounts;
+    private final BitSet[]              taskPredecessors;
+    private final BitSet[]              reachability;
+    @Getter
+    private final Predicate<BPMNActivity>   taskPredicate;
+
+    public ProcessDefinitionAnalysis(String processDefinitionId, Process bpmnProcess) {
+        this.processDefinitionId = processDefinitionId;
+        this.taskPredicate = activity -> this.contains(activity.getElementId())
+                ? this.isTask(activity.getElementId())
+                : BPMNActivityChainImpl.isTask(activity);
+
+        // Give each flow node a dense id
+        List<FlowNode> flowNodes = bpmnProcess.findFlowElementsOfType(FlowNode.class, true);
+        int size = flowNodes.size();
+        this.elementIds = new String[size];
+        this.indexes = new HashMap<>(size * 2);
+        this.kinds = new ElementKind[size];
+        this.fanOutCounts = new int[size];
+        for (int i = 0; i < size; i++) {
+            FlowNode flowNode = flowNodes.get(i);
+            this.elementIds[i] = flowNode.getId();
+            this.indexes.put(flowNode.getId(), i);
+            this.kinds[i] = ElementKind.of(flowNode);
+            this.fanOutCounts[i] = fanOutCountOf(flowNode);
+        }
+
+        // Build adjacency of flow nodes
+        int[][] successors = new int[size][];
+        int[][] predecessors = new int[size][];
+        for (int i = 0; i < size; i++) {
+            successors[i] = this.toIndexes(flowNodes.get(i).getOutgoingFlows(), SequenceFlow::getTargetRef);
+            predecessors[i] = this.toIndexes(flowNodes.get(i).getIncomingFlows(), SequenceFlow::getSourceRef);
+        }
+
+        this.taskPredecessors = new BitSet[size];
+        this.reachability = new BitSet[size];
+        for (int i = 0; i < size; i++) {
+            this.taskPredecessors[i] = this.traverse(i, predecessors, true);
+            this.reachability[i] = this.traverse(i, successors, false);
+        }
+    }
+
+
+    /**
+     * Get the number of flow nodes.
+     *
+     * @return size
+     */
+    public int size() {
+        return this.elementIds.length;
+    }
+
+    /**
+     * Get dense id of the flow node.
+     *
+     * @param elementId elementId
+     * @return index, or -1 if it is not a flow node of the process definition.
+     */
+    public int indexOf(String elementId) {
+        Integer index = this.indexes.get(elementId);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Get element id of the dense id.
+     *
+     * @param index index
+     * @return elementId
+     */
+    public String getElementId(int index) {
+        return this.elementIds[index];
+    }
+
+    /**
+     * Judge if the process definition has the flow node.
+     *
+     * @param elementId elementId
+     * @return result
+     */
+    public boolean contains(String elementId) {
+        return this.indexes.containsKey(elementId);
+    }
+
+    /**
+     * Get kind of the flow node.
+     *
+     * @param elementId elementId
+     * @return The {@link ElementKind}, or null if it is not a flow node of the process definition.
+     */
+    public ElementKind getKind(String elementId) {
+        int index = this.indexOf(elementId);
+        return index < 0 ? null : this.kinds[index];
+    }
+
+    /**
+     * Judge if the flow node is a {@link Task}.
+     *
+     * @param elementId elementId
+     * @return result
+     */
+    public boolean isTask(String elementId) {
+        return this.getKind(elementId) == ElementKind.TASK;
+    }
+
+    /**
+     * Get the number of outgoing flows taken by the flow node.
+     *
+     * @param elementId elementId
+     * @return The count, or {@link #DYNAMIC_FAN_OUT} if it depends on the process instance.
+     */
+    public int getFanOutCount(String elementId) {
+        int index = this.indexOf(elementId);
+        return index < 0 ? 0 : this.fanOutCounts[index];
+    }
+
+    /**
+     * Get the tasks which may be the last task before the flow node.
+     *
+     * @param elementId elementId
+     * @return The element ids of the tasks.
+     */
+    public Set<String> getTaskPredecessors(String elementId) {
+        int index = this.indexOf(elementId);
+        return index < 0 ? Collections.emptySet() : this.toElementIds(this.taskPredecessors[index]);
+    }
+
+    /**
+     * Get the flow nodes reachable from the flow node.
+     *
+     * @param elementId elementId
+     * @return The element ids of the flow nodes.
+     */
+    public Set<String> getReachableElements(String elementId) {
+        int index = this.indexOf(elementId);
+        return index < 0 ? Collections.emptySet() : this.toElementIds(this.reachability[index]);
+    }
+
+    /**
+     * Judge if the target flow node is reachable from the source flow node through sequence flows.
+     *
+     * @param sourceElementId   sourceElementId
+     * @param targetElementId   targetElementId
+     * @return result
+     */
+    public boolean isReachable(String sourceElementId, String targetElementId) {
+        int sourceIndex = this.indexOf(sourceElementId);
+        int targetIndex = this.indexOf(targetElementId);
+        return sourceIndex >= 0 && targetIndex >= 0 && this.reachability[sourceIndex].get(targetIndex);
+    }
+
+
+    /**
+     * Calculate fan-out count of the flow node statically.
+     *
+     * @param flowNode  flowNode
+     * @return The count, or {@link #DYNAMIC_FAN_OUT}.
+     */
+    private static int fanOutCountOf(FlowNode flowNode) {
+        List<SequenceFlow> outgoingFlows = flowNode.getOutgoingFlows();
+        if (flowNode instanceof ExclusiveGateway)
+            return Math.min(1, outgoingFlows.size());
+        else if (flowNode instanceof InclusiveGateway) {
+            // Without conditions and skip expressions, all flows except the default flow are taken.
+            String defaultSequenceFlowId = ((InclusiveGateway) flowNode).getDefaultFlow();
+            int unconditionalCount = 0;
+            for (SequenceFlow outgoingFlow : outgoingFlows) {
+                if (StringUtils.hasText(outgoingFlow.getConditionExpression()) || StringUtils.hasText(outgoingFlow.getSkipExpression()))
+                    return DYNAMIC_FAN_OUT;
+                if (defaultSequenceFlowId == null || !defaultSequenceFlowId.equals(outgoingFlow.getId()))
+                    unconditionalCount++;
+            }
+            return unconditionalCount > 0 ? unconditionalCount : Math.min(1, outgoingFlows.size());
+        }
+        else
+            return outgoingFlows.size();
+    }
+
+    private int[] toIndexes(List<SequenceFlow> sequenceFlows, Function<SequenceFlow, String> elementIdGetter) {
+        return sequenceFlows.stream()
+                .mapToInt(sequenceFlow -> this.indexOf(elementIdGetter.apply(sequenceFlow)))
+                .filter(index -> index >= 0)
+                .toArray();
+    }
+
+    /**
+     * Traverse flow nodes from the flow node.
+     *
+     * @param start         index of the flow node
+     * @param adjacency     adjacency of flow nodes
+     * @param stopAtTask    collect tasks only and do not traverse through them
+     * @return The indexes visited.
+     */
+    private BitSet traverse(int start, int[][] adjacency, boolean stopAtTask) {
+        BitSet result = new BitSet(this.size());
+        BitSet visited = new BitSet(this.size());
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (int next : adjacency[start])
+            stack.push(next);
+        while (!stack.isEmpty()) {
+            int index = stack.pop();
+            if (visited.get(index))
+                continue;
+            visited.set(index);
+            if (stopAtTask && this.kinds[index] != ElementKind.TASK) {
+                for (int next : adjacency[index])
+                    stack.push(next);
+                continue;
+            }
+            result.set(index);
+            if (!stopAtTask)
+                for (int next : adjacency[index])
+                    stack.push(next);
+        }
+        return result;
+    }
+
+    private Set<String> toElementIds(BitSet bitSet) {
+        Set<String> elementIds = new LinkedHashSet<>();
+        for (int index = bitSet.nextSetBit(0); index >= 0; index = bitSet.nextSetBit(index + 1))
+            elementIds.add(this.elementIds[index]);
+        return elementIds;
+    }
+
+
+    /**
+     * Kind of flow node.
+     */
+    public enum ElementKind {
+        TASK,
+        EXCLUSIVE_GATEWAY,
+        INCLUSIVE_GATEWAY,
+        PARALLEL_GATEWAY,
+        GATEWAY,
+        START_EVENT,
+        END_EVENT,
+        EVENT,
+        SUB_PROCESS,
+        OTHER;
+
+        public static ElementKind of(FlowNode flowNode) {
+            if (flowNode instanceof Task)
+                return TASK;
+            else if (flowNode instanceof ExclusiveGateway)
+                return EXCLUSIVE_GATEWAY;
+            else if (flowNode instanceof InclusiveGateway)
+                return INCLUSIVE_GATEWAY;
+            else if (flowNode instanceof ParallelGateway)
+                return PARALLEL_GATEWAY;
+            else if (flowNode instanceof Gateway)
+                return GATEWAY;
+            else if (flowNode instanceof StartEvent)
+                return START_EVENT;
+            else if (flowNode instanceof EndEvent)
+                return END_EVENT;
+            else if (flowNode instanceof Event)
+                return EVENT;
+            else if (flowNode instanceof SubProcess)
+                return SUB_PROCESS;
+            else
+                return OTHER;
+        }
+    }
+}
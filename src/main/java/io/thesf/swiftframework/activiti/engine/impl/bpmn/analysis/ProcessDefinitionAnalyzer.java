@@ -0,0 +1,97 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.bpmn.analysis;
+
+import io.thesf.swiftframework.activiti.cache.CacheManager;
+import io.thesf.swiftframework.activiti.cache.LocalCacheManagerImpl;
+import io.thesf.swiftframework.activiti.cache.ProcessDefinitionScopedCache;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommandContext;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.util.ProcessDefinitionUtil;
+
+/**
+ * Analyze process definitions into {@link ProcessDefinitionAnalysis}, cached by process definition id.
+ *
+ * 1. A process definition is analyzed at first use, then the analysis is reused.
+ * 2. Entries are removed when the process definition is deleted,
+ * see {@link io.thesf.swiftframework.activiti.cache.ProcessDefinitionCacheInvalidator}.
+ *
+ * @see io.thesf.swiftframework.activiti.engine.impl.cmd.GetProcessDefinitionAnalysisCmd
+ * @author VirtualCry
+ */
+public class ProcessDefinitionAnalyzer implements ProcessDefinitionScopedCache {
+
+    private final CacheManager<String, ProcessDefinitionAnalysis>   analysisCacheManager;
+
+    public ProcessDefinitionAnalyzer() {
+        this(new LocalCacheManagerImpl<>());
+    }
+
+    public ProcessDefinitionAnalyzer(CacheManager<String, ProcessDefinitionAnalysis> analysisCacheManager) {
+        this.analysisCacheManager = analysisCacheManager;
+    }
+
+
+    @Override
+    public void invalidate(String processDefinitionId) {
+        this.analysisCacheManager.remove(processDefinitionId);
+    }
+
+    /**
+     * Get analysis of the process definition, analyze it if absent.
+     *
+     * @param processDefinitionId   processDefinitionId
+     * @return The {@link ProcessDefinitionAnalysis}.
+     */
+    public ProcessDefinitionAnalysis getAnalysis(String processDefinitionId) {
+        return this.analysisCacheManager.computeIfAbsent(processDefinitionId, ProcessDefinitionAnalyzer::analyze);
+    }
+
+    /**
+     * Get analysis of the process definition, analyze it if absent only within a command,
+     * as the process model is read through the command context.
+     *
+     * @param processDefinitionId   processDefinitionId
+     * @return The {@link ProcessDefinitionAnalysis}, or null if it is absent out of commands.
+     */
+    public ProcessDefinitionAnalysis findAnalysis(String processDefinitionId) {
+        return Context.getCommandContext() != null
+                ? this.getAnalysis(processDefinitionId)
+                : this.analysisCacheManager.get(processDefinitionId);
+    }
+
+    /**
+     * Analyze the process definition without cache.
+     *
+     * @param processDefinitionId   processDefinitionId
+     * @return The {@link ProcessDefinitionAnalysis}.
+     */
+    public static ProcessDefinitionAnalysis analyze(String processDefinitionId) {
+        return new ProcessDefinitionAnalysis(processDefinitionId, ProcessDefinitionUtil.getProcess(processDefinitionId));
+    }
+
+    /**
+     * Get cached analysis of the process definition, if there is a {@link ProcessDefinitionAnalyzer} bean.
+     *
+     * @param commandContext        commandContext
+     * @param processDefinitionId   processDefinitionId
+     * @return The {@link ProcessDefinitionAnalysis}, or null if there is no analyzer.
+     */
+    public static ProcessDefinitionAnalysis getAnalysisIfAvailable(CommandContext commandContext, String processDefinitionId) {
+        ProcessDefinitionAnalyzer analyzer = commandContext instanceof SpringCommandContext
+                ? ((SpringCommandContext) commandContext).getBeanIfAvailable(ProcessDefinitionAnalyzer.class)
+                : null;
+        return analyzer == null ? null : analyzer.getAnalysis(processDefinitionId);
+    }
+}
@@ -0,0 +1,80 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.bpmn.assignee;
+
+import org.activiti.bpmn.model.UserTask;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+
+/**
+ * Implement of {@link TaskAssigneeProvider}. Stand-in of an organization directory, backed by maps in memory.
+ *
+ * 1. The assignee registered for the task definition key is resolved first, then the one registered for a candidate group.
+ * 2. A latency can be set to simulate a remote directory, lookups then complete on the executor.
+ *
+ * @author VirtualCry
+ */
+public class InMemoryTaskAssigneeProvider implements TaskAssigneeProvider {
+
+    private final Map<String, String>       taskAssignees = new ConcurrentHashMap<>();
+    private final Map<String, String>       groupAssignees = new ConcurrentHashMap<>();
+    private final Executor                  executor;
+    private final long                      latencyMillis;
+
+    public InMemoryTaskAssigneeProvider() {
+        this(ForkJoinPool.commonPool(), 0);
+    }
+
+    public InMemoryTaskAssigneeProvider(Executor executor, long latencyMillis) {
+        this.executor = executor;
+        this.latencyMillis = latencyMillis;
+    }
+
+
+    public InMemoryTaskAssigneeProvider registerTask(String taskDefinitionKey, String assignee) {
+        this.taskAssignees.put(taskDefinitionKey, assignee);
+        return this;
+    }
+
+    public InMemoryTaskAssigneeProvider registerGroup(String candidateGroup, String assignee) {
+        this.groupAssignees.put(candidateGroup, assignee);
+        return this;
+    }
+
+    @Override
+    public CompletionStage<String> resolve(String processDefinitionId, String processInstanceId, UserTask userTask) {
+        if (latencyMillis <= 0)
+            return CompletableFuture.completedFuture(this.lookup(userTask));
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt(); }
+            return this.lookup(userTask);
+        }, executor);
+    }
+
+    protected String lookup(UserTask userTask) {
+        String assignee = taskAssignees.get(userTask.getId());
+        if (assignee != null)
+            return assignee;
+        return userTask.getCandidateGroups().stream()
+                .map(groupAssignees::get)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(null);
+    }
+}
@@ -0,0 +1,258 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.bpmn.assignee;
+
+import io.thesf.swiftframework.activiti.cache.ProcessDefinitionCacheManager;
+import io.thesf.swiftframework.activiti.cache.ProcessDefinitionScopedCache;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommandContext;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.bpmn.model.*;
+import org.activiti.bpmn.model.Process;
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.impl.util.ProcessDefinitionUtil;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Resolve assignees of upcoming user tasks ahead of time with {@link TaskAssigneeProvider}.
+ *
+ * 1. When a sequence flow enters a gateway or task, lookups of the user tasks which follow are started concurrently,
+ * so that the directory latency is paid once for a fan out, and off the command which later creates the tasks.
+ * 2. Prefetched assignees expire after the time to live, and are used at most once.
+ * 3. At most the max concurrency of lookups are in flight, prefetched or on demand. Further prefetches are skipped
+ * and resolved on demand, and a lookup on demand waits for a permit within the resolve timeout.
+ * 4. Upcoming user tasks are calculated once per process definition and element,
+ * and removed when the process definition is deleted,
+ * see {@link io.thesf.swiftframework.activiti.cache.ProcessDefinitionCacheInvalidator}.
+ * 5. The user task entered by the sequence flow is not prefetched, since it is resolved right after by the same command.
+ *
+ * Warning:
+ * 1. A lookup which fails or does not complete within the resolve timeout fails the command with {@link ActivitiException},
+ * unless {@link #setLeaveUnassignedOnFailure(boolean)} is set, then the user task is created without assignee.
+ *
+ * @see io.thesf.swiftframework.activiti.api.process.runtime.events.listener.BPMNSequenceFlowTakenEventListener
+ * @see TaskAssigneeResolver
+ * @author VirtualCry
+ */
+@Slf4j
+public class TaskAssigneePrefetcher implements ProcessDefinitionScopedCache {
+
+    private static final long       DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(5);
+    private static final long       DEFAULT_RESOLVE_TIMEOUT = TimeUnit.SECONDS.toMillis(3);
+    private static final int        DEFAULT_MAX_CONCURRENCY = 64;
+    private static final int        DEFAULT_CAPACITY = 10000;
+
+    private final TaskAssigneeProvider                                      provider;
+    private final ProcessDefinitionCacheManager<String, List<UserTask>>     upcomingUserTaskCacheManager;
+    private final Map<String, PrefetchedAssignee>                           prefetchedAssignees = new ConcurrentHashMap<>();
+    private final Semaphore                                                 permits;
+    private final long                                                      timeToLive;
+    private final long                                                      resolveTimeout;
+    private final int                                                       capacity;
+    @Setter
+    private volatile boolean                                                leaveUnassignedOnFailure;
+
+    public TaskAssigneePrefetcher(TaskAssigneeProvider provider) {
+        this(provider, DEFAULT_TIME_TO_LIVE, DEFAULT_RESOLVE_TIMEOUT, DEFAULT_MAX_CONCURRENCY, DEFAULT_CAPACITY);
+    }
+
+    public TaskAssigneePrefetcher(TaskAssigneeProvider provider,
+                                  long timeToLive,
+                                  long resolveTimeout,
+                                  int maxConcurrency,
+                                  int capacity) {
+        this.provider = provider;
+        this.upcomingUserTaskCacheManager = new ProcessDefinitionCacheManager<>();
+        this.permits = new Semaphore(maxConcurrency);
+        this.timeToLive = timeToLive;
+        this.resolveTimeout = resolveTimeout;
+        this.capacity = capacity;
+    }
+
+
+    @Override
+    public void invalidate(String processDefinitionId) {
+        this.upcomingUserTaskCacheManager.invalidate(processDefinitionId);
+    }
+
+    /**
+     * Prefetch assignees of the user tasks following the element,
+     * except those defined by {@link io.thesf.swiftframework.activiti.api.runtime.model.TaskAssigneeDefinition}.
+     *
+     * @param commandContext        commandContext
+     * @param processDefinitionId   processDefinitionId
+     * @param processInstanceId     processInstanceId
+     * @param elementId             element entered by the sequence flow
+     */
+    public void prefetch(SpringCommandContext commandContext, String processDefinitionId, String processInstanceId, String elementId) {
+        List<UserTask> upcomingUserTasks = this.upcomingUserTaskCacheManager.get(processDefinitionId, elementId,
+                key -> findUpcomingUserTasks(ProcessDefinitionUtil.getProcess(processDefinitionId), key));
+        if (upcomingUserTasks.isEmpty())
+            return;
+
+        Set<String> definedTaskDefinitionKeys = TaskAssigneeResolver.getTaskAssigneeDefinitions(commandContext, processInstanceId).keySet();
+        long now = System.currentTimeMillis();
+        this.purge(now);
+
+        for (UserTask userTask : upcomingUserTasks) {
+            if (definedTaskDefinitionKeys.contains(userTask.getId()))
+                continue;
+
+            String key = keyOf(processInstanceId, userTask.getId());
+            PrefetchedAssignee prefetchedAssignee = prefetchedAssignees.get(key);
+            if (prefetchedAssignee != null && prefetchedAssignee.getExpireTime() > now)
+                continue;
+            if (prefetchedAssignees.size() >= capacity || !permits.tryAcquire())
+                return;
+
+            CompletableFuture<String> future;
+            try {
+                future = provider.resolve(processDefinitionId, processInstanceId, userTask).toCompletableFuture();
+            } catch (RuntimeException ex) {
+                permits.release();
+                log.warn("Failed to prefetch assignee of user task [" + userTask.getId() + "].", ex);
+                continue;
+            }
+            future.whenComplete((assignee, ex) -> permits.release());
+            prefetchedAssignees.put(key, new PrefetchedAssignee(future, now + timeToLive));
+        }
+    }
+
+    /**
+     * Resolve assignee of the user task, use the prefetched one if not expired, otherwise look up now.
+     *
+     * @param processDefinitionId   processDefinitionId
+     * @param processInstanceId     processInstanceId
+     * @param userTask              userTask
+     * @return The assignee.
+     * @throws ActivitiException if the lookup fails or times out, unless the user task is left without assignee on failure.
+     */
+    public Optional<String> resolve(String processDefinitionId, String processInstanceId, UserTask userTask) {
+        long deadline = System.currentTimeMillis() + resolveTimeout;
+        PrefetchedAssignee prefetchedAssignee = prefetchedAssignees.remove(keyOf(processInstanceId, userTask.getId()));
+
+        try {
+            CompletableFuture<String> future = prefetchedAssignee != null && prefetchedAssignee.getExpireTime() > System.currentTimeMillis()
+                    ? prefetchedAssignee.getFuture()
+                    : this.lookUp(processDefinitionId, processInstanceId, userTask);
+            return Optional.ofNullable(future.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return this.unresolved(userTask, ex);
+        } catch (ExecutionException | TimeoutException | RuntimeException ex) {
+            return this.unresolved(userTask, ex);
+        }
+    }
+
+    /**
+     * Look up the assignee on demand, with a permit of the max concurrency.
+     *
+     * @param processDefinitionId   processDefinitionId
+     * @param processInstanceId     processInstanceId
+     * @param userTask              userTask
+     * @return The lookup.
+     * @throws InterruptedException if interrupted while waiting for a permit
+     * @throws TimeoutException     if no permit is available within the resolve timeout
+     */
+    protected CompletableFuture<String> lookUp(String processDefinitionId, String processInstanceId, UserTask userTask)
+            throws InterruptedException, TimeoutException {
+        if (!permits.tryAcquire(resolveTimeout, TimeUnit.MILLISECONDS))
+            throw new TimeoutException("No lookup permit available within " + resolveTimeout + " ms.");
+
+        CompletableFuture<String> future;
+        try {
+            future = provider.resolve(processDefinitionId, processInstanceId, userTask).toCompletableFuture();
+        } catch (RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+        future.whenComplete((assignee, ex) -> permits.release());
+        return future;
+    }
+
+    /**
+     * Handle a lookup which failed or timed out.
+     *
+     * @param userTask  userTask
+     * @param cause     cause
+     * @return Empty if the user task is left without assignee on failure.
+     */
+    private Optional<String> unresolved(UserTask userTask, Exception cause) {
+        if (!leaveUnassignedOnFailure)
+            throw new ActivitiException("Could not resolve assignee of user task [" + userTask.getId() + "] within " + resolveTimeout + " ms.", cause);
+        log.warn("Could not resolve assignee of user task [" + userTask.getId() + "], leave it without assignee.", cause);
+        return Optional.empty();
+    }
+
+    /**
+     * Remove expired assignees when the capacity is reached.
+     *
+     * @param now current time
+     */
+    protected void purge(long now) {
+        if (prefetchedAssignees.size() >= capacity)
+            prefetchedAssignees.values().removeIf(prefetchedAssignee -> prefetchedAssignee.getExpireTime() <= now);
+    }
+
+    /**
+     * Find the user tasks which follow the element, reachable from its outgoing flows through gateways.
+     * The element itself is not included, even if it is a user task.
+     *
+     * @param process   process
+     * @param elementId elementId
+     * @return The user tasks.
+     */
+    public static List<UserTask> findUpcomingUserTasks(Process process, String elementId) {
+        FlowElement flowElement = process.getFlowElement(elementId, true);
+        if (!(flowElement instanceof Gateway || flowElement instanceof Task))
+            return Collections.emptyList();
+
+        Set<String> visitedIds = new HashSet<>();
+        List<UserTask> upcomingUserTasks = new ArrayList<>();
+
+        Deque<FlowNode> flowNodes = new ArrayDeque<>();
+        flowNodes.push((FlowNode) flowElement);
+        visitedIds.add(flowElement.getId());
+        while (!flowNodes.isEmpty()) {
+            for (SequenceFlow sequenceFlow : flowNodes.pop().getOutgoingFlows()) {
+                FlowElement targetElement = sequenceFlow.getTargetFlowElement();
+                if (targetElement == null || !visitedIds.add(targetElement.getId()))
+                    continue;
+                if (targetElement instanceof UserTask)
+                    upcomingUserTasks.add((UserTask) targetElement);
+                else if (targetElement instanceof Gateway)
+                    flowNodes.push((FlowNode) targetElement);
+            }
+        }
+        return Collections.unmodifiableList(upcomingUserTasks);
+    }
+
+    private static String keyOf(String processInstanceId, String taskDefinitionKey) {
+        return processInstanceId + ':' + taskDefinitionKey;
+    }
+
+
+    /**
+     * Assignee being looked up or looked up.
+     */
+    @AllArgsConstructor
+    @Getter
+    protected static class PrefetchedAssignee {
+        private final CompletableFuture<String>     future;
+        private final long                          expireTime;
+    }
+}
@@ -0,0 +1,43 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.bpmn.assignee;
+
+import org.activiti.bpmn.model.UserTask;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * SPI to resolve the assignee of a user task from an external source, such as an organization directory.
+ *
+ * 1. Used when the process instance has no {@link io.thesf.swiftframework.activiti.api.runtime.model.TaskAssigneeDefinition}
+ * or template for the user task.
+ * 2. Lookups are asynchronous, so that {@link TaskAssigneePrefetcher} can resolve upcoming user tasks ahead of time.
+ *
+ * Warning:
+ * 1. Lookups run outside the command, they must not access the process engine.
+ *
+ * @see InMemoryTaskAssigneeProvider
+ * @author VirtualCry
+ */
+public interface TaskAssigneeProvider {
+
+    /**
+     * Resolve the assignee of the user task.
+     *
+     * @param processDefinitionId   processDefinitionId
+     * @param processInstanceId     processInstanceId
+     * @param userTask              userTask
+     * @return The assignee, completed with null if there is none.
+     */
+    CompletionStage<String> resolve(String processDefinitionId, String processInstanceId, UserTask userTask);
+}
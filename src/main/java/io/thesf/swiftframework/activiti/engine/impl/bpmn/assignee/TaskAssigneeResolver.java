@@ -0,0 +1,158 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.bpmn.assignee;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.TaskAssigneeDefinition;
+import io.thesf.swiftframework.activiti.api.runtime.model.TaskAssigneeTemplate;
+import io.thesf.swiftframework.activiti.api.runtime.model.impl.TaskAssigneeDefinitionImpl;
+import io.thesf.swiftframework.activiti.cache.data.TaskAssigneeDefinitionCacheManager;
+import io.thesf.swiftframework.activiti.cache.data.TaskAssigneeTemplateCacheManager;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommandContext;
+import org.activiti.bpmn.model.UserTask;
+import org.activiti.engine.impl.persistence.entity.ExecutionEntity;
+import org.activiti.engine.impl.util.ProcessDefinitionUtil;
+import org.activiti.engine.repository.ProcessDefinition;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Resolve {@link TaskAssigneeDefinition} within the current {@link SpringCommandContext},
+ * without executing a nested command.
+ *
+ * 1. Definitions of a process instance are looked up once per command, then memoized in the command context,
+ * so that user tasks created by one command, such as branches of a gateway, share one lookup.
+ * 2. Definitions of the process instance override the {@link TaskAssigneeTemplate}s of its process definition,
+ * if a {@link TaskAssigneeTemplateCacheManager} is defined.
+ * 3. A user task without definition is resolved by {@link TaskAssigneeProvider}, if a {@link TaskAssigneePrefetcher} is defined.
+ *
+ * Warning:
+ * 1. Definitions saved after the first lookup of the process instance are not visible to the same command.
+ *
+ * @see io.thesf.swiftframework.activiti.engine.impl.bpmn.behavior.InnerAssignUserTaskActivityBehavior
+ * @author VirtualCry
+ */
+public final class TaskAssigneeResolver {
+
+    private static final String     MEMOIZED_TASK_ASSIGNEE_DEFINITIONS = TaskAssigneeResolver.class.getName() + ".definitions";
+
+    private TaskAssigneeResolver() {
+    }
+
+
+    /**
+     * Resolve assignee definition of the user task.
+     *
+     * @param commandContext    commandContext
+     * @param processInstanceId processInstanceId
+     * @param taskDefinitionKey taskDefinitionKey
+     * @return The {@link TaskAssigneeDefinition}.
+     */
+    public static Optional<TaskAssigneeDefinition> resolve(SpringCommandContext commandContext,
+                                                           String processInstanceId,
+                                                           String taskDefinitionKey) {
+        return Optional.ofNullable(getTaskAssigneeDefinitions(commandContext, processInstanceId).get(taskDefinitionKey));
+    }
+
+    /**
+     * Resolve assignee definition of the user task, then its assignee from {@link TaskAssigneeProvider} if not defined.
+     *
+     * @param commandContext        commandContext
+     * @param processDefinitionId   processDefinitionId
+     * @param processInstanceId     processInstanceId
+     * @param userTask              userTask
+     * @return The {@link TaskAssigneeDefinition}.
+     */
+    public static Optional<TaskAssigneeDefinition> resolve(SpringCommandContext commandContext,
+                                                           String processDefinitionId,
+                                                           String processInstanceId,
+                                                           UserTask userTask) {
+        Map<String, TaskAssigneeDefinition> definitions = getTaskAssigneeDefinitions(commandContext, processInstanceId);
+        if (definitions.containsKey(userTask.getId()))
+            return Optional.ofNullable(definitions.get(userTask.getId()));
+
+        TaskAssigneePrefetcher prefetcher = commandContext.getBeanIfAvailable(TaskAssigneePrefetcher.class);
+        if (prefetcher == null)
+            return Optional.empty();
+
+        // Memoize the provided assignee, or its absence, for the rest of the command.
+        TaskAssigneeDefinition definition = prefetcher.resolve(processDefinitionId, processInstanceId, userTask)
+                .map(assignee -> (TaskAssigneeDefinition) TaskAssigneeDefinitionImpl.builder()
+                        .processInstanceId(processInstanceId)
+                        .taskDefinitionKey(userTask.getId())
+                        .assignee(assignee)
+                        .build())
+                .orElse(null);
+        definitions.put(userTask.getId(), definition);
+        return Optional.ofNullable(definition);
+    }
+
+    /**
+     * Get assignee definitions of the process instance, keyed by task definition key.
+     *
+     * @param commandContext    commandContext
+     * @param processInstanceId processInstanceId
+     * @return The definitions.
+     */
+    public static Map<String, TaskAssigneeDefinition> getTaskAssigneeDefinitions(SpringCommandContext commandContext, String processInstanceId) {
+
+        // Get definitions memoized by the command
+        return commandContext.memoize(MEMOIZED_TASK_ASSIGNEE_DEFINITIONS, processInstanceId, key -> {
+
+            // Templates of the process definition
+            Map<String, TaskAssigneeDefinition> definitions = new HashMap<>(getTemplateDefinitions(commandContext, processInstanceId));
+
+            // Overrides of the process instance
+            definitions.putAll(commandContext
+                    .getBean(TaskAssigneeDefinitionCacheManager.class)
+                    .findByProcessInstanceId(processInstanceId).stream()
+                    .collect(Collectors.toMap(TaskAssigneeDefinition::getTaskDefinitionKey, Function.identity(), (former, latter) -> former)));
+            return definitions;
+        });
+    }
+
+    /**
+     * Get assignee definitions of the process instance from the templates of its process definition.
+     *
+     * @param commandContext    commandContext
+     * @param processInstanceId processInstanceId
+     * @return The definitions, keyed by task definition key.
+     */
+    private static Map<String, TaskAssigneeDefinition> getTemplateDefinitions(SpringCommandContext commandContext, String processInstanceId) {
+        TaskAssigneeTemplateCacheManager templateCacheManager = commandContext.getBeanIfAvailable(TaskAssigneeTemplateCacheManager.class);
+        if (templateCacheManager == null || templateCacheManager.isEmpty())
+            return Collections.emptyMap();
+
+        ExecutionEntity processInstance = commandContext.getExecutionEntityManager().findById(processInstanceId);
+        if (processInstance == null)
+            return Collections.emptyMap();
+
+        // Key and version are not loaded with the execution, resolve them from the deployment cache.
+        ProcessDefinition processDefinition = ProcessDefinitionUtil.getProcessDefinition(processInstance.getProcessDefinitionId());
+
+        Map<String, TaskAssigneeDefinition> definitions = new HashMap<>();
+        templateCacheManager
+                .findByProcessDefinition(processDefinition.getKey(), processDefinition.getVersion())
+                .forEach((taskDefinitionKey, template) -> definitions.put(taskDefinitionKey, TaskAssigneeDefinitionImpl.builder()
+                        .id(template.getId())
+                        .processInstanceId(processInstanceId)
+                        .taskDefinitionKey(taskDefinitionKey)
+                        .assignee(template.getAssignee())
+                        .build()));
+        return definitions;
+    }
+}
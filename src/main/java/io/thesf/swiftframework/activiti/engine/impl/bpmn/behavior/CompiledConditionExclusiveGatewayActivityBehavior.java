@@ -0,0 +1,68 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.bpmn.behavior;
+
+import io.thesf.swiftframework.activiti.engine.impl.bpmn.condition.SequenceFlowConditionEvaluator;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommandContext;
+import org.activiti.bpmn.model.ExclusiveGateway;
+import org.activiti.bpmn.model.SequenceFlow;
+import org.activiti.engine.delegate.DelegateExecution;
+import org.activiti.engine.delegate.event.ActivitiEventType;
+import org.activiti.engine.delegate.event.impl.ActivitiEventBuilder;
+import org.activiti.engine.impl.bpmn.behavior.ExclusiveGatewayActivityBehavior;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.ExecutionEntity;
+
+/**
+ * Extension for {@link ExclusiveGatewayActivityBehavior}, which selects the outgoing flow with compiled conditions.
+ *
+ * 1. If there is no {@link SequenceFlowConditionEvaluator} bean, it behaves the same as {@link ExclusiveGatewayActivityBehavior}.
+ *
+ * @author VirtualCry
+ */
+public class CompiledConditionExclusiveGatewayActivityBehavior extends ExclusiveGatewayActivityBehavior {
+
+    @Override
+    public void leave(DelegateExecution execution) {
+
+        CommandContext commandContext = Context.getCommandContext();
+        SequenceFlowConditionEvaluator conditionEvaluator = commandContext instanceof SpringCommandContext
+                ? ((SpringCommandContext) commandContext).getBeanIfAvailable(SequenceFlowConditionEvaluator.class)
+                : null;
+        if (conditionEvaluator == null) {
+            super.leave(execution);
+            return;
+        }
+
+        ExclusiveGateway exclusiveGateway = (ExclusiveGateway) execution.getCurrentFlowElement();
+
+        ProcessEngineConfigurationImpl processEngineConfiguration = commandContext.getProcessEngineConfiguration();
+        if (processEngineConfiguration.getEventDispatcher().isEnabled()) {
+            processEngineConfiguration.getEventDispatcher().dispatchEvent(
+                    ActivitiEventBuilder.createActivityEvent(ActivitiEventType.ACTIVITY_COMPLETED, exclusiveGateway.getId(), exclusiveGateway.getName(), execution.getId(),
+                            execution.getProcessInstanceId(), execution.getProcessDefinitionId(), exclusiveGateway));
+        }
+
+        // Determine sequence flow to take
+        SequenceFlow outgoingSequenceFlow = conditionEvaluator.selectOutgoingFlow(exclusiveGateway, execution);
+
+        // Record the end here, or else we're already past it
+        commandContext.getHistoryManager().recordActivityEnd((ExecutionEntity) execution, null);
+
+        // Leave the gateway
+        execution.setCurrentFlowElement(outgoingSequenceFlow);
+        bpmnActivityBehavior.performDefaultOutgoingBehavior((ExecutionEntity) execution);
+    }
+}
@@ -0,0 +1,126 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.bpmn.behavior;
+
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.bpmn.model.Activity;
+import org.activiti.bpmn.model.FlowElement;
+import org.activiti.engine.impl.asyncexecutor.JobManager;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.jobexecutor.JobHandler;
+import org.activiti.engine.impl.persistence.entity.ExecutionEntity;
+import org.activiti.engine.impl.persistence.entity.JobEntity;
+import org.activiti.engine.impl.persistence.entity.JobEntityManager;
+
+import java.util.UUID;
+
+/**
+ * Implement of {@link JobHandler}. Create one chunk of instances of a parallel multi-instance activity.
+ *
+ * 1. The configuration is {@literal generation:fromIndex:toIndex:activityId}. The generation is a marker kept
+ * as local variable of the multi-instance root execution, issued each time the activity is entered.
+ * 2. Jobs are exclusive, so that chunks of a process instance are created one after another,
+ * without optimistic locking failures on the multi-instance root execution.
+ * 3. A chunk is skipped unless the execution is still in the same entering of the same activity,
+ * such as after the completion condition is satisfied and the execution has moved on to another multi-instance activity.
+ * 4. Pending chunk jobs are deleted when the multi-instance activity completes, see {@link #deletePendingJobs(ExecutionEntity)}.
+ *
+ * Warning:
+ * 1. If a chunk job fails until it is moved to the dead letter jobs, its instances are never created,
+ * so {@literal nrOfCompletedInstances} can not reach {@literal nrOfInstances}. Such activities only complete by
+ * the completion condition, or after the dead letter job is moved back to be executed again.
+ *
+ * @see InnerAssignParallelMultiInstanceBehavior
+ * @author VirtualCry
+ */
+@Slf4j
+public class ContinueMultiInstanceChunkJobHandler implements JobHandler {
+
+    public static final String TYPE = "swift-continue-multi-instance-chunk";
+    public static final String CHUNK_GENERATION = "swiftMultiInstanceChunkGeneration";
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public void execute(JobEntity job, String configuration, ExecutionEntity execution, CommandContext commandContext) {
+        String[] parts = configuration.split(":", 4);
+        String generation = parts[0];
+        int fromIndex = Integer.parseInt(parts[1]);
+        int toIndex = Integer.parseInt(parts[2]);
+        String activityId = parts[3];
+
+        FlowElement flowElement = execution.getCurrentFlowElement();
+        if (!execution.isMultiInstanceRoot()
+                || !(flowElement instanceof Activity)
+                || !activityId.equals(flowElement.getId())
+                || !(((Activity) flowElement).getBehavior() instanceof InnerAssignParallelMultiInstanceBehavior)
+                || !generation.equals(execution.getVariableLocal(CHUNK_GENERATION))) {
+            log.info("Skip chunk [{}] of execution [{}], the multi-instance activity has been completed.", configuration, execution.getId());
+            return;
+        }
+
+        ((InnerAssignParallelMultiInstanceBehavior) ((Activity) flowElement).getBehavior())
+                .continueInstances(execution, fromIndex, toIndex);
+    }
+
+    /**
+     * Issue a new generation to the multi-instance root execution, for the chunk jobs scheduled by current entering.
+     *
+     * @param multiInstanceRootExecution multiInstanceRootExecution
+     * @return The generation.
+     */
+    public static String nextGeneration(ExecutionEntity multiInstanceRootExecution) {
+        String generation = UUID.randomUUID().toString();
+        multiInstanceRootExecution.setVariableLocal(CHUNK_GENERATION, generation);
+        return generation;
+    }
+
+    /**
+     * Schedule a job to create the instances in the range.
+     *
+     * @param multiInstanceRootExecution    multiInstanceRootExecution
+     * @param generation                    generation of current entering, see {@link #nextGeneration(ExecutionEntity)}
+     * @param fromIndex                     loop counter of the first instance, inclusive
+     * @param toIndex                       loop counter of the last instance, exclusive
+     */
+    public static void schedule(ExecutionEntity multiInstanceRootExecution, String generation, int fromIndex, int toIndex) {
+        JobManager jobManager = Context.getCommandContext().getJobManager();
+        JobEntity job = jobManager.createAsyncJob(multiInstanceRootExecution, true);
+        job.setJobHandlerType(TYPE);
+        job.setJobHandlerConfiguration(generation + ":" + fromIndex + ":" + toIndex + ":" + multiInstanceRootExecution.getCurrentActivityId());
+        jobManager.scheduleAsyncJob(job);
+    }
+
+    /**
+     * Delete the chunk jobs not executed yet, and the generation of the multi-instance root execution.
+     * Nothing is done if the activity was not created in chunks.
+     *
+     * @param multiInstanceRootExecution multiInstanceRootExecution
+     */
+    public static void deletePendingJobs(ExecutionEntity multiInstanceRootExecution) {
+        Object generation = multiInstanceRootExecution.getVariableLocal(CHUNK_GENERATION);
+        if (generation == null)
+            return;
+
+        JobEntityManager jobEntityManager = Context.getCommandContext().getJobEntityManager();
+        jobEntityManager.findJobsByExecutionId(multiInstanceRootExecution.getId()).stream()
+                .filter(job -> TYPE.equals(job.getJobHandlerType())
+                        && job.getJobHandlerConfiguration().startsWith(generation + ":"))
+                .forEach(jobEntityManager::delete);
+        multiInstanceRootExecution.removeVariableLocal(CHUNK_GENERATION);
+    }
+}
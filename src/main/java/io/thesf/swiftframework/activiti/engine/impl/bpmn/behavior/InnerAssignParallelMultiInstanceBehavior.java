@@ -1,93 +1,181 @@
-/* Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package io.thesf.swiftframework.activiti.engine.impl.bpmn.behavior;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import io.thesf.swiftframework.activiti.engine.impl.cmd.FindUserTaskAssigneeCmd;
-import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommandContext;
-import org.activiti.bpmn.model.Activity;
-import org.activiti.bpmn.model.UserTask;
-import org.activiti.engine.ManagementService;
-import org.activiti.engine.delegate.DelegateExecution;
-import org.activiti.engine.impl.bpmn.behavior.AbstractBpmnActivityBehavior;
-import org.activiti.engine.impl.bpmn.behavior.ParallelMultiInstanceBehavior;
-import org.activiti.engine.impl.context.Context;
-import org.springframework.util.StringUtils;
-
-import java.util.Collection;
-
-import static io.thesf.swiftframework.activiti.api.runtime.model.ExecutionVariables.SYSTEM_JOINTLY_ASSIGN;
-
-/**
- * Extension for {@link ParallelMultiInstanceBehavior}.
- *
- * 1. fix bug - The variable value type queried from the database is not {@link Collection} but {@link ArrayNode}.
- * 2. Dynamic setting of assignee.
- *
- * @see io.thesf.swiftframework.activiti.engine.impl.bpmn.parser.handler.PreUserTaskParseHandler
- * @author VirtualCry
- */
-public class InnerAssignParallelMultiInstanceBehavior extends ParallelMultiInstanceBehavior {
-
-    private static final ObjectMapper objectMapper = new ObjectMapper();
-
-    public InnerAssignParallelMultiInstanceBehavior(Activity activity, AbstractBpmnActivityBehavior originalActivityBehavior) {
-        super(activity, originalActivityBehavior);
-    }
-
-
-    @Override
-    public void execute(DelegateExecution execution) {
-
-        // Set assignees
-        this.setJointlySignAssignees(execution);
-
-        // Execute
-        super.execute(execution);
-    }
-
-    protected void setJointlySignAssignees(DelegateExecution execution) {
-
-        if (!(activity instanceof UserTask)
-                &&  !StringUtils.isEmpty(execution.getVariableLocal(SYSTEM_JOINTLY_ASSIGN)))
-            return;
-
-        // Get service
-        ManagementService managementService = ((SpringCommandContext) Context.getCommandContext()).getBean(ManagementService.class);
-
-        // Set assignees
-        managementService.executeCommand(new FindUserTaskAssigneeCmd(execution.getProcessInstanceId(), (UserTask) activity))
-                .ifPresent(taskAssigneeDefinition ->
-                        execution.setVariableLocal(SYSTEM_JOINTLY_ASSIGN, taskAssigneeDefinition.getAssignee())
-                );
-    }
-
-    @Override
-    protected Object resolveCollection(DelegateExecution execution) {
-        Object collection = null;
-        if (collectionExpression != null) {
-            collection = collectionExpression.getValue(execution);
-
-        } else if (collectionVariable != null) {
-            collection = execution.getVariable(collectionVariable);
-        }
-
-        // Extend
-        if (collection instanceof ArrayNode) {
-            collection = objectMapper.convertValue(collection, Collection.class);
-        }
-
-        return collection;
-    }
-}
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.bpmn.behavior;
+
+import io.thesf.swiftframework.activiti.engine.impl.bpmn.assignee.TaskAssigneeResolver;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommandContext;
+import org.activiti.bpmn.model.Activity;
+import org.activiti.bpmn.model.UserTask;
+import org.activiti.engine.delegate.DelegateExecution;
+import org.activiti.engine.impl.bpmn.behavior.AbstractBpmnActivityBehavior;
+import org.activiti.engine.impl.bpmn.behavior.ParallelMultiInstanceBehavior;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.persistence.entity.ExecutionEntity;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static io.thesf.swiftframework.activiti.api.runtime.model.ExecutionVariables.SYSTEM_JOINTLY_ASSIGN;
+
+/**
+ * Extension for {@link ParallelMultiInstanceBehavior}.
+ *
+ * 1. fix bug - The variable value type queried from the database is not {@link Collection} but {@link com.fasterxml.jackson.databind.node.ArrayNode}.
+ * It is viewed lazily by {@link MultiInstanceCollections}, and the element of an instance is got by index.
+ * 2. Dynamic setting of assignee.
+ * 3. If the chunk size is positive and the number of instances exceeds it, only the first chunk of instances is created
+ * by the current transaction. Each further chunk is created by an exclusive async job of its own,
+ * see {@link ContinueMultiInstanceChunkJobHandler}.
+ *
+ * Warning:
+ * 1. To create instances in chunks, {@link ContinueMultiInstanceChunkJobHandler} must be registered as custom job handler
+ * of the process engine, and the async executor must be activated.
+ * 2. Until all chunks are created, queries see fewer tasks than {@literal nrOfInstances}.
+ * 3. If a chunk job is moved to the dead letter jobs, {@literal nrOfInstances} is unreachable,
+ * see {@link ContinueMultiInstanceChunkJobHandler}.
+ *
+ * @see io.thesf.swiftframework.activiti.engine.impl.bpmn.parser.handler.PreUserTaskParseHandler
+ * @author VirtualCry
+ */
+public class InnerAssignParallelMultiInstanceBehavior extends ParallelMultiInstanceBehavior {
+
+    private final int           chunkSize;
+
+    public InnerAssignParallelMultiInstanceBehavior(Activity activity, AbstractBpmnActivityBehavior originalActivityBehavior) {
+        this(activity, originalActivityBehavior, 0);
+    }
+
+    public InnerAssignParallelMultiInstanceBehavior(Activity activity, AbstractBpmnActivityBehavior originalActivityBehavior, int chunkSize) {
+        super(activity, originalActivityBehavior);
+        this.chunkSize = chunkSize;
+    }
+
+
+    @Override
+    public void execute(DelegateExecution execution) {
+
+        // Set assignees
+        this.setJointlySignAssignees(execution);
+
+        // Execute
+        super.execute(execution);
+    }
+
+    @Override
+    protected int createInstances(DelegateExecution execution) {
+        int nrOfInstances = resolveNrOfInstances(execution);
+        if (chunkSize <= 0 || nrOfInstances <= chunkSize)
+            return super.createInstances(execution);
+
+        execution.setMultiInstanceRoot(true);
+
+        setLoopVariable(execution, NUMBER_OF_INSTANCES, nrOfInstances);
+        setLoopVariable(execution, NUMBER_OF_COMPLETED_INSTANCES, 0);
+        setLoopVariable(execution, NUMBER_OF_ACTIVE_INSTANCES, nrOfInstances);
+
+        // Create the first chunk now, then schedule the others.
+        String generation = ContinueMultiInstanceChunkJobHandler.nextGeneration((ExecutionEntity) execution);
+        this.continueInstances((ExecutionEntity) execution, 0, chunkSize);
+        for (int fromIndex = chunkSize; fromIndex < nrOfInstances; fromIndex += chunkSize)
+            ContinueMultiInstanceChunkJobHandler.schedule((ExecutionEntity) execution, generation, fromIndex, Math.min(fromIndex + chunkSize, nrOfInstances));
+
+        ((ExecutionEntity) execution).setActive(false);
+        return nrOfInstances;
+    }
+
+    @Override
+    public void leave(DelegateExecution execution) {
+        DelegateExecution multiInstanceRootExecution = getMultiInstanceRootExecution(execution);
+        super.leave(execution);
+
+        // Completed, such as by the completion condition → chunks not created yet are not needed anymore.
+        if (chunkSize > 0 && multiInstanceRootExecution != null && !multiInstanceRootExecution.isMultiInstanceRoot())
+            ContinueMultiInstanceChunkJobHandler.deletePendingJobs((ExecutionEntity) multiInstanceRootExecution);
+    }
+
+    /**
+     * Create and execute the instances in the range, as {@link ParallelMultiInstanceBehavior#createInstances(DelegateExecution)} does.
+     *
+     * @param multiInstanceRootExecution    multiInstanceRootExecution
+     * @param fromIndex                     loop counter of the first instance, inclusive
+     * @param toIndex                       loop counter of the last instance, exclusive
+     */
+    public void continueInstances(ExecutionEntity multiInstanceRootExecution, int fromIndex, int toIndex) {
+        int nrOfInstances = getLoopVariable(multiInstanceRootExecution, NUMBER_OF_INSTANCES);
+
+        List<ExecutionEntity> concurrentExecutions = new ArrayList<>(toIndex - fromIndex);
+        for (int loopCounter = fromIndex; loopCounter < toIndex; loopCounter++) {
+            ExecutionEntity concurrentExecution = Context.getCommandContext().getExecutionEntityManager()
+                    .createChildExecution(multiInstanceRootExecution);
+            concurrentExecution.setCurrentFlowElement(activity);
+            concurrentExecution.setActive(true);
+            concurrentExecution.setScope(false);
+
+            concurrentExecutions.add(concurrentExecution);
+            logLoopDetails(concurrentExecution, "initialized", loopCounter, 0, nrOfInstances, nrOfInstances);
+        }
+
+        // All executions of the chunk must be created before any is executed, see ParallelMultiInstanceBehavior.
+        // The multi-instance root is set inactive after the first chunk, so only whether it has ended is checked here.
+        for (int loopCounter = fromIndex; loopCounter < toIndex; loopCounter++) {
+            ExecutionEntity concurrentExecution = concurrentExecutions.get(loopCounter - fromIndex);
+            if (concurrentExecution.isActive() && !concurrentExecution.isEnded()
+                    && !concurrentExecution.getParent().isEnded()) {
+                setLoopVariable(concurrentExecution, getCollectionElementIndexVariable(), loopCounter);
+                executeOriginalBehavior(concurrentExecution, loopCounter);
+            }
+        }
+    }
+
+    protected void setJointlySignAssignees(DelegateExecution execution) {
+
+        if (!(activity instanceof UserTask)
+                || !StringUtils.isEmpty(execution.getVariableLocal(SYSTEM_JOINTLY_ASSIGN)))
+            return;
+
+        // Set assignees
+        TaskAssigneeResolver.resolve((SpringCommandContext) Context.getCommandContext(),
+                execution.getProcessDefinitionId(), execution.getProcessInstanceId(), (UserTask) activity)
+                .ifPresent(taskAssigneeDefinition ->
+                        execution.setVariableLocal(SYSTEM_JOINTLY_ASSIGN, taskAssigneeDefinition.getAssignee())
+                );
+    }
+
+    @Override
+    protected Object resolveCollection(DelegateExecution execution) {
+        Object collection = null;
+        if (collectionExpression != null) {
+            collection = MultiInstanceCollections.view(collectionExpression.getValue(execution));
+
+        } else if (collectionVariable != null) {
+            DelegateExecution multiInstanceRootExecution = getMultiInstanceRootExecution(execution);
+            collection = MultiInstanceCollections.getCollectionVariable(
+                    multiInstanceRootExecution != null ? multiInstanceRootExecution : execution, collectionVariable);
+        }
+
+        return collection;
+    }
+
+    @Override
+    protected void executeOriginalBehavior(DelegateExecution execution, int loopCounter) {
+        if (usesCollection() && collectionElementVariable != null) {
+            Collection<?> collection = (Collection<?>) resolveCollection(execution);
+            setLoopVariable(execution, collectionElementVariable, MultiInstanceCollections.elementAt(collection, loopCounter));
+        }
+
+        execution.setCurrentFlowElement(activity);
+        Context.getAgenda().planContinueMultiInstanceOperation((ExecutionEntity) execution);
+    }
+}
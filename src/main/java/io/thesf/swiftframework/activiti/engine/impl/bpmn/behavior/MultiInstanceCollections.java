@@ -0,0 +1,190 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.bpmn.behavior;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommandContext;
+import org.activiti.engine.ActivitiIllegalArgumentException;
+import org.activiti.engine.delegate.DelegateExecution;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.interceptor.CommandContext;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.*;
+
+/**
+ * Collections of multi-instance activities.
+ *
+ * 1. A collection is viewed without copy. Elements of {@link ArrayNode}, arrays and JSON array text are decoded on demand.
+ * Only a text delimited by '[' and ']' is parsed as JSON, other texts are left to the multi-instance behavior.
+ * 2. The collection variable is loaded alone from the multi-instance root execution, instead of all variables,
+ * and memoized in the command context, so that instances created by one command share one load.
+ *
+ * Warning:
+ * 1. A collection variable updated after the first load is not visible to the same command.
+ *
+ * @see InnerAssignParallelMultiInstanceBehavior
+ * @see InnerAssignSequentialMultiInstanceBehavior
+ * @author VirtualCry
+ */
+public final class MultiInstanceCollections {
+
+    private static final String         MEMOIZED_COLLECTIONS = MultiInstanceCollections.class.getName() + ".collections";
+
+    private static final ObjectMapper   objectMapper = new ObjectMapper();
+
+    private MultiInstanceCollections() {
+    }
+
+
+    /**
+     * Get the collection variable of the multi-instance activity.
+     *
+     * @param multiInstanceRootExecution    multi-instance root execution, or the execution if there is none
+     * @param collectionVariable            name of the collection variable
+     * @return The collection viewed by {@link #view(Object)}.
+     */
+    public static Object getCollectionVariable(DelegateExecution multiInstanceRootExecution, String collectionVariable) {
+        CommandContext commandContext = Context.getCommandContext();
+        if (!(commandContext instanceof SpringCommandContext))
+            return view(multiInstanceRootExecution.getVariable(collectionVariable, false));
+
+        // Get collections memoized by the command
+        return ((SpringCommandContext) commandContext).memoize(MEMOIZED_COLLECTIONS,
+                multiInstanceRootExecution.getId() + ':' + collectionVariable,
+                key -> view(multiInstanceRootExecution.getVariable(collectionVariable, false)));
+    }
+
+    /**
+     * View the value as {@link Collection} without copy, if it is an {@link ArrayNode}, an array or a JSON array text.
+     *
+     * @param value value of the collection
+     * @return The view, or the value itself.
+     */
+    public static Object view(Object value) {
+        if (value instanceof ArrayNode)
+            return new ArrayNodeList((ArrayNode) value);
+        if (value instanceof Object[])
+            return Arrays.asList((Object[]) value);
+        if (value != null && value.getClass().isArray())
+            return new PrimitiveArrayList(value);
+        if (value instanceof String && isJsonArray((String) value)) {
+            try {
+                JsonNode jsonNode = objectMapper.readTree((String) value);
+                return jsonNode instanceof ArrayNode ? new ArrayNodeList((ArrayNode) jsonNode) : value;
+            } catch (IOException ex) {
+                throw new ActivitiIllegalArgumentException("Collection text is not a valid JSON array.", ex); }
+        }
+        return value;
+    }
+
+    /**
+     * Whether the text is delimited as a JSON array, which is parsed by {@link #view(Object)}.
+     *
+     * @param text text
+     * @return true if the text starts with '[' and ends with ']', ignoring surrounding whitespace.
+     */
+    private static boolean isJsonArray(String text) {
+        int start = 0, end = text.length() - 1;
+        while (start <= end && Character.isWhitespace(text.charAt(start)))
+            start++;
+        while (end > start && Character.isWhitespace(text.charAt(end)))
+            end--;
+        return end > start && text.charAt(start) == '[' && text.charAt(end) == ']';
+    }
+
+    /**
+     * Get the element of the collection at the index, without iterating a {@link List}.
+     *
+     * @param collection    collection
+     * @param index         index
+     * @return The element.
+     */
+    public static Object elementAt(Collection<?> collection, int index) {
+        if (collection instanceof List)
+            return ((List<?>) collection).get(index);
+
+        Iterator<?> iterator = collection.iterator();
+        for (int i = 0; i < index; i++)
+            iterator.next();
+        return iterator.next();
+    }
+
+    /**
+     * Decode the element as {@link ObjectMapper#convertValue(Object, Class)} does for the whole array.
+     *
+     * @param jsonNode jsonNode
+     * @return The element.
+     */
+    private static Object decode(JsonNode jsonNode) {
+        if (jsonNode == null || jsonNode.isNull() || jsonNode.isMissingNode())
+            return null;
+        if (jsonNode.isTextual())
+            return jsonNode.textValue();
+        if (jsonNode.isNumber())
+            return jsonNode.numberValue();
+        if (jsonNode.isBoolean())
+            return jsonNode.booleanValue();
+        return objectMapper.convertValue(jsonNode, Object.class);
+    }
+
+
+    /**
+     * Read-only view of {@link ArrayNode}.
+     */
+    private static class ArrayNodeList extends AbstractList<Object> implements RandomAccess {
+
+        private final ArrayNode     arrayNode;
+
+        ArrayNodeList(ArrayNode arrayNode) {
+            this.arrayNode = arrayNode;
+        }
+
+        @Override
+        public Object get(int index) {
+            if (index < 0 || index >= arrayNode.size())
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + arrayNode.size());
+            return decode(arrayNode.get(index));
+        }
+
+        @Override
+        public int size() {
+            return arrayNode.size();
+        }
+    }
+
+    /**
+     * Read-only view of primitive array.
+     */
+    private static class PrimitiveArrayList extends AbstractList<Object> implements RandomAccess {
+
+        private final Object        array;
+
+        PrimitiveArrayList(Object array) {
+            this.array = array;
+        }
+
+        @Override
+        public Object get(int index) {
+            return Array.get(array, index);
+        }
+
+        @Override
+        public int size() {
+            return Array.getLength(array);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.bpmn.condition;
+
+import lombok.Getter;
+import org.activiti.bpmn.model.SequenceFlow;
+import org.activiti.engine.delegate.DelegateExecution;
+import org.activiti.engine.delegate.Expression;
+import org.activiti.engine.impl.Condition;
+import org.activiti.engine.impl.bpmn.helper.SkipExpressionUtil;
+import org.activiti.engine.impl.el.ExpressionManager;
+import org.activiti.engine.impl.el.UelExpressionCondition;
+import org.springframework.util.StringUtils;
+
+/**
+ * Condition and skip expression of one {@link SequenceFlow}, compiled once and shared between executions.
+ *
+ * @author VirtualCry
+ */
+@Getter
+public class CompiledSequenceFlowCondition {
+
+    private final String            sequenceFlowId;
+    private final Condition         condition;
+    private final Expression        skipExpression;
+
+    public CompiledSequenceFlowCondition(SequenceFlow sequenceFlow, ExpressionManager expressionManager) {
+        this.sequenceFlowId = sequenceFlow.getId();
+        this.condition = StringUtils.isEmpty(sequenceFlow.getConditionExpression())
+                ? null
+                : new UelExpressionCondition(expressionManager.createExpression(sequenceFlow.getConditionExpression()));
+        this.skipExpression = sequenceFlow.getSkipExpression() == null
+                ? null
+                : expressionManager.createExpression(sequenceFlow.getSkipExpression());
+    }
+
+
+    /**
+     * Judge if the condition is true. A flow without condition is always true.
+     *
+     * @param execution execution
+     * @return result
+     */
+    public boolean hasTrueCondition(DelegateExecution execution) {
+        return this.condition == null || this.condition.evaluate(this.sequenceFlowId, execution);
+    }
+
+    /**
+     * Judge if the skip expression is enabled for the execution.
+     *
+     * @param execution execution
+     * @return result
+     */
+    public boolean isSkipExpressionEnabled(DelegateExecution execution) {
+        return SkipExpressionUtil.isSkipExpressionEnabled(execution, this.skipExpression);
+    }
+
+    /**
+     * Judge if the flow should be taken by skip expression.
+     *
+     * @param execution execution
+     * @return result
+     */
+    public boolean shouldSkip(DelegateExecution execution) {
+        return SkipExpressionUtil.shouldSkipFlowElement(execution, this.skipExpression);
+    }
+}
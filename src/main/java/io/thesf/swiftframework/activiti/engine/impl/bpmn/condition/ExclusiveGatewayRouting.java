@@ -0,0 +1,230 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.bpmn.condition;
+
+import org.activiti.bpmn.model.ExclusiveGateway;
+import org.activiti.bpmn.model.SequenceFlow;
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.delegate.DelegateExecution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Routing state of one {@link ExclusiveGateway}: hit count and evaluation cost of each outgoing flow,
+ * and the order in which conditions are evaluated.
+ *
+ * 1. In definition order, flows are evaluated the same as the engine does.
+ * 2. In adaptive order, flows are sorted by hit count divided by average evaluation cost, which minimises the expected cost
+ * of finding the flow to take. The default flow is not evaluated by its condition, and is always the last.
+ * The order is recomputed about every {@link #REORDER_INTERVAL} selections.
+ *
+ * Warning:
+ * 1. Adaptive order assumes that the conditions of the gateway are mutually exclusive.
+ * If more than one condition can be true at the same time, the flow taken may differ from the one in definition order.
+ *
+ * @author VirtualCry
+ */
+public class ExclusiveGatewayRouting {
+
+    public static final int             REORDER_INTERVAL = 1024;
+
+    private final String                processDefinitionId;
+    private final String                gatewayId;
+    private final SequenceFlow[]        sequenceFlows;
+    private final int                   defaultFlowIndex;
+    private final int[]                 definitionOrder;
+    private final LongAdder[]           hitCounts;
+    private final LongAdder[]           evaluationCounts;
+    private final LongAdder[]           evaluationNanos;
+    private final LongAdder             selectionCount = new LongAdder();
+    private final LongAdder             defaultFlowCount = new LongAdder();
+    private final AtomicBoolean         reordering = new AtomicBoolean();
+    private volatile int[]              adaptiveOrder;
+
+    public ExclusiveGatewayRouting(String processDefinitionId, ExclusiveGateway exclusiveGateway) {
+        this.processDefinitionId = processDefinitionId;
+        this.gatewayId = exclusiveGateway.getId();
+        this.sequenceFlows = exclusiveGateway.getOutgoingFlows().toArray(new SequenceFlow[0]);
+        String defaultFlowId = exclusiveGateway.getDefaultFlow();
+        this.defaultFlowIndex = IntStream.range(0, sequenceFlows.length)
+                .filter(index -> sequenceFlows[index].getId().equals(defaultFlowId))
+                .findFirst()
+                .orElse(-1);
+        this.definitionOrder = IntStream.range(0, sequenceFlows.length).toArray();
+        this.hitCounts = newAdders(sequenceFlows.length);
+        this.evaluationCounts = newAdders(sequenceFlows.length);
+        this.evaluationNanos = newAdders(sequenceFlows.length);
+        this.adaptiveOrder = IntStream.concat(
+                IntStream.range(0, sequenceFlows.length).filter(index -> index != defaultFlowIndex),
+                defaultFlowIndex < 0 ? IntStream.empty() : IntStream.of(defaultFlowIndex)
+        ).toArray();
+    }
+
+
+    /**
+     * Select the outgoing flow.
+     *
+     * @param conditionEvaluator    conditionEvaluator
+     * @param execution             execution
+     * @param adaptive              evaluate in adaptive order or definition order
+     * @return The first flow which can be taken, or the default flow.
+     */
+    public SequenceFlow select(SequenceFlowConditionEvaluator conditionEvaluator, DelegateExecution execution, boolean adaptive) {
+        return this.select(conditionEvaluator, execution, adaptive, true);
+    }
+
+    /**
+     * Select the outgoing flow the same as {@link #select}, without recording statistics, such as to preview the flow.
+     *
+     * @param conditionEvaluator    conditionEvaluator
+     * @param execution             execution
+     * @param adaptive              evaluate in adaptive order or definition order
+     * @return The first flow which can be taken, or the default flow.
+     */
+    public SequenceFlow preview(SequenceFlowConditionEvaluator conditionEvaluator, DelegateExecution execution, boolean adaptive) {
+        return this.select(conditionEvaluator, execution, adaptive, false);
+    }
+
+    /**
+     * Get a snapshot of statistics.
+     *
+     * @return The {@link ExclusiveGatewayStatistics}.
+     */
+    public ExclusiveGatewayStatistics getStatistics() {
+        List<ExclusiveGatewayStatistics.FlowStatistics> flowStatistics = new ArrayList<>(this.sequenceFlows.length);
+        for (int index : this.adaptiveOrder) {
+            long evaluationCount = this.evaluationCounts[index].sum();
+            flowStatistics.add(ExclusiveGatewayStatistics.FlowStatistics.builder()
+                    .sequenceFlowId(this.sequenceFlows[index].getId())
+                    .defaultFlow(index == this.defaultFlowIndex)
+                    .hitCount(this.hitCounts[index].sum())
+                    .evaluationCount(evaluationCount)
+                    .averageEvaluationNanos(evaluationCount == 0 ? 0 : this.evaluationNanos[index].sum() / evaluationCount)
+                    .build());
+        }
+        return ExclusiveGatewayStatistics.builder()
+                .processDefinitionId(this.processDefinitionId)
+                .gatewayId(this.gatewayId)
+                .selectionCount(this.selectionCount.sum())
+                .defaultFlowCount(this.defaultFlowCount.sum())
+                .flows(flowStatistics)
+                .build();
+    }
+
+    private SequenceFlow select(SequenceFlowConditionEvaluator conditionEvaluator, DelegateExecution execution, boolean adaptive, boolean recording) {
+        if (recording)
+            this.selectionCount.increment();
+        String defaultFlowId = this.defaultFlowIndex < 0 ? null : this.sequenceFlows[this.defaultFlowIndex].getId();
+
+        int[] order = adaptive ? this.adaptiveOrder : this.definitionOrder;
+        for (int index : order) {
+            SequenceFlow sequenceFlow = this.sequenceFlows[index];
+            boolean taken;
+            long startNanos = System.nanoTime();
+            if (adaptive && index == this.defaultFlowIndex)
+                taken = conditionEvaluator.isTakenBySkipExpression(sequenceFlow, execution);
+            else
+                taken = conditionEvaluator.hasTrueCondition(sequenceFlow, defaultFlowId, execution);
+            if (recording) {
+                this.evaluationNanos[index].add(System.nanoTime() - startNanos);
+                this.evaluationCounts[index].increment();
+            }
+
+            if (taken) {
+                if (recording) {
+                    this.hitCounts[index].increment();
+                    this.reorderIfNecessary();
+                }
+                return sequenceFlow;
+            }
+        }
+
+        if (this.defaultFlowIndex < 0)
+            throw new ActivitiException("No outgoing sequence flow of the exclusive gateway '"
+                    + this.gatewayId + "' could be selected for continuing the process");
+        if (recording) {
+            this.defaultFlowCount.increment();
+            this.reorderIfNecessary();
+        }
+        return this.sequenceFlows[this.defaultFlowIndex];
+    }
+
+    /**
+     * Recompute the adaptive order about every {@link #REORDER_INTERVAL} selections.
+     * Sampling avoids a counter shared by all threads passing the gateway.
+     */
+    protected void reorderIfNecessary() {
+        if (ThreadLocalRandom.current().nextInt(REORDER_INTERVAL) != 0 || !this.reordering.compareAndSet(false, true))
+            return;
+        try {
+            this.adaptiveOrder = this.computeAdaptiveOrder();
+        } finally {
+            this.reordering.set(false);
+        }
+    }
+
+    /**
+     * Sort flows by probability of hit divided by average cost. The default flow is always the last.
+     *
+     * @return The order.
+     */
+    protected int[] computeAdaptiveOrder() {
+        int length = this.sequenceFlows.length;
+        double[] averageNanos = new double[length];
+        double totalNanos = 0;
+        long totalEvaluations = 0;
+        for (int index = 0; index < length; index++) {
+            long evaluationCount = this.evaluationCounts[index].sum();
+            long nanos = this.evaluationNanos[index].sum();
+            averageNanos[index] = evaluationCount == 0 ? Double.NaN : (double) nanos / evaluationCount;
+            totalNanos += nanos;
+            totalEvaluations += evaluationCount;
+        }
+        // Flows never evaluated are assumed to cost the average of the gateway
+        double defaultNanos = totalEvaluations == 0 ? 1D : Math.max(1D, totalNanos / totalEvaluations);
+
+        double[] scores = new double[length];
+        for (int index = 0; index < length; index++) {
+            double cost = Double.isNaN(averageNanos[index]) ? defaultNanos : Math.max(1D, averageNanos[index]);
+            scores[index] = (this.hitCounts[index].sum() + 1D) / cost;
+        }
+
+        Integer[] candidateOrder = Arrays.stream(this.definitionOrder)
+                .filter(index -> index != this.defaultFlowIndex)
+                .boxed()
+                .toArray(Integer[]::new);
+        Arrays.sort(candidateOrder, Comparator.<Integer>comparingDouble(index -> scores[index]).reversed()
+                .thenComparingInt(index -> index));
+
+        int[] order = new int[length];
+        for (int i = 0; i < candidateOrder.length; i++)
+            order[i] = candidateOrder[i];
+        if (this.defaultFlowIndex >= 0)
+            order[length - 1] = this.defaultFlowIndex;
+        return order;
+    }
+
+    private static LongAdder[] newAdders(int length) {
+        LongAdder[] adders = new LongAdder[length];
+        for (int i = 0; i < length; i++)
+            adders[i] = new LongAdder();
+        return adders;
+    }
+}
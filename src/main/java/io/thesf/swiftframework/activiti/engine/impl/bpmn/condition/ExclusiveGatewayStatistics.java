@@ -0,0 +1,51 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.bpmn.condition;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Snapshot of routing statistics of one {@link org.activiti.bpmn.model.ExclusiveGateway}.
+ *
+ * @see ExclusiveGatewayRouting
+ * @author VirtualCry
+ */
+@Builder
+@Getter
+@ToString
+public class ExclusiveGatewayStatistics {
+
+    private final String                    processDefinitionId;
+    private final String                    gatewayId;
+    private final long                      selectionCount;
+    /** Number of selections which fell back to the default flow. */
+    private final long                      defaultFlowCount;
+    /** Statistics of outgoing flows, in current adaptive order. */
+    private final List<FlowStatistics>      flows;
+
+
+    @Builder
+    @Getter
+    @ToString
+    public static class FlowStatistics {
+        private final String                sequenceFlowId;
+        private final boolean               defaultFlow;
+        private final long                  hitCount;
+        private final long                  evaluationCount;
+        private final long                  averageEvaluationNanos;
+    }
+}
@@ -0,0 +1,240 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.bpmn.condition;
+
+import io.thesf.swiftframework.activiti.cache.ProcessDefinitionCacheManager;
+import io.thesf.swiftframework.activiti.cache.ProcessDefinitionScopedCache;
+import lombok.Getter;
+import lombok.Setter;
+import org.activiti.bpmn.model.ExclusiveGateway;
+import org.activiti.bpmn.model.InclusiveGateway;
+import org.activiti.bpmn.model.SequenceFlow;
+import org.activiti.engine.ActivitiException;
+import org.activiti.engine.delegate.DelegateExecution;
+import org.activiti.engine.impl.bpmn.helper.SkipExpressionUtil;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.context.Context;
+import org.activiti.engine.impl.util.condition.ConditionUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Evaluate conditions of {@link SequenceFlow} with {@link CompiledSequenceFlowCondition}s,
+ * cached by process definition id and sequence flow id.
+ *
+ * 1. The result is the same as the engine: skip expressions first, then conditions, and the default flow at last.
+ * 2. If the process definition info cache is enabled, conditions may be overridden dynamically,
+ * so they are evaluated by {@link ConditionUtil} as the engine does.
+ * 3. Optionally, outgoing flows of exclusive gateways are evaluated in adaptive order, see {@link ExclusiveGatewayRouting}.
+ * Statistics of exclusive gateways are collected in adaptive order, or when statistics are enabled.
+ * Flows previewed, such as by {@link io.thesf.swiftframework.activiti.engine.impl.cmd.CalculateOutgoingFlowsCmd}, are not counted.
+ *
+ * @see io.thesf.swiftframework.activiti.engine.impl.bpmn.behavior.CompiledConditionExclusiveGatewayActivityBehavior
+ * @see io.thesf.swiftframework.activiti.engine.impl.cmd.CalculateOutgoingFlowsCmd
+ * @author VirtualCry
+ */
+public class SequenceFlowConditionEvaluator implements ProcessDefinitionScopedCache {
+
+    private final ProcessDefinitionCacheManager<String, CompiledSequenceFlowCondition>  conditionCacheManager;
+    private final ProcessDefinitionCacheManager<String, ExclusiveGatewayRouting>        routingCacheManager;
+
+    /** Evaluate outgoing flows of exclusive gateways in adaptive order. */
+    @Getter @Setter
+    private volatile boolean        adaptiveOrdering;
+    /** Collect statistics of exclusive gateways in definition order. */
+    @Getter @Setter
+    private volatile boolean        statisticsEnabled;
+
+    public SequenceFlowConditionEvaluator() {
+        this(new ProcessDefinitionCacheManager<>());
+    }
+
+    public SequenceFlowConditionEvaluator(ProcessDefinitionCacheManager<String, CompiledSequenceFlowCondition> conditionCacheManager) {
+        this.conditionCacheManager = conditionCacheManager;
+        this.routingCacheManager = new ProcessDefinitionCacheManager<>();
+    }
+
+
+    @Override
+    public void invalidate(String processDefinitionId) {
+        this.conditionCacheManager.invalidate(processDefinitionId);
+        this.routingCacheManager.invalidate(processDefinitionId);
+    }
+
+    /**
+     * Get compiled condition of the sequence flow.
+     *
+     * @param processDefinitionId   processDefinitionId
+     * @param sequenceFlow          sequenceFlow
+     * @return The {@link CompiledSequenceFlowCondition}.
+     */
+    public CompiledSequenceFlowCondition getCondition(String processDefinitionId, SequenceFlow sequenceFlow) {
+        return this.conditionCacheManager.get(processDefinitionId, sequenceFlow.getId(), sequenceFlowId ->
+                new CompiledSequenceFlowCondition(sequenceFlow, Context.getProcessEngineConfiguration().getExpressionManager()));
+    }
+
+    /**
+     * Judge if the sequence flow can be taken. The default flow is never taken by its condition.
+     *
+     * @param sequenceFlow              sequenceFlow
+     * @param defaultSequenceFlowId     defaultSequenceFlowId
+     * @param execution                 execution
+     * @return result
+     */
+    public boolean hasTrueCondition(SequenceFlow sequenceFlow, String defaultSequenceFlowId, DelegateExecution execution) {
+        ProcessEngineConfigurationImpl processEngineConfiguration = Context.getProcessEngineConfiguration();
+        if (processEngineConfiguration.isEnableProcessDefinitionInfoCache()) {
+            String skipExpressionString = sequenceFlow.getSkipExpression();
+            if (!SkipExpressionUtil.isSkipExpressionEnabled(execution, skipExpressionString))
+                return ConditionUtil.hasTrueCondition(sequenceFlow, execution)
+                        && (defaultSequenceFlowId == null || !defaultSequenceFlowId.equals(sequenceFlow.getId()));
+            else
+                return SkipExpressionUtil.shouldSkipFlowElement(Context.getCommandContext(), execution, skipExpressionString);
+        }
+
+        CompiledSequenceFlowCondition condition = this.getCondition(execution.getProcessDefinitionId(), sequenceFlow);
+        if (!condition.isSkipExpressionEnabled(execution))
+            return condition.hasTrueCondition(execution)
+                    && (defaultSequenceFlowId == null || !defaultSequenceFlowId.equals(sequenceFlow.getId()));
+        else
+            return condition.shouldSkip(execution);
+    }
+
+    /**
+     * Judge if the sequence flow is taken by its skip expression, without evaluating its condition.
+     *
+     * @param sequenceFlow  sequenceFlow
+     * @param execution     execution
+     * @return result
+     */
+    public boolean isTakenBySkipExpression(SequenceFlow sequenceFlow, DelegateExecution execution) {
+        if (Context.getProcessEngineConfiguration().isEnableProcessDefinitionInfoCache()) {
+            String skipExpressionString = sequenceFlow.getSkipExpression();
+            return SkipExpressionUtil.isSkipExpressionEnabled(execution, skipExpressionString)
+                    && SkipExpressionUtil.shouldSkipFlowElement(Context.getCommandContext(), execution, skipExpressionString);
+        }
+
+        CompiledSequenceFlowCondition condition = this.getCondition(execution.getProcessDefinitionId(), sequenceFlow);
+        return condition.isSkipExpressionEnabled(execution) && condition.shouldSkip(execution);
+    }
+
+    /**
+     * Select outgoing flow of {@link ExclusiveGateway}.
+     *
+     * @param exclusiveGateway  exclusiveGateway
+     * @param execution         execution
+     * @return The first flow which can be taken, or the default flow.
+     */
+    public SequenceFlow selectOutgoingFlow(ExclusiveGateway exclusiveGateway, DelegateExecution execution) {
+        boolean adaptive = this.adaptiveOrdering;
+        if (adaptive || this.statisticsEnabled) {
+            String processDefinitionId = execution.getProcessDefinitionId();
+            return this.routingCacheManager
+                    .get(processDefinitionId, exclusiveGateway.getId(), gatewayId -> new ExclusiveGatewayRouting(processDefinitionId, exclusiveGateway))
+                    .select(this, execution, adaptive);
+        }
+
+        return this.selectInDefinitionOrder(exclusiveGateway, execution);
+    }
+
+    /**
+     * Preview outgoing flow of {@link ExclusiveGateway}, the same as {@link #selectOutgoingFlow}, without collecting statistics.
+     *
+     * @param exclusiveGateway  exclusiveGateway
+     * @param execution         execution
+     * @return The first flow which can be taken, or the default flow.
+     */
+    public SequenceFlow previewOutgoingFlow(ExclusiveGateway exclusiveGateway, DelegateExecution execution) {
+        if (this.adaptiveOrdering) {
+            Map<String, ExclusiveGatewayRouting> routings = this.routingCacheManager.get(execution.getProcessDefinitionId());
+            ExclusiveGatewayRouting routing = routings != null ? routings.get(exclusiveGateway.getId()) : null;
+            if (routing != null)
+                return routing.preview(this, execution, true);
+        }
+        return this.selectInDefinitionOrder(exclusiveGateway, execution);
+    }
+
+    /**
+     * Select outgoing flows of {@link InclusiveGateway}.
+     *
+     * @param inclusiveGateway  inclusiveGateway
+     * @param execution         execution
+     * @return All flows which can be taken, or the default flow.
+     */
+    public List<SequenceFlow> selectOutgoingFlows(InclusiveGateway inclusiveGateway, DelegateExecution execution) {
+        String defaultSequenceFlowId = inclusiveGateway.getDefaultFlow();
+        List<SequenceFlow> outgoingFlows = new ArrayList<>();
+        SequenceFlow defaultSequenceFlow = null;
+        for (SequenceFlow sequenceFlow : inclusiveGateway.getOutgoingFlows()) {
+            if (this.hasTrueCondition(sequenceFlow, defaultSequenceFlowId, execution))
+                outgoingFlows.add(sequenceFlow);
+            if (defaultSequenceFlowId != null && defaultSequenceFlowId.equals(sequenceFlow.getId()))
+                defaultSequenceFlow = sequenceFlow;
+        }
+        if (!outgoingFlows.isEmpty())
+            return outgoingFlows;
+        if (defaultSequenceFlow == null)
+            throw new ActivitiException("No outgoing sequence flow of the inclusive gateway '"
+                    + inclusiveGateway.getId() + "' could be selected for continuing the process");
+        return Collections.singletonList(defaultSequenceFlow);
+    }
+
+    /**
+     * Get statistics of all exclusive gateways passed since statistics were collected, the busiest first.
+     *
+     * @return The {@link List<ExclusiveGatewayStatistics>}.
+     */
+    public List<ExclusiveGatewayStatistics> getExclusiveGatewayStatistics() {
+        return this.routingCacheManager.values().stream()
+                .flatMap(routings -> routings.values().stream())
+                .map(ExclusiveGatewayRouting::getStatistics)
+                .sorted(Comparator.comparingLong(ExclusiveGatewayStatistics::getSelectionCount).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get statistics of the exclusive gateway.
+     *
+     * @param processDefinitionId   processDefinitionId
+     * @param gatewayId             gatewayId
+     * @return The {@link ExclusiveGatewayStatistics}, or null if the gateway has not been passed.
+     */
+    public ExclusiveGatewayStatistics getExclusiveGatewayStatistics(String processDefinitionId, String gatewayId) {
+        return Optional.ofNullable(this.routingCacheManager.get(processDefinitionId))
+                .map(routings -> routings.get(gatewayId))
+                .map(ExclusiveGatewayRouting::getStatistics)
+                .orElse(null);
+    }
+
+
+    private SequenceFlow selectInDefinitionOrder(ExclusiveGateway exclusiveGateway, DelegateExecution execution) {
+        String defaultSequenceFlowId = exclusiveGateway.getDefaultFlow();
+        SequenceFlow defaultSequenceFlow = null;
+        for (SequenceFlow sequenceFlow : exclusiveGateway.getOutgoingFlows()) {
+            if (this.hasTrueCondition(sequenceFlow, defaultSequenceFlowId, execution))
+                return sequenceFlow;
+            if (defaultSequenceFlowId != null && defaultSequenceFlowId.equals(sequenceFlow.getId()))
+                defaultSequenceFlow = sequenceFlow;
+        }
+        if (defaultSequenceFlow == null)
+            throw new ActivitiException("No outgoing sequence flow of the exclusive gateway '"
+                    + exclusiveGateway.getId() + "' could be selected for continuing the process");
+        return defaultSequenceFlow;
+    }
+}
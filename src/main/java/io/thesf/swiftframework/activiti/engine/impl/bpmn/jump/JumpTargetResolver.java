@@ -0,0 +1,94 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.bpmn.jump;
+
+import io.thesf.swiftframework.activiti.cache.ProcessDefinitionCacheManager;
+import io.thesf.swiftframework.activiti.cache.ProcessDefinitionScopedCache;
+import io.thesf.swiftframework.activiti.engine.impl.bpmn.behavior.PassThroughParallelGatewayActivityBehavior;
+import org.activiti.bpmn.model.FlowElement;
+import org.activiti.bpmn.model.ParallelGateway;
+import org.activiti.bpmn.model.Process;
+import org.activiti.engine.impl.util.ProcessDefinitionUtil;
+import org.springframework.beans.BeanUtils;
+
+import java.util.Optional;
+
+/**
+ * Resolve target elements of {@literal Free jump} and {@literal Roll back},
+ * cached by process definition id and element id.
+ *
+ * 1. A target element is validated once, then reused by each jump of the process definition.
+ * 2. A parallel gateway is replaced by a gateway passing through immediately, which is built once,
+ * so that cloning and copying properties are off the jump path.
+ * 3. Entries are removed when the process definition is deleted,
+ * see {@link io.thesf.swiftframework.activiti.cache.ProcessDefinitionCacheInvalidator}.
+ *
+ * @see io.thesf.swiftframework.activiti.engine.impl.cmd.FreeJumpActivityCmd
+ * @see io.thesf.swiftframework.activiti.engine.impl.cmd.RollBackActivityCmd
+ * @author VirtualCry
+ */
+public class JumpTargetResolver implements ProcessDefinitionScopedCache {
+
+    private final ProcessDefinitionCacheManager<String, FlowElement>    targetCacheManager;
+
+    public JumpTargetResolver() {
+        this(new ProcessDefinitionCacheManager<>());
+    }
+
+    public JumpTargetResolver(ProcessDefinitionCacheManager<String, FlowElement> targetCacheManager) {
+        this.targetCacheManager = targetCacheManager;
+    }
+
+
+    @Override
+    public void invalidate(String processDefinitionId) {
+        this.targetCacheManager.invalidate(processDefinitionId);
+    }
+
+    /**
+     * Resolve target element of the jump.
+     *
+     * @param processDefinitionId   processDefinitionId
+     * @param targetActivityId      targetActivityId
+     * @return The target element.
+     */
+    public FlowElement resolve(String processDefinitionId, String targetActivityId) {
+        return this.targetCacheManager.get(processDefinitionId, targetActivityId,
+                activityId -> prepare(processDefinitionId, activityId));
+    }
+
+    /**
+     * Prepare target element of the jump without cache.
+     *
+     * @param processDefinitionId   processDefinitionId
+     * @param targetActivityId      targetActivityId
+     * @return The target element. A parallel gateway is replaced by a gateway passing through immediately.
+     */
+    public static FlowElement prepare(String processDefinitionId, String targetActivityId) {
+
+        // Get bpmn process
+        Process bpmnProcess = ProcessDefinitionUtil.getProcess(processDefinitionId);
+
+        FlowElement targetElement = Optional.ofNullable(bpmnProcess.getFlowElement(targetActivityId))
+                .orElseThrow(() -> new RuntimeException("Could not find nodeId [" + targetActivityId + "] "
+                        + "from processDefinitionId [" + processDefinitionId + "]."));
+
+        if (targetElement instanceof ParallelGateway) { // if it parallel gateway, change it behavior.
+            ParallelGateway passThroughParallelGateway = (ParallelGateway) targetElement.clone();
+            BeanUtils.copyProperties(targetElement, passThroughParallelGateway);
+            passThroughParallelGateway.setBehavior(new PassThroughParallelGatewayActivityBehavior());
+            return passThroughParallelGateway;
+        } else
+            return targetElement;
+    }
+}
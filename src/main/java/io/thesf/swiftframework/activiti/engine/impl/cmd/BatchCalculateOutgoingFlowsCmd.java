@@ -0,0 +1,99 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.cmd;
+
+import io.thesf.swiftframework.activiti.engine.impl.bpmn.analysis.ProcessDefinitionAnalysis;
+import io.thesf.swiftframework.activiti.engine.impl.bpmn.analysis.ProcessDefinitionAnalyzer;
+import io.thesf.swiftframework.activiti.engine.impl.bpmn.condition.SequenceFlowConditionEvaluator;
+import org.activiti.bpmn.model.Process;
+import org.activiti.bpmn.model.SequenceFlow;
+import org.activiti.engine.impl.ProcessInstanceQueryImpl;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.ExecutionEntity;
+import org.activiti.engine.impl.util.ProcessDefinitionUtil;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Command for {@literal Calculate outgoing flows} of many elements of many process instances.
+ *
+ * 1. Root executions of all process instances are fetched with one query.
+ * 2. The bpmn process and its analysis are loaded once for each process definition.
+ * 3. The result is keyed by process instance id and then by element id, in the order given.
+ * Elements of a process instance which has been ended have no outgoing flows.
+ *
+ * @see CalculateOutgoingFlowsCmd
+ * @author VirtualCry
+ */
+public class BatchCalculateOutgoingFlowsCmd implements Command<Map<String, Map<String, List<SequenceFlow>>>> {
+
+    private final Map<String, Set<String>>      elementIds;
+
+    public BatchCalculateOutgoingFlowsCmd(Map<String, ? extends Collection<String>> elementIds) {
+        this.elementIds = new LinkedHashMap<>();
+        elementIds.forEach((processInstanceId, candidateElementIds) ->
+                this.elementIds.computeIfAbsent(processInstanceId, key -> new LinkedHashSet<>()).addAll(candidateElementIds));
+    }
+
+
+    @Override
+    public Map<String, Map<String, List<SequenceFlow>>> execute(CommandContext commandContext) {
+
+        if (elementIds.isEmpty())
+            return Collections.emptyMap();
+
+        // Get root executions
+        ProcessInstanceQueryImpl processInstanceQuery = new ProcessInstanceQueryImpl();
+        processInstanceQuery.processInstanceIds(elementIds.keySet());
+        Map<String, ExecutionEntity> rootExecutions = commandContext.getExecutionEntityManager()
+                .findProcessInstanceByQueryCriteria(processInstanceQuery).stream()
+                .map(ExecutionEntity.class::cast)
+                .collect(Collectors.toMap(ExecutionEntity::getId, Function.identity()));
+
+        // Get bpmn process and analysis of each process definition
+        Map<String, Process> bpmnProcesses = new HashMap<>();
+        Map<String, ProcessDefinitionAnalysis> analyses = new HashMap<>();
+        rootExecutions.values().stream()
+                .map(ExecutionEntity::getProcessDefinitionId)
+                .distinct()
+                .forEach(processDefinitionId -> {
+                    bpmnProcesses.put(processDefinitionId, ProcessDefinitionUtil.getProcess(processDefinitionId));
+                    analyses.put(processDefinitionId, ProcessDefinitionAnalyzer.getAnalysisIfAvailable(commandContext, processDefinitionId));
+                });
+
+        // Get evaluator for compiled conditions
+        SequenceFlowConditionEvaluator conditionEvaluator = CalculateOutgoingFlowsCmd.resolveConditionEvaluator(commandContext);
+
+        Map<String, Map<String, List<SequenceFlow>>> outgoingFlows = new LinkedHashMap<>();
+        elementIds.forEach((processInstanceId, candidateElementIds) -> {
+            Map<String, List<SequenceFlow>> elementOutgoingFlows = new LinkedHashMap<>();
+            ExecutionEntity rootExecution = rootExecutions.get(processInstanceId);
+            for (String elementId : candidateElementIds) {
+                // Root execution is null → mean that process has been ended.
+                elementOutgoingFlows.put(elementId, rootExecution == null
+                        ? Collections.emptyList()
+                        : new CalculateOutgoingFlowsCmd(processInstanceId, elementId)
+                                .calculate(rootExecution,
+                                        bpmnProcesses.get(rootExecution.getProcessDefinitionId()),
+                                        conditionEvaluator,
+                                        analyses.get(rootExecution.getProcessDefinitionId())));
+            }
+            outgoingFlows.put(processInstanceId, elementOutgoingFlows);
+        });
+
+        return outgoingFlows;
+    }
+}
@@ -0,0 +1,170 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.cmd;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.BulkOperationResult;
+import io.thesf.swiftframework.activiti.api.runtime.model.impl.BulkOperationResultImpl;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommand;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommandContext;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.impl.interceptor.CommandConfig;
+import org.activiti.engine.impl.interceptor.CommandExecutor;
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
+
+import java.util.*;
+
+/**
+ * Command for {@literal Complete task} of many tasks.
+ *
+ * 1. Tasks are grouped by process instance, then split into chunks of whole process instances,
+ * and each chunk is completed by {@link CompleteTasksCmd} in its own transaction.
+ * So the activity records of a process instance are buffered by one transaction and recorded together.
+ * 2. A process instance with more tasks than the chunk size forms a chunk of its own.
+ * 3. If a chunk fails, its tasks are completed one by one, each in its own transaction,
+ * so that only the failed tasks are left behind.
+ * 4. The outcome of each task is reported in the order given.
+ * 5. The process instances of the tasks are looked up with one query per {@value #MAX_QUERY_TASK_IDS} tasks.
+ *
+ * Warning:
+ * 1. Chunks committed before a failure are not rolled back.
+ * 2. Execute it with {@link CommandConfig#transactionNotSupported()}
+ * to avoid holding an idle transaction while the chunks run.
+ *
+ * @author VirtualCry
+ */
+@Slf4j
+public class BulkCompleteTaskCmd extends SpringCommand<List<BulkOperationResult>> {
+
+    public static final int                         DEFAULT_CHUNK_SIZE = 200;
+    public static final int                         MAX_QUERY_TASK_IDS = 1000;
+
+    private final Map<String, Map<String, Object>>  taskVariables;
+    private final int                               chunkSize;
+
+
+    /**
+     * @param taskVariables variables to complete each task with, keyed by task id. The value may be null.
+     * @param chunkSize     max number of tasks in one transaction
+     */
+    public BulkCompleteTaskCmd(Map<String, Map<String, Object>> taskVariables, int chunkSize) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Chunk size must be positive.");
+        this.taskVariables = new LinkedHashMap<>(taskVariables);
+        this.chunkSize = chunkSize;
+    }
+
+    public BulkCompleteTaskCmd(Collection<String> taskIds, Map<String, Object> variables, int chunkSize) {
+        this(taskIds.stream().distinct().collect(LinkedHashMap::new, (map, taskId) -> map.put(taskId, variables), Map::putAll), chunkSize);
+    }
+
+    public BulkCompleteTaskCmd(Collection<String> taskIds, Map<String, Object> variables) {
+        this(taskIds, variables, DEFAULT_CHUNK_SIZE);
+    }
+
+    public BulkCompleteTaskCmd(Collection<String> taskIds) {
+        this(taskIds, null);
+    }
+
+
+    @Override
+    public List<BulkOperationResult> execute(SpringCommandContext commandContext) {
+
+        CommandExecutor commandExecutor = commandContext.getProcessEngineConfiguration().getCommandExecutor();
+        CommandConfig chunkCommandConfig = commandExecutor.getDefaultConfig().transactionRequiresNew();
+
+        Map<String, BulkOperationResult> results = new LinkedHashMap<>();
+        taskVariables.keySet().forEach(taskId -> results.put(taskId, null));
+
+        for (List<String> chunk : this.chunk(commandContext)) {
+            Map<String, Map<String, Object>> chunkTaskVariables = new LinkedHashMap<>();
+            chunk.forEach(taskId -> chunkTaskVariables.put(taskId, taskVariables.get(taskId)));
+            try {
+                commandExecutor.execute(chunkCommandConfig, new CompleteTasksCmd(chunkTaskVariables))
+                        .forEach(result -> results.put(result.getId(), result));
+            } catch (Exception ex) {
+                log.warn("Failed to complete chunk of {} tasks, complete them one by one.", chunk.size(), ex);
+                for (String taskId : chunk) {
+                    try {
+                        results.put(taskId, commandExecutor.execute(chunkCommandConfig, new CompleteTasksCmd(
+                                Collections.singletonMap(taskId, taskVariables.get(taskId)))).get(0));
+                    } catch (Exception taskEx) {
+                        results.put(taskId, BulkOperationResultImpl.failed(taskId, null, taskEx.getMessage()));
+                    }
+                }
+            }
+        }
+
+        return new ArrayList<>(results.values());
+    }
+
+    /**
+     * Split tasks into chunks of whole process instances. Tasks which could not be found are put into the last chunk,
+     * so that they are reported by {@link CompleteTasksCmd}.
+     *
+     * @param commandContext commandContext
+     * @return The chunks of task ids.
+     */
+    protected List<List<String>> chunk(SpringCommandContext commandContext) {
+        Map<String, String> processInstanceIds = this.findProcessInstanceIds(commandContext, new ArrayList<>(taskVariables.keySet()));
+
+        Map<String, List<String>> taskIdsByProcessInstance = new LinkedHashMap<>();
+        List<String> unknownTaskIds = new ArrayList<>();
+        for (String taskId : taskVariables.keySet()) {
+            String processInstanceId = processInstanceIds.get(taskId);
+            if (processInstanceId != null)
+                taskIdsByProcessInstance.computeIfAbsent(processInstanceId, key -> new ArrayList<>()).add(taskId);
+            else
+                unknownTaskIds.add(taskId);
+        }
+
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> chunk = new ArrayList<>();
+        for (List<String> taskIds : taskIdsByProcessInstance.values()) {
+            if (!chunk.isEmpty() && chunk.size() + taskIds.size() > chunkSize) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+            }
+            chunk.addAll(taskIds);
+        }
+        chunk.addAll(unknownTaskIds);
+        if (!chunk.isEmpty())
+            chunks.add(chunk);
+        return chunks;
+    }
+
+    /**
+     * Find the process instance of each task, with one query per {@value #MAX_QUERY_TASK_IDS} tasks.
+     *
+     * @param commandContext commandContext
+     * @param taskIds        taskIds
+     * @return The process instance ids keyed by task id. Tasks which could not be found are absent.
+     */
+    protected Map<String, String> findProcessInstanceIds(SpringCommandContext commandContext, List<String> taskIds) {
+        String taskTableName = commandContext.getTableDataManager().getTableName(TaskEntity.class, true);
+
+        Map<String, String> processInstanceIds = new HashMap<>();
+        for (int from = 0; from < taskIds.size(); from += MAX_QUERY_TASK_IDS) {
+            List<String> partition = taskIds.subList(from, Math.min(from + MAX_QUERY_TASK_IDS, taskIds.size()));
+            Map<String, Object> parameterMap = new HashMap<>();
+            StringJoiner sql = new StringJoiner(", ", "select RES.* from " + taskTableName + " RES where RES.ID_ in (", ")");
+            for (int i = 0; i < partition.size(); i++) {
+                sql.add("#{taskId" + i + "}");
+                parameterMap.put("taskId" + i, partition.get(i));
+            }
+            parameterMap.put("sql", sql.toString());
+            commandContext.getTaskEntityManager().findTasksByNativeQuery(parameterMap, 0, Integer.MAX_VALUE)
+                    .forEach(task -> processInstanceIds.put(task.getId(), task.getProcessInstanceId()));
+        }
+        return processInstanceIds;
+    }
+}
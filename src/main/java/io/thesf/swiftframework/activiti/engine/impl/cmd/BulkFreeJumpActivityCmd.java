@@ -0,0 +1,100 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.cmd;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.BulkOperationResult;
+import io.thesf.swiftframework.activiti.api.runtime.model.impl.BulkOperationResultImpl;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommand;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommandContext;
+import lombok.extern.slf4j.Slf4j;
+import org.activiti.engine.impl.interceptor.CommandConfig;
+import org.activiti.engine.impl.interceptor.CommandExecutor;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Command for {@literal Free jump activity} of many process instances.
+ *
+ * 1. Process instances are split into chunks, and each chunk is jumped by {@link FreeJumpActivitiesCmd} in its own transaction.
+ * 2. If a chunk fails, its process instances are jumped one by one by {@link FreeJumpActivityCmd},
+ * so that only the failed process instances are left behind.
+ * 3. The outcome of each process instance is reported in the order given.
+ *
+ * Warning:
+ * 1. Chunks committed before a failure are not rolled back.
+ * 2. The command itself does not touch the database. Execute it with {@link CommandConfig#transactionNotSupported()}
+ * to avoid holding an idle transaction while the chunks run.
+ *
+ * @author VirtualCry
+ */
+@Slf4j
+public class BulkFreeJumpActivityCmd extends SpringCommand<List<BulkOperationResult>> {
+
+    public static final int             DEFAULT_CHUNK_SIZE = 200;
+
+    private final List<String>          processInstanceIds;
+    private final String[]              targetActivityIds;
+    private final Map<String, Object>   targetActivityVariables;
+    private final String                jumpReason;
+    private final int                   chunkSize;
+
+
+    public BulkFreeJumpActivityCmd(Collection<String> processInstanceIds, String[] targetActivityIds, Map<String, Object> targetActivityVariables, String jumpReason, int chunkSize) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Chunk size must be positive.");
+        this.processInstanceIds = processInstanceIds.stream().distinct().collect(Collectors.toList());
+        this.targetActivityIds = targetActivityIds;
+        this.targetActivityVariables = targetActivityVariables;
+        this.jumpReason = jumpReason;
+        this.chunkSize = chunkSize;
+    }
+
+    public BulkFreeJumpActivityCmd(Collection<String> processInstanceIds, String[] targetActivityIds, Map<String, Object> targetActivityVariables, String jumpReason) {
+        this(processInstanceIds, targetActivityIds, targetActivityVariables, jumpReason, DEFAULT_CHUNK_SIZE);
+    }
+
+    public BulkFreeJumpActivityCmd(Collection<String> processInstanceIds, String[] targetActivityIds) {
+        this(processInstanceIds, targetActivityIds, null, null);
+    }
+
+
+    @Override
+    public List<BulkOperationResult> execute(SpringCommandContext commandContext) {
+
+        CommandExecutor commandExecutor = commandContext.getProcessEngineConfiguration().getCommandExecutor();
+        CommandConfig chunkCommandConfig = commandExecutor.getDefaultConfig().transactionRequiresNew();
+
+        List<BulkOperationResult> results = new ArrayList<>(processInstanceIds.size());
+        for (int i = 0; i < processInstanceIds.size(); i += chunkSize) {
+            List<String> chunk = processInstanceIds.subList(i, Math.min(i + chunkSize, processInstanceIds.size()));
+            try {
+                results.addAll(commandExecutor.execute(chunkCommandConfig,
+                        new FreeJumpActivitiesCmd(chunk, targetActivityIds, targetActivityVariables, jumpReason)));
+            } catch (Exception ex) {
+                log.warn("Failed to jump chunk of {} process instances, jump them one by one.", chunk.size(), ex);
+                for (String processInstanceId : chunk) {
+                    try {
+                        commandExecutor.execute(chunkCommandConfig,
+                                new FreeJumpActivityCmd(processInstanceId, targetActivityIds, targetActivityVariables, jumpReason));
+                        results.add(BulkOperationResultImpl.succeeded(processInstanceId, processInstanceId));
+                    } catch (Exception instanceEx) {
+                        results.add(BulkOperationResultImpl.failed(processInstanceId, processInstanceId, instanceEx.getMessage()));
+                    }
+                }
+            }
+        }
+
+        return results;
+    }
+}
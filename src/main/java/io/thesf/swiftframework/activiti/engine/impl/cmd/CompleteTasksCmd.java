@@ -0,0 +1,83 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.cmd;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.BulkOperationResult;
+import io.thesf.swiftframework.activiti.api.runtime.model.impl.BulkOperationResultImpl;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommand;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommandContext;
+import org.activiti.engine.impl.cmd.CompleteTaskCmd;
+import org.activiti.engine.impl.interceptor.CommandConfig;
+import org.activiti.engine.impl.interceptor.CommandExecutor;
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
+
+import java.util.*;
+
+/**
+ * Command for {@literal Complete task} of multiple tasks in one transaction.
+ *
+ * 1. Tasks share the command context, so that entities, process definitions and history are loaded and flushed once.
+ * Each task is completed as a command reusing the context, so that the agenda is drained per task.
+ * 2. Tasks are completed grouped by process instance, in the order of first occurrence.
+ * 3. A task which could not be found, or is suspended, is reported as failed without failing the others.
+ *
+ * @see BulkCompleteTaskCmd
+ * @author VirtualCry
+ */
+public class CompleteTasksCmd extends SpringCommand<List<BulkOperationResult>> {
+
+    private final Map<String, Map<String, Object>>      taskVariables;
+
+
+    /**
+     * @param taskVariables variables to complete each task with, keyed by task id. The value may be null.
+     */
+    public CompleteTasksCmd(Map<String, Map<String, Object>> taskVariables) {
+        this.taskVariables = new LinkedHashMap<>(taskVariables);
+    }
+
+
+    @Override
+    public List<BulkOperationResult> execute(SpringCommandContext commandContext) {
+
+        if (taskVariables.isEmpty())
+            return Collections.emptyList();
+
+        // Validate tasks, then group them by process instance
+        Map<String, BulkOperationResult> results = new LinkedHashMap<>();
+        Map<String, List<TaskEntity>> tasksByProcessInstance = new LinkedHashMap<>();
+        for (String taskId : taskVariables.keySet()) {
+            TaskEntity task = commandContext.getTaskEntityManager().findById(taskId);
+            if (task == null) {
+                results.put(taskId, BulkOperationResultImpl.failed(taskId, null, "Cannot find task with id " + taskId));
+                continue;
+            }
+            if (task.isSuspended()) {
+                results.put(taskId, BulkOperationResultImpl.failed(taskId, task.getProcessInstanceId(), "Cannot complete a suspended task"));
+                continue;
+            }
+            results.put(taskId, null);
+            tasksByProcessInstance.computeIfAbsent(task.getProcessInstanceId(), key -> new ArrayList<>()).add(task);
+        }
+
+        // Complete tasks, the task found above is reused from the entity cache
+        CommandExecutor commandExecutor = commandContext.getProcessEngineConfiguration().getCommandExecutor();
+        CommandConfig taskCommandConfig = commandExecutor.getDefaultConfig().setContextReusePossible(true);
+        tasksByProcessInstance.values().forEach(tasks -> tasks.forEach(task -> {
+            commandExecutor.execute(taskCommandConfig, new CompleteTaskCmd(task.getId(), taskVariables.get(task.getId())));
+            results.put(task.getId(), BulkOperationResultImpl.succeeded(task.getId(), task.getProcessInstanceId()));
+        }));
+
+        return new ArrayList<>(results.values());
+    }
+}
@@ -0,0 +1,78 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.cmd;
+
+import io.thesf.swiftframework.activiti.engine.impl.bpmn.analysis.ProcessDefinitionAnalysis;
+import io.thesf.swiftframework.activiti.engine.impl.bpmn.analysis.ProcessDefinitionAnalyzer;
+import org.activiti.bpmn.model.ExclusiveGateway;
+import org.activiti.bpmn.model.FlowElement;
+import org.activiti.bpmn.model.FlowNode;
+import org.activiti.bpmn.model.InclusiveGateway;
+import org.activiti.bpmn.model.Process;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.util.ProcessDefinitionUtil;
+
+/**
+ * Command for {@literal Count outgoing flows}.
+ *
+ * 1. The count is derived statically from the cached {@link Process} model, except for {@link InclusiveGateway}
+ * whose conditions have to be evaluated against the process instance.
+ * 2. Designed to be executed directly with the current {@link CommandContext},
+ * so that no nested command context or transaction is opened.
+ * 3. If there is a {@link ProcessDefinitionAnalyzer} bean, the count is taken from the cached analysis,
+ * and only inclusive gateways with conditions are evaluated.
+ *
+ * @see CalculateOutgoingFlowsCmd
+ * @author VirtualCry
+ */
+public class CountOutgoingFlowsCmd implements Command<Integer> {
+
+    private final String                processDefinitionId;
+    private final String                processInstanceId;
+    private final String                elementId;
+
+    public CountOutgoingFlowsCmd(String processDefinitionId, String processInstanceId, String elementId) {
+        this.processDefinitionId = processDefinitionId;
+        this.processInstanceId = processInstanceId;
+        this.elementId = elementId;
+    }
+
+
+    @Override
+    public Integer execute(CommandContext commandContext) {
+
+        // Get count from the analysis of process definition
+        ProcessDefinitionAnalysis analysis = ProcessDefinitionAnalyzer.getAnalysisIfAvailable(commandContext, processDefinitionId);
+        if (analysis != null
+                && (analysis.getKind(elementId) != ProcessDefinitionAnalysis.ElementKind.INCLUSIVE_GATEWAY
+                        || CalculateOutgoingFlowsCmd.isUnconditional(commandContext, analysis, elementId)))
+            return analysis.getFanOutCount(elementId);
+
+        // Get bpmn process
+        Process bpmnProcess = ProcessDefinitionUtil.getProcess(processDefinitionId);
+        // Get flow element.
+        FlowElement flowElement = bpmnProcess.getFlowElement(elementId);
+
+        if (!(flowElement instanceof FlowNode))
+            return 0;
+
+        FlowNode flowNode = (FlowNode) flowElement;
+        if (flowNode instanceof ExclusiveGateway)
+            return Math.min(1, flowNode.getOutgoingFlows().size());
+        else if (flowNode instanceof InclusiveGateway)
+            return new CalculateOutgoingFlowsCmd(processInstanceId, elementId).execute(commandContext).size();
+        else
+            return flowNode.getOutgoingFlows().size();
+    }
+}
@@ -0,0 +1,113 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.cmd;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.BulkOperationResult;
+import io.thesf.swiftframework.activiti.api.runtime.model.impl.BulkOperationResultImpl;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommand;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommandContext;
+import org.activiti.bpmn.model.FlowElement;
+import org.activiti.engine.impl.ProcessInstanceQueryImpl;
+import org.activiti.engine.impl.TaskQueryImpl;
+import org.activiti.engine.impl.persistence.entity.ExecutionEntity;
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Command for {@literal Free jump activity} of multiple process instances in one transaction.
+ *
+ * 1. Root executions and todoTasks of all process instances are fetched with one query each.
+ * 2. Target elements are resolved once for each process definition.
+ * 3. A process instance which could not be found, or whose process definition does not contain the targets,
+ * is reported as failed without failing the others.
+ *
+ * @see FreeJumpActivityCmd
+ * @see BulkFreeJumpActivityCmd
+ * @author VirtualCry
+ */
+public class FreeJumpActivitiesCmd extends SpringCommand<List<BulkOperationResult>> {
+
+    private final List<String>          processInstanceIds;
+    private final List<String>          targetActivityIds;
+    private final Map<String, Object>   targetActivityVariables;
+    private final String                jumpReason;
+
+
+    public FreeJumpActivitiesCmd(Collection<String> processInstanceIds, String[] targetActivityIds, Map<String, Object> targetActivityVariables, String jumpReason) {
+        this.processInstanceIds = processInstanceIds.stream().distinct().collect(Collectors.toList());
+        this.targetActivityIds = Arrays.stream(targetActivityIds).collect(Collectors.toList());
+        this.targetActivityVariables = Optional.ofNullable(targetActivityVariables).orElse(Collections.emptyMap());
+        this.jumpReason = StringUtils.isEmpty(jumpReason) ? "FREE_JUMP" : jumpReason;
+    }
+
+    public FreeJumpActivitiesCmd(Collection<String> processInstanceIds, String[] targetActivityIds) {
+        this(processInstanceIds, targetActivityIds, null, null);
+    }
+
+
+    @Override
+    public List<BulkOperationResult> execute(SpringCommandContext commandContext) {
+
+        if (processInstanceIds.isEmpty())
+            return Collections.emptyList();
+
+        // Get root executions
+        ProcessInstanceQueryImpl processInstanceQuery = new ProcessInstanceQueryImpl();
+        processInstanceQuery.processInstanceIds(new HashSet<>(processInstanceIds));
+        Map<String, ExecutionEntity> rootExecutions = commandContext.getExecutionEntityManager()
+                .findProcessInstanceByQueryCriteria(processInstanceQuery).stream()
+                .map(ExecutionEntity.class::cast)
+                .collect(Collectors.toMap(ExecutionEntity::getId, Function.identity()));
+
+        // Get todoTasks
+        TaskQueryImpl taskQuery = new TaskQueryImpl();
+        taskQuery.processInstanceIdIn(processInstanceIds);
+        Map<String, List<TaskEntity>> todoTaskEntities = commandContext.getTaskEntityManager()
+                .findTasksByQueryCriteria(taskQuery).stream()
+                .map(TaskEntity.class::cast)
+                .collect(Collectors.groupingBy(TaskEntity::getProcessInstanceId));
+
+        // Target elements of each process definition
+        Map<String, List<FlowElement>> targetElementsByDefinition = new HashMap<>();
+
+        List<BulkOperationResult> results = new ArrayList<>(processInstanceIds.size());
+        for (String processInstanceId : processInstanceIds) {
+
+            ExecutionEntity rootExecution = rootExecutions.get(processInstanceId);
+            if (rootExecution == null) {
+                results.add(BulkOperationResultImpl.failed(processInstanceId, processInstanceId, "Could not find process instance with id " + processInstanceId));
+                continue;
+            }
+
+            List<FlowElement> targetElements;
+            try {
+                targetElements = targetElementsByDefinition.computeIfAbsent(rootExecution.getProcessDefinitionId(),
+                        processDefinitionId -> FreeJumpActivityCmd.resolveTargetElements(commandContext, processDefinitionId, targetActivityIds));
+            } catch (RuntimeException ex) {
+                results.add(BulkOperationResultImpl.failed(processInstanceId, processInstanceId, ex.getMessage()));
+                continue;
+            }
+
+            FreeJumpActivityCmd.jump(commandContext, rootExecution,
+                    todoTaskEntities.getOrDefault(processInstanceId, Collections.emptyList()),
+                    targetElements, targetActivityVariables, jumpReason);
+            results.add(BulkOperationResultImpl.succeeded(processInstanceId, processInstanceId));
+        }
+
+        return results;
+    }
+}
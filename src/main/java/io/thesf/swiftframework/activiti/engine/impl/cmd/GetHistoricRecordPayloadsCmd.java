@@ -0,0 +1,156 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.cmd;
+
+import io.thesf.swiftframework.activiti.api.process.assembler.BPMNActivityAssembler;
+import io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivityRecordPayload;
+import io.thesf.swiftframework.activiti.engine.impl.history.payloads.SequenceFlowTakenRecordPayload;
+import org.activiti.api.runtime.model.impl.BPMNSequenceFlowImpl;
+import org.activiti.bpmn.model.FlowElement;
+import org.activiti.bpmn.model.FlowNode;
+import org.activiti.bpmn.model.Process;
+import org.activiti.bpmn.model.SequenceFlow;
+import org.activiti.engine.history.HistoricActivityInstance;
+import org.activiti.engine.impl.HistoricActivityInstanceQueryImpl;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.HistoricProcessInstanceEntity;
+import org.activiti.engine.impl.util.ProcessDefinitionUtil;
+
+import java.util.*;
+
+/**
+ * Command for {@literal Get historic record payloads}, which rebuild the chain of a running process instance from history.
+ *
+ * 1. Historic activities are replayed in order of their start time. Each activity is reached by a sequence flow
+ * from the latest activity ended before it, which is connected to it by the {@link Process} model.
+ * 2. An activity which has incoming flows, but no such source, is reached by a {@literal Free jump}
+ * from the latest activity ended before it.
+ * 3. Activities without incoming flows, such as start events and boundary events, are not reached by flows.
+ *
+ * Warning:
+ * 1. The history level must be {@literal activity} or higher. Otherwise, or if the process instance has ended, there is no payload.
+ * 2. Chains rebuilt follow the sequence flows and free jumps found in history. A roll back is replayed as a free jump back to its target.
+ *
+ * @see io.thesf.swiftframework.activiti.engine.impl.history.recorder.BPMNProcessRebuildRecorder
+ * @author VirtualCry
+ */
+public class GetHistoricRecordPayloadsCmd implements Command<List<BPMNProcessActivityRecordPayload>> {
+
+    private final String                processInstanceId;
+
+    public GetHistoricRecordPayloadsCmd(String processInstanceId) {
+        this.processInstanceId = processInstanceId;
+    }
+
+
+    @Override
+    public List<BPMNProcessActivityRecordPayload> execute(CommandContext commandContext) {
+
+        // Only process instances which are running
+        HistoricProcessInstanceEntity historicProcessInstance = commandContext.getHistoricProcessInstanceEntityManager().findById(processInstanceId);
+        if (historicProcessInstance == null || historicProcessInstance.getEndTime() != null)
+            return Collections.emptyList();
+        String processDefinitionId = historicProcessInstance.getProcessDefinitionId();
+        Process bpmnProcess = ProcessDefinitionUtil.getProcess(processDefinitionId);
+
+        // Get historic activities in order of their start time
+        List<HistoricActivityInstance> activityInstances = new ArrayList<>(
+                new HistoricActivityInstanceQueryImpl(commandContext).processInstanceId(processInstanceId).list());
+        activityInstances.sort(Comparator.comparing(HistoricActivityInstance::getStartTime)
+                .thenComparing(HistoricActivityInstance::getId, GetHistoricRecordPayloadsCmd::compareIds));
+
+        List<BPMNProcessActivityRecordPayload> recordPayloads = new ArrayList<>();
+        Map<HistoricActivityInstance, List<SequenceFlowTakenRecordPayload>> takenFlows = new IdentityHashMap<>();
+        List<HistoricActivityInstance> reachedActivityInstances = new ArrayList<>(activityInstances.size());
+        for (HistoricActivityInstance activityInstance : activityInstances) {
+            FlowElement flowElement = bpmnProcess.getFlowElement(activityInstance.getActivityId(), true);
+            if (flowElement instanceof FlowNode && !((FlowNode) flowElement).getIncomingFlows().isEmpty()) {
+                HistoricActivityInstance sourceInstance = null;
+                SequenceFlow sequenceFlow = null;
+                for (int i = reachedActivityInstances.size() - 1; i >= 0 && sequenceFlow == null; i--) {
+                    HistoricActivityInstance candidateInstance = reachedActivityInstances.get(i);
+                    if (isEndedBefore(candidateInstance, activityInstance)) {
+                        sequenceFlow = findIncomingFlow((FlowNode) flowElement, candidateInstance.getActivityId());
+                        sourceInstance = candidateInstance;
+                    }
+                }
+
+                if (sequenceFlow != null) {
+                    // Reached by a sequence flow
+                    SequenceFlowTakenRecordPayload recordPayload = BPMNProcessActivityRecordPayload.sequenceFlowTakenRecord()
+                            .bpmnSequenceFlow(this.toBPMNSequenceFlow(bpmnProcess, processDefinitionId, sequenceFlow))
+                            .build();
+                    takenFlows.computeIfAbsent(sourceInstance, key -> new ArrayList<>()).add(recordPayload);
+                    recordPayloads.add(recordPayload);
+                }
+                else {
+                    // Reached by a free jump
+                    HistoricActivityInstance lastEndedInstance = reachedActivityInstances.stream()
+                            .filter(candidateInstance -> isEndedBefore(candidateInstance, activityInstance))
+                            .max(Comparator.comparing(HistoricActivityInstance::getEndTime))
+                            .orElse(null);
+                    if (lastEndedInstance != null)
+                        recordPayloads.add(BPMNProcessActivityRecordPayload.freeJumpRecord()
+                                .processInstanceId(processInstanceId)
+                                .sourceActivities(Collections.singletonList(BPMNActivityAssembler.from(
+                                        bpmnProcess.getFlowElement(lastEndedInstance.getActivityId(), true), processDefinitionId, processInstanceId)))
+                                .targetActivities(Collections.singletonList(BPMNActivityAssembler.from(
+                                        flowElement, processDefinitionId, processInstanceId)))
+                                .build());
+                }
+            }
+            reachedActivityInstances.add(activityInstance);
+        }
+
+        // The number of activities from the same source
+        takenFlows.values().forEach(flows -> flows.forEach(recordPayload -> recordPayload.setOutgoingCount(flows.size())));
+
+        return recordPayloads;
+    }
+
+
+    private BPMNSequenceFlowImpl toBPMNSequenceFlow(Process bpmnProcess, String processDefinitionId, SequenceFlow sequenceFlow) {
+        FlowElement sourceElement = bpmnProcess.getFlowElement(sequenceFlow.getSourceRef(), true);
+        FlowElement targetElement = bpmnProcess.getFlowElement(sequenceFlow.getTargetRef(), true);
+        BPMNSequenceFlowImpl bpmnSequenceFlow = new BPMNSequenceFlowImpl(sequenceFlow.getId(), sequenceFlow.getSourceRef(), sequenceFlow.getTargetRef());
+        bpmnSequenceFlow.setSourceActivityName(sourceElement.getName());
+        bpmnSequenceFlow.setSourceActivityType(sourceElement.getClass().getName());
+        bpmnSequenceFlow.setTargetActivityName(targetElement.getName());
+        bpmnSequenceFlow.setTargetActivityType(targetElement.getClass().getName());
+        bpmnSequenceFlow.setProcessDefinitionId(processDefinitionId);
+        bpmnSequenceFlow.setProcessInstanceId(processInstanceId);
+        return bpmnSequenceFlow;
+    }
+
+    private static SequenceFlow findIncomingFlow(FlowNode flowNode, String sourceElementId) {
+        for (SequenceFlow incomingFlow : flowNode.getIncomingFlows()) {
+            if (incomingFlow.getSourceRef().equals(sourceElementId))
+                return incomingFlow;
+        }
+        return null;
+    }
+
+    private static boolean isEndedBefore(HistoricActivityInstance activityInstance, HistoricActivityInstance nextActivityInstance) {
+        return activityInstance.getEndTime() != null && !activityInstance.getEndTime().after(nextActivityInstance.getStartTime());
+    }
+
+    /**
+     * Compare ids of the same start time, numerically if both are generated numbers.
+     */
+    private static int compareIds(String id, String otherId) {
+        if (id.length() != otherId.length() && id.chars().allMatch(Character::isDigit) && otherId.chars().allMatch(Character::isDigit))
+            return Integer.compare(id.length(), otherId.length());
+        return id.compareTo(otherId);
+    }
+}
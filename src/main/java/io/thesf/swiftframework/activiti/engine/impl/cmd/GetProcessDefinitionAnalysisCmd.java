@@ -0,0 +1,42 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.cmd;
+
+import io.thesf.swiftframework.activiti.engine.impl.bpmn.analysis.ProcessDefinitionAnalysis;
+import io.thesf.swiftframework.activiti.engine.impl.bpmn.analysis.ProcessDefinitionAnalyzer;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+
+/**
+ * Command for {@literal Get process definition analysis}.
+ *
+ * 1. If there is a {@link ProcessDefinitionAnalyzer} bean, the cached analysis is returned.
+ * Otherwise, the process definition is analyzed each time.
+ *
+ * @author VirtualCry
+ */
+public class GetProcessDefinitionAnalysisCmd implements Command<ProcessDefinitionAnalysis> {
+
+    private final String                processDefinitionId;
+
+    public GetProcessDefinitionAnalysisCmd(String processDefinitionId) {
+        this.processDefinitionId = processDefinitionId;
+    }
+
+
+    @Override
+    public ProcessDefinitionAnalysis execute(CommandContext commandContext) {
+        ProcessDefinitionAnalysis analysis = ProcessDefinitionAnalyzer.getAnalysisIfAvailable(commandContext, processDefinitionId);
+        return analysis != null ? analysis : ProcessDefinitionAnalyzer.analyze(processDefinitionId);
+    }
+}
@@ -0,0 +1,96 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.cmd;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.BPMNProcessChain;
+import io.thesf.swiftframework.activiti.cache.data.BPMNProcessChainCacheManager;
+import io.thesf.swiftframework.activiti.engine.impl.bpmn.analysis.ProcessDefinitionAnalysis;
+import io.thesf.swiftframework.activiti.engine.impl.bpmn.analysis.ProcessDefinitionAnalyzer;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommand;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommandContext;
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
+import org.springframework.util.StringUtils;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Command for {@literal Roll back activity} by several tasks at once.
+ *
+ * 1. Roll back by the specified number of tasks, or to the last execution of the specified task.
+ * 2. The final target is derived from the process chain once, then the executions are rewritten once
+ * and one record payload is written, instead of repeating {@link RollBackActivityCmd} for each task.
+ * 3. Rollback by one task is the same as {@link RollBackActivityCmd}.
+ *
+ * @see RollBackActivityCmd
+ * @author VirtualCry
+ */
+public class MultiStepRollBackActivityCmd extends SpringCommand<Void> {
+
+    private final String                taskId;
+    private final int                   steps;
+    private final String                targetActivityId;
+    private final Map<String, Object>   targetActivityVariables;
+    private final String                rollBackReason;
+
+
+    public MultiStepRollBackActivityCmd(String taskId, int steps, Map<String, Object> targetActivityVariables, String rollBackReason) {
+        this(taskId, steps, null, targetActivityVariables, rollBackReason);
+    }
+
+    public MultiStepRollBackActivityCmd(String taskId, int steps) {
+        this(taskId, steps, null, null);
+    }
+
+    public MultiStepRollBackActivityCmd(String taskId, String targetActivityId, Map<String, Object> targetActivityVariables, String rollBackReason) {
+        this(taskId, 0, targetActivityId, targetActivityVariables, rollBackReason);
+    }
+
+    public MultiStepRollBackActivityCmd(String taskId, String targetActivityId) {
+        this(taskId, targetActivityId, null, null);
+    }
+
+    private MultiStepRollBackActivityCmd(String taskId, int steps, String targetActivityId, Map<String, Object> targetActivityVariables, String rollBackReason) {
+        this.taskId = taskId;
+        this.steps = steps;
+        this.targetActivityId = targetActivityId;
+        this.targetActivityVariables = Optional.ofNullable(targetActivityVariables).orElse(Collections.emptyMap());
+        this.rollBackReason = StringUtils.isEmpty(rollBackReason) ? "ROLL_BACK" : rollBackReason;
+    }
+
+
+    @Override
+    public Void execute(SpringCommandContext commandContext) {
+
+        // manager for `BPMNProcessChain`
+        BPMNProcessChainCacheManager bpmnProcessChainCacheManager = commandContext.getBean(BPMNProcessChainCacheManager.class);
+
+        // Get current task info
+        TaskEntity task = Optional.ofNullable(commandContext.getTaskEntityManager().findById(taskId))
+                .orElseThrow(() -> new RuntimeException("Could not find task with id " + taskId));
+        // Get process chain.
+        BPMNProcessChain processChain = bpmnProcessChainCacheManager.get(task.getProcessInstanceId());
+        // Get analysis of process definition
+        ProcessDefinitionAnalysis analysis = ProcessDefinitionAnalyzer.getAnalysisIfAvailable(commandContext, task.getProcessDefinitionId());
+
+        // Plan the rollback to the final target
+        RollBackActivityPlan rollBackPlan = targetActivityId != null
+                ? RollBackActivityPlan.planTo(processChain, task.getTaskDefinitionKey(), analysis, targetActivityId)
+                : RollBackActivityPlan.plan(processChain, task.getTaskDefinitionKey(), analysis, steps);
+
+        RollBackActivityCmd.rollBack(commandContext, task.getProcessInstance(), rollBackPlan, targetActivityVariables, rollBackReason);
+
+        return null;
+    }
+}
@@ -0,0 +1,117 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.cmd;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.BPMNProcessChain;
+import io.thesf.swiftframework.activiti.api.runtime.model.BulkOperationResult;
+import io.thesf.swiftframework.activiti.api.runtime.model.impl.BulkOperationResultImpl;
+import io.thesf.swiftframework.activiti.cache.data.BPMNProcessChainCacheManager;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommand;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommandContext;
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
+import org.activiti.engine.impl.persistence.entity.TaskEntityManager;
+import org.springframework.util.StringUtils;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Command for {@literal Roll back activity} of multiple tasks in one transaction.
+ *
+ * 1. Tasks are grouped by process instance, and the rollbacks of each process instance are planned
+ * against one snapshot of its process chain, then merged.
+ * 2. Each process instance is rolled back once: one query for the executions to delete,
+ * one creation for each target task and one record payload.
+ * 3. A task which could not be found or planned is reported as failed without failing the others.
+ *
+ * Warning:
+ * 1. All rollbacks share one transaction. A failure while executing the rollbacks fails all of them.
+ *
+ * @see RollBackActivityCmd
+ * @author VirtualCry
+ */
+public class RollBackActivitiesCmd extends SpringCommand<List<BulkOperationResult>> {
+
+    private final List<String>          taskIds;
+    private final Map<String, Object>   targetActivityVariables;
+    private final String                rollBackReason;
+
+
+    public RollBackActivitiesCmd(Collection<String> taskIds, Map<String, Object> targetActivityVariables, String rollBackReason) {
+        this.taskIds = taskIds.stream().distinct().collect(Collectors.toList());
+        this.targetActivityVariables = Optional.ofNullable(targetActivityVariables).orElse(Collections.emptyMap());
+        this.rollBackReason = StringUtils.isEmpty(rollBackReason) ? "ROLL_BACK" : rollBackReason;
+    }
+
+    public RollBackActivitiesCmd(Collection<String> taskIds, Map<String, Object> targetActivityVariables) {
+        this(taskIds, targetActivityVariables, null);
+    }
+
+    public RollBackActivitiesCmd(Collection<String> taskIds) {
+        this(taskIds, null);
+    }
+
+
+    @Override
+    public List<BulkOperationResult> execute(SpringCommandContext commandContext) {
+
+        // manager for `BPMNProcessChain`
+        BPMNProcessChainCacheManager bpmnProcessChainCacheManager = commandContext.getBean(BPMNProcessChainCacheManager.class);
+        // manager for `TaskEntity`
+        TaskEntityManager taskEntityManager = commandContext.getTaskEntityManager();
+
+        Map<String, BulkOperationResult> results = new LinkedHashMap<>();
+        taskIds.forEach(taskId -> results.put(taskId, null));
+
+        // Get tasks grouped by process instance
+        Map<String, List<TaskEntity>> tasksByProcessInstance = new LinkedHashMap<>();
+        for (String taskId : taskIds) {
+            TaskEntity task = taskEntityManager.findById(taskId);
+            if (task == null)
+                results.put(taskId, BulkOperationResultImpl.failed(taskId, null, "Could not find task with id " + taskId));
+            else
+                tasksByProcessInstance.computeIfAbsent(task.getProcessInstanceId(), key -> new ArrayList<>()).add(task);
+        }
+
+        tasksByProcessInstance.forEach((processInstanceId, tasks) -> {
+
+            // Get process chain.
+            BPMNProcessChain processChain = bpmnProcessChainCacheManager.get(processInstanceId);
+            if (processChain == null) {
+                tasks.forEach(task -> results.put(task.getId(),
+                        BulkOperationResultImpl.failed(task.getId(), processInstanceId, "Could not find process chain of process instance " + processInstanceId)));
+                return;
+            }
+
+            // Plan the rollback of each task against the same process chain
+            RollBackActivityPlan rollBackPlan = null;
+            List<TaskEntity> plannedTasks = new ArrayList<>(tasks.size());
+            for (TaskEntity task : tasks) {
+                try {
+                    RollBackActivityPlan taskRollBackPlan = RollBackActivityPlan.plan(processChain, task.getTaskDefinitionKey());
+                    rollBackPlan = rollBackPlan == null ? taskRollBackPlan : rollBackPlan.merge(taskRollBackPlan);
+                    plannedTasks.add(task);
+                } catch (RuntimeException ex) {
+                    results.put(task.getId(), BulkOperationResultImpl.failed(task.getId(), processInstanceId, ex.getMessage()));
+                }
+            }
+            if (rollBackPlan == null)
+                return;
+
+            RollBackActivityCmd.rollBack(commandContext, plannedTasks.get(0).getProcessInstance(), rollBackPlan, targetActivityVariables, rollBackReason);
+            plannedTasks.forEach(task -> results.put(task.getId(), BulkOperationResultImpl.succeeded(task.getId(), processInstanceId)));
+        });
+
+        return new ArrayList<>(results.values());
+    }
+}
@@ -0,0 +1,141 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.cmd;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.BPMNActivityChain;
+import io.thesf.swiftframework.activiti.api.runtime.model.BPMNProcessChain;
+import io.thesf.swiftframework.activiti.api.runtime.model.BPMNRollBackTarget;
+import io.thesf.swiftframework.activiti.api.runtime.model.impl.BPMNActivityChainImpl;
+import io.thesf.swiftframework.activiti.engine.impl.bpmn.analysis.ProcessDefinitionAnalysis;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.activiti.api.process.model.BPMNActivity;
+import org.activiti.api.process.model.BPMNElement;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Plan of {@literal Roll back activity}, computed from a process chain without touching executions.
+ * The plan is taken from the {@link BPMNRollBackTarget} derived from the running chains indexed by the process chain.
+ *
+ * @see RollBackActivityCmd
+ * @author VirtualCry
+ */
+@AllArgsConstructor
+@Getter
+public class RollBackActivityPlan {
+
+    private final Set<BPMNActivity>         targetTasks;
+    private final Set<BPMNActivityChain>    turnBackActivityChains;
+    private final Set<BPMNActivityChain>    recoveryActivityChains;
+
+
+    /**
+     * Plan the rollback of the task to the previous task.
+     *
+     * @param processChain      process chain of the process instance
+     * @param taskDefinitionKey taskDefinitionKey
+     * @return The {@link RollBackActivityPlan}.
+     */
+    public static RollBackActivityPlan plan(BPMNProcessChain processChain, String taskDefinitionKey) {
+
+        // Get target from the previous tasks indexed by the process chain
+        BPMNRollBackTarget rollBackTarget = processChain.getRollBackTarget(taskDefinitionKey);
+
+        return of(rollBackTarget);
+    }
+
+    /**
+     * Plan the rollback of the task by the specified number of tasks at once.
+     *
+     * @param processChain      process chain of the process instance
+     * @param taskDefinitionKey taskDefinitionKey
+     * @param analysis          analysis of the process definition, may be null
+     * @param steps             number of tasks to roll back, 1 for the previous task
+     * @return The {@link RollBackActivityPlan}.
+     */
+    public static RollBackActivityPlan plan(BPMNProcessChain processChain, String taskDefinitionKey, ProcessDefinitionAnalysis analysis, int steps) {
+        if (steps < 1)
+            throw new IllegalArgumentException("Steps of roll back must be positive, but got " + steps + ".");
+        if (steps == 1)
+            return plan(processChain, taskDefinitionKey);
+
+        Predicate<BPMNActivity> taskPredicate = taskPredicate(analysis);
+        return of(processChain.deriveRollBackTarget(taskDefinitionKey, activityChain -> activityChain.getLastTaskIndex(steps + 1, taskPredicate)));
+    }
+
+    /**
+     * Plan the rollback of the task to the last execution of the target task at once.
+     *
+     * @param processChain      process chain of the process instance
+     * @param taskDefinitionKey taskDefinitionKey
+     * @param analysis          analysis of the process definition, may be null
+     * @param targetActivityId  element id of the target task
+     * @return The {@link RollBackActivityPlan}.
+     */
+    public static RollBackActivityPlan planTo(BPMNProcessChain processChain, String taskDefinitionKey, ProcessDefinitionAnalysis analysis, String targetActivityId) {
+        Predicate<BPMNActivity> taskPredicate = taskPredicate(analysis);
+        return of(processChain.deriveRollBackTarget(taskDefinitionKey, activityChain -> activityChain.getLastTaskIndex(targetActivityId, taskPredicate)));
+    }
+
+    /**
+     * Get the predicate to judge tasks. Tasks are judged with the analysis of process definition if present,
+     * instead of loading the class of each activity type.
+     *
+     * @param analysis  analysis of the process definition, may be null
+     * @return The {@link Predicate}.
+     */
+    private static Predicate<BPMNActivity> taskPredicate(ProcessDefinitionAnalysis analysis) {
+        return analysis == null ? BPMNActivityChainImpl::isTask : analysis.getTaskPredicate();
+    }
+
+    private static RollBackActivityPlan of(BPMNRollBackTarget rollBackTarget) {
+        return new RollBackActivityPlan(
+                rollBackTarget.getTargetTasks(),
+                rollBackTarget.getTurnBackActivityChains(),
+                rollBackTarget.getRecoveryActivityChains()
+        );
+    }
+
+
+    /**
+     * Get the activities that need to be rolled back.
+     *
+     * @return The element ids.
+     */
+    public Set<String> getTurnBackActivityIds() {
+        return this.turnBackActivityChains.stream()
+                .map(BPMNActivityChain::getLastActivity)
+                .map(BPMNElement::getElementId)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Merge with the plan of another task of the same process instance, planned against the same process chain.
+     *
+     * @param plan  plan
+     * @return A new {@link RollBackActivityPlan}.
+     */
+    public RollBackActivityPlan merge(RollBackActivityPlan plan) {
+        Set<BPMNActivity> mergedTargetTasks = new HashSet<>(this.targetTasks);
+        mergedTargetTasks.addAll(plan.getTargetTasks());
+        Set<BPMNActivityChain> mergedTurnBackActivityChains = new HashSet<>(this.turnBackActivityChains);
+        mergedTurnBackActivityChains.addAll(plan.getTurnBackActivityChains());
+        Set<BPMNActivityChain> mergedRecoveryActivityChains = new HashSet<>(this.recoveryActivityChains);
+        mergedRecoveryActivityChains.addAll(plan.getRecoveryActivityChains());
+        return new RollBackActivityPlan(mergedTargetTasks, mergedTurnBackActivityChains, mergedRecoveryActivityChains);
+    }
+}
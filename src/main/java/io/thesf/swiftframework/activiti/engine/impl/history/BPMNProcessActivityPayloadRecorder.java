@@ -0,0 +1,41 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history;
+
+/**
+ * SPI for recording one kind of {@link BPMNProcessActivityRecordPayload}.
+ *
+ * 1. Each recorder declares the payload type it handles.
+ * 2. Several recorders may handle the same payload type, such as a journal or metrics recorder
+ * alongside the chain recorder. They are invoked in {@link org.springframework.core.Ordered} order.
+ *
+ * @see io.thesf.swiftframework.activiti.engine.impl.history.route.BPMNProcessActivityRecorderRouter
+ * @author VirtualCry
+ */
+public interface BPMNProcessActivityPayloadRecorder<T extends BPMNProcessActivityRecordPayload> {
+
+    /**
+     * Get the type of payload handled by this recorder.
+     *
+     * @return The payload type.
+     */
+    Class<T> getPayloadType();
+
+
+    /**
+     * Record the payload.
+     *
+     * @param recordPayload recordPayload
+     */
+    void record(T recordPayload);
+}
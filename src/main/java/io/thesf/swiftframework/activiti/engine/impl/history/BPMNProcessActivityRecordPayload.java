@@ -1,44 +1,61 @@
-/* Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package io.thesf.swiftframework.activiti.engine.impl.history;
-
-import io.thesf.swiftframework.activiti.engine.impl.history.payloads.FreeJumpRecordPayload;
-import io.thesf.swiftframework.activiti.engine.impl.history.payloads.ProcessCompletedRecordPayload;
-import io.thesf.swiftframework.activiti.engine.impl.history.payloads.RollBackRecordPayload;
-import io.thesf.swiftframework.activiti.engine.impl.history.payloads.SequenceFlowTakenRecordPayload;
-import lombok.Getter;
-
-/**
- * @author VirtualCry
- */
-@Getter
-public abstract class BPMNProcessActivityRecordPayload {
-
-    protected boolean               executeAfterCommit;
-
-    public static SequenceFlowTakenRecordPayload.SequenceFlowTakenRecordPayloadBuilder sequenceFlowTakenRecord() {
-        return SequenceFlowTakenRecordPayload.builder();
-    }
-
-    public static FreeJumpRecordPayload.FreeJumpRecordPayloadBuilder freeJumpRecord() {
-        return FreeJumpRecordPayload.builder();
-    }
-
-    public static RollBackRecordPayload.RollBackRecordPayloadBuilder rollBackRecord() {
-        return RollBackRecordPayload.builder();
-    }
-
-    public static ProcessCompletedRecordPayload.ProcessCompletedRecordPayloadBuilder processCompletedRecord() {
-        return ProcessCompletedRecordPayload.builder();
-    }
-}
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history;
+
+import io.thesf.swiftframework.activiti.engine.impl.history.payloads.FreeJumpRecordPayload;
+import io.thesf.swiftframework.activiti.engine.impl.history.payloads.ProcessCompletedRecordPayload;
+import io.thesf.swiftframework.activiti.engine.impl.history.payloads.ProcessRebuildRecordPayload;
+import io.thesf.swiftframework.activiti.engine.impl.history.payloads.RollBackRecordPayload;
+import io.thesf.swiftframework.activiti.engine.impl.history.payloads.SequenceFlowTakenRecordPayload;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @author VirtualCry
+ */
+@Getter
+public abstract class BPMNProcessActivityRecordPayload {
+
+    protected boolean               executeAfterCommit;
+    /** Per process instance monotonic sequence, 0 if not sequenced. */
+    @Setter
+    protected long                  sequence;
+
+    public static SequenceFlowTakenRecordPayload.SequenceFlowTakenRecordPayloadBuilder sequenceFlowTakenRecord() {
+        return SequenceFlowTakenRecordPayload.builder();
+    }
+
+    public static FreeJumpRecordPayload.FreeJumpRecordPayloadBuilder freeJumpRecord() {
+        return FreeJumpRecordPayload.builder();
+    }
+
+    public static RollBackRecordPayload.RollBackRecordPayloadBuilder rollBackRecord() {
+        return RollBackRecordPayload.builder();
+    }
+
+    public static ProcessCompletedRecordPayload.ProcessCompletedRecordPayloadBuilder processCompletedRecord() {
+        return ProcessCompletedRecordPayload.builder();
+    }
+
+    public static ProcessRebuildRecordPayload.ProcessRebuildRecordPayloadBuilder processRebuildRecord() {
+        return ProcessRebuildRecordPayload.builder();
+    }
+
+
+    /**
+     * Get the process instance which the payload belongs to.
+     *
+     * @return processInstanceId
+     */
+    public abstract String getProcessInstanceId();
+}
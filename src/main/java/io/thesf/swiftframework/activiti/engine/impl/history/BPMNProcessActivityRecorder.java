@@ -1,39 +1,156 @@
-/* Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package io.thesf.swiftframework.activiti.engine.impl.history;
-
-import org.springframework.transaction.support.TransactionSynchronizationAdapter;
-import org.springframework.transaction.support.TransactionSynchronizationManager;
-
-/**
- * Used to record process activities.
- *
- * @author VirtualCry
- */
-public abstract class BPMNProcessActivityRecorder {
-
-    public void execute(BPMNProcessActivityRecordPayload recordPayload) {
-        Runnable executeTask = this.selectExecuteTask(recordPayload);
-        if (recordPayload.isExecuteAfterCommit())
-            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
-                @Override
-                public void afterCommit() {
-                    executeTask.run();
-                }
-            });
-        else
-            executeTask.run();
-    }
-
-    protected  abstract Runnable selectExecuteTask(BPMNProcessActivityRecordPayload recordPayload);
-}
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history;
+
+import io.thesf.swiftframework.activiti.engine.impl.history.payloads.ProcessCompletedRecordPayload;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Used to record process activities.
+ *
+ * 1. Payloads executed after commit are buffered per transaction and recorded together,
+ * so only one {@link org.springframework.transaction.support.TransactionSynchronization} is registered per transaction.
+ * 2. If a {@link BPMNProcessActivitySequencer} is set, payloads are sequenced when executed,
+ * so that recorders can skip payloads which have been applied.
+ * 3. Payloads of one transaction are grouped by process instance before recording, keeping their order within each process instance,
+ * so that a recorder overriding {@link #recordAll(List)} can apply the payloads of one process instance together,
+ * such as {@link io.thesf.swiftframework.activiti.engine.impl.history.route.BPMNProcessActivityRecorderRouter},
+ * which reads and writes each chain once.
+ *
+ * Warning:
+ * 1. When recorders are wrapped, such as by {@link io.thesf.swiftframework.activiti.engine.impl.history.pipeline.PipelinedBPMNProcessActivityRecorder}
+ * or {@link io.thesf.swiftframework.activiti.engine.impl.history.outbox.OutboxBPMNProcessActivityRecorder},
+ * the outermost recorder must be named {@link #BEAN_NAME}, or be {@link org.springframework.context.annotation.Primary},
+ * as the listeners and commands look it up by that name first, then by type.
+ *
+ * @author VirtualCry
+ */
+public abstract class BPMNProcessActivityRecorder {
+
+    /** Name of the outermost recorder, used by the listeners and commands. */
+    public static final String              BEAN_NAME = "bpmnProcessActivityRecorder";
+
+    @Getter @Setter
+    private BPMNProcessActivitySequencer    sequencer;
+
+    public void execute(BPMNProcessActivityRecordPayload recordPayload) {
+        this.sequence(recordPayload);
+        if (recordPayload.isExecuteAfterCommit())
+            this.getTransactionRecordBuffer().add(recordPayload);
+        else
+            this.record(recordPayload);
+    }
+
+    /**
+     * Record the payload immediately on the calling thread.
+     *
+     * @param recordPayload recordPayload
+     */
+    public abstract void record(BPMNProcessActivityRecordPayload recordPayload);
+
+    /**
+     * Record the payloads of one transaction in order.
+     *
+     * @param recordPayloads    recordPayloads
+     */
+    public void recordAll(List<BPMNProcessActivityRecordPayload> recordPayloads) {
+        for (BPMNProcessActivityRecordPayload recordPayload : recordPayloads)
+            this.record(recordPayload);
+    }
+
+    /**
+     * Assign the next sequence of its process instance to the payload.
+     *
+     * @param recordPayload recordPayload
+     */
+    protected void sequence(BPMNProcessActivityRecordPayload recordPayload) {
+        if (this.sequencer == null || recordPayload.getSequence() > 0)
+            return;
+        String processInstanceId = recordPayload.getProcessInstanceId();
+        recordPayload.setSequence(this.sequencer.next(processInstanceId));
+        if (recordPayload instanceof ProcessCompletedRecordPayload)
+            this.sequencer.release(processInstanceId);
+    }
+
+    /**
+     * Group payloads by process instance, in the order of first occurrence, keeping their order within each process instance.
+     *
+     * @param recordPayloads recordPayloads
+     * @return The grouped payloads.
+     */
+    protected static List<BPMNProcessActivityRecordPayload> groupByProcessInstance(List<BPMNProcessActivityRecordPayload> recordPayloads) {
+        if (recordPayloads.size() <= 1)
+            return recordPayloads;
+
+        Map<String, List<BPMNProcessActivityRecordPayload>> groupedPayloads = new LinkedHashMap<>();
+        for (BPMNProcessActivityRecordPayload recordPayload : recordPayloads)
+            groupedPayloads.computeIfAbsent(recordPayload.getProcessInstanceId(), key -> new ArrayList<>()).add(recordPayload);
+        if (groupedPayloads.size() == 1)
+            return recordPayloads;
+
+        List<BPMNProcessActivityRecordPayload> orderedPayloads = new ArrayList<>(recordPayloads.size());
+        groupedPayloads.values().forEach(orderedPayloads::addAll);
+        return orderedPayloads;
+    }
+
+    /**
+     * Get the buffer bound to current transaction.
+     *
+     * @return The {@link TransactionRecordBuffer}.
+     */
+    protected TransactionRecordBuffer getTransactionRecordBuffer() {
+        TransactionRecordBuffer recordBuffer = (TransactionRecordBuffer) TransactionSynchronizationManager.getResource(this);
+        if (recordBuffer == null) {
+            recordBuffer = new TransactionRecordBuffer();
+            TransactionSynchronizationManager.registerSynchronization(recordBuffer);
+            TransactionSynchronizationManager.bindResource(this, recordBuffer);
+        }
+        return recordBuffer;
+    }
+
+
+    /**
+     * Payloads waiting for the commit of current transaction.
+     */
+    protected class TransactionRecordBuffer extends TransactionSynchronizationAdapter {
+
+        private final List<BPMNProcessActivityRecordPayload>    recordPayloads = new ArrayList<>();
+
+        public void add(BPMNProcessActivityRecordPayload recordPayload) {
+            this.recordPayloads.add(recordPayload);
+        }
+
+        public List<BPMNProcessActivityRecordPayload> getRecordPayloads() {
+            return this.recordPayloads;
+        }
+
+        @Override
+        public void afterCommit() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(BPMNProcessActivityRecorder.this);
+            recordAll(groupByProcessInstance(this.recordPayloads));
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(BPMNProcessActivityRecorder.this);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history;
+
+/**
+ * Issue per process instance monotonic sequences to {@link BPMNProcessActivityRecordPayload}.
+ *
+ * The recorders compare the sequence with the applied sequence of the process chain,
+ * so that a payload delivered more than once is applied only once.
+ *
+ * @see LocalBPMNProcessActivitySequencer
+ * @author VirtualCry
+ */
+public interface BPMNProcessActivitySequencer {
+
+    /**
+     * Get the next sequence of the process instance.
+     *
+     * @param processInstanceId processInstanceId
+     * @return The sequence, always greater than 0.
+     */
+    long next(String processInstanceId);
+
+
+    /**
+     * Release the sequence of the process instance when it will not be recorded anymore.
+     *
+     * @param processInstanceId processInstanceId
+     */
+    void release(String processInstanceId);
+}
@@ -0,0 +1,59 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history;
+
+import io.thesf.swiftframework.activiti.api.runtime.model.BPMNProcessChain;
+import io.thesf.swiftframework.activiti.cache.data.BPMNProcessChainCacheManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implement of {@link BPMNProcessActivitySequencer}. Sequences are kept in memory.
+ *
+ * 1. The first sequence issued for a process instance continues from the applied sequence of its process chain,
+ * so sequences keep increasing after restart.
+ *
+ * Warning:
+ * The counters are not shared between nodes. If commands of the same process instance run on more than one node,
+ * use an implement backed by a shared counter instead.
+ *
+ * @author VirtualCry
+ */
+public class LocalBPMNProcessActivitySequencer implements BPMNProcessActivitySequencer {
+
+    private final BPMNProcessChainCacheManager  bpmnProcessChainCacheManager;
+    private final Map<String, AtomicLong>       sequences;
+
+    public LocalBPMNProcessActivitySequencer(BPMNProcessChainCacheManager bpmnProcessChainCacheManager) {
+        this.bpmnProcessChainCacheManager = bpmnProcessChainCacheManager;
+        this.sequences = new ConcurrentHashMap<>();
+    }
+
+
+    @Override
+    public long next(String processInstanceId) {
+        return this.sequences
+                .computeIfAbsent(processInstanceId, key -> {
+                    BPMNProcessChain processChain = this.bpmnProcessChainCacheManager.get(key);
+                    return new AtomicLong(processChain != null ? processChain.getAppliedSequence() : 0L);
+                })
+                .incrementAndGet();
+    }
+
+    @Override
+    public void release(String processInstanceId) {
+        this.sequences.remove(processInstanceId);
+    }
+}
@@ -0,0 +1,331 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history.outbox;
+
+import io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivityRecordPayload;
+import io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivityRecorder;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outbox mode of {@link BPMNProcessActivityRecorder}.
+ *
+ * 1. Payloads executed after commit are written to the outbox table inside the engine transaction, with one batched insert.
+ * 2. After commit, the payloads are applied asynchronously by the delegate recorder, then their rows are deleted.
+ * 3. Rows left in the outbox, such as after a crash or a failed apply, are replayed periodically, starting at startup.
+ * A row is replayed only when its claim is older than the lease timeout. It is claimed first,
+ * so that rows still being applied by a live node, or replayed by another node, are not applied twice.
+ * 4. Rows are replayed page by page, ordered by process instance and sequence.
+ * A row that cannot be decoded, such as after its payload class is renamed, is logged and left in the outbox.
+ *
+ * Warning:
+ * 1. The {@link DataSource} must be the one managed by the transaction manager of the process engine,
+ * otherwise the outbox rows are not written in the engine transaction.
+ * 2. A replayed payload may have been applied already before the crash.
+ * Set a {@link io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivitySequencer},
+ * so that the recorders skip payloads which have been applied.
+ * 3. The lease timeout must be longer than the delay between commit and apply on a loaded node,
+ * otherwise another node may claim rows that are about to be applied.
+ * 4. Payloads of one process instance are replayed in order of their sequences.
+ * Without a sequencer, they are replayed in order of their transactions, which is exact to the precision of {@literal CREATE_TIME_} only.
+ * 5. The table is created by the scripts in {@literal io/thesf/swiftframework/activiti/db/create}.
+ *
+ * @author VirtualCry
+ */
+@Slf4j
+public class OutboxBPMNProcessActivityRecorder extends BPMNProcessActivityRecorder implements SmartInitializingSingleton, DisposableBean {
+
+    public static final String      DEFAULT_TABLE_NAME = "ACT_SWIFT_RECORD_OUTBOX";
+
+    private static final int        REPLAY_PAGE_SIZE = 100;
+
+    private final BPMNProcessActivityRecorder       delegate;
+    private final JdbcTemplate                      jdbcTemplate;
+    private final RecordPayloadCodec                codec;
+    private final Executor                          executor;
+    private final boolean                           ownExecutor;
+    private final ScheduledExecutorService          replayScheduler;
+    private final String                            ownerId;
+    private final String                            tableName;
+    private final String                            insertSql;
+    private final String                            deleteSql;
+    private final String                            claimSql;
+    private final String                            renewSql;
+    private final String                            selectProcessInstanceIdsSql;
+    @Setter
+    private long                                    replayIntervalMillis = 30_000L;
+    @Setter
+    private long                                    leaseTimeoutMillis = 60_000L;
+
+    public OutboxBPMNProcessActivityRecorder(BPMNProcessActivityRecorder delegate, DataSource dataSource) {
+        this(delegate, dataSource, null, DEFAULT_TABLE_NAME);
+    }
+
+    public OutboxBPMNProcessActivityRecorder(BPMNProcessActivityRecorder delegate,
+                                             DataSource dataSource,
+                                             Executor executor,
+                                             String tableName) {
+        this.delegate = delegate;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.codec = new RecordPayloadCodec();
+        this.ownExecutor = executor == null;
+        this.executor = executor != null ? executor : Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bpmn-activity-recorder-outbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.replayScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bpmn-activity-recorder-outbox-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ownerId = UUID.randomUUID().toString();
+        this.tableName = tableName;
+        this.insertSql = "insert into " + tableName + " (ID_, PROC_INST_ID_, SEQ_, PAYLOAD_TYPE_, PAYLOAD_, ORDER_, CREATE_TIME_, CLAIM_ID_, CLAIM_TIME_) values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        this.deleteSql = "delete from " + tableName + " where ID_ = ?";
+        this.claimSql = "update " + tableName + " set CLAIM_ID_ = ?, CLAIM_TIME_ = ? where CLAIM_TIME_ < ?";
+        this.renewSql = "update " + tableName + " set CLAIM_TIME_ = ? where CLAIM_ID_ = ?";
+        this.selectProcessInstanceIdsSql = "select distinct PROC_INST_ID_ from " + tableName + " where CLAIM_ID_ = ? and PROC_INST_ID_ > ? order by PROC_INST_ID_ limit ?";
+    }
+
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        this.replayScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                this.replay();
+            } catch (Exception ex) {
+                log.error("Failed to replay outbox.", ex);
+            }
+        }, 0L, this.replayIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        this.replayScheduler.shutdown();
+        if (this.ownExecutor)
+            ((ExecutorService) this.executor).shutdown();
+    }
+
+    @Override
+    public void execute(BPMNProcessActivityRecordPayload recordPayload) {
+        this.sequence(recordPayload);
+        if (recordPayload.isExecuteAfterCommit())
+            this.getOutboxTransactionBuffer().add(new OutboxEntry(UUID.randomUUID().toString(), recordPayload));
+        else
+            this.record(recordPayload);
+    }
+
+    @Override
+    public void record(BPMNProcessActivityRecordPayload recordPayload) {
+        this.delegate.record(recordPayload);
+    }
+
+    /**
+     * Claim the rows whose lease has expired, then apply them page by page.
+     *
+     * @return The number of rows applied.
+     */
+    public synchronized int replay() {
+        String claimId = UUID.randomUUID().toString();
+        long now = System.currentTimeMillis();
+        int claimedCount = jdbcTemplate.update(claimSql, claimId, new Timestamp(now), new Timestamp(now - leaseTimeoutMillis));
+        if (claimedCount == 0)
+            return 0;
+        log.info("Replay {} payloads from outbox.", claimedCount);
+
+        int appliedCount = 0;
+        String lastProcessInstanceId = "";
+        List<String> processInstanceIds;
+        do {
+            // Renew the lease, so that a long replay is not claimed by another node.
+            jdbcTemplate.update(renewSql, new Timestamp(System.currentTimeMillis()), claimId);
+            processInstanceIds = jdbcTemplate.queryForList(selectProcessInstanceIdsSql, String.class, claimId, lastProcessInstanceId, REPLAY_PAGE_SIZE);
+            if (processInstanceIds.isEmpty())
+                break;
+            lastProcessInstanceId = processInstanceIds.get(processInstanceIds.size() - 1);
+            appliedCount += this.apply(this.decode(this.selectRows(claimId, processInstanceIds)));
+        } while (processInstanceIds.size() == REPLAY_PAGE_SIZE);
+        return appliedCount;
+    }
+
+    /**
+     * Select the claimed rows of the process instances, ordered by process instance and sequence.
+     *
+     * @param claimId               claimId
+     * @param processInstanceIds    processInstanceIds
+     * @return The rows.
+     */
+    protected List<OutboxRow> selectRows(String claimId, List<String> processInstanceIds) {
+        String selectSql = "select ID_, PAYLOAD_TYPE_, PAYLOAD_ from " + tableName
+                + " where CLAIM_ID_ = ? and PROC_INST_ID_ in (" + String.join(", ", Collections.nCopies(processInstanceIds.size(), "?")) + ")"
+                + " order by PROC_INST_ID_, SEQ_, CREATE_TIME_, ORDER_";
+        List<Object> args = new ArrayList<>(processInstanceIds.size() + 1);
+        args.add(claimId);
+        args.addAll(processInstanceIds);
+        return jdbcTemplate.query(selectSql, args.toArray(), (resultSet, rowNum) -> new OutboxRow(
+                resultSet.getString("ID_"),
+                resultSet.getString("PAYLOAD_TYPE_"),
+                resultSet.getString("PAYLOAD_")
+        ));
+    }
+
+    /**
+     * Decode rows one by one. A row which cannot be decoded is skipped and left in the outbox.
+     *
+     * @param outboxRows outboxRows
+     * @return The entries decoded.
+     */
+    protected List<OutboxEntry> decode(List<OutboxRow> outboxRows) {
+        List<OutboxEntry> outboxEntries = new ArrayList<>(outboxRows.size());
+        for (OutboxRow outboxRow : outboxRows) {
+            try {
+                outboxEntries.add(new OutboxEntry(outboxRow.getId(), codec.decode(outboxRow.getPayloadType(), outboxRow.getPayload())));
+            } catch (RuntimeException ex) {
+                log.error("Failed to decode outbox payload [" + outboxRow.getId() + "], skip it.", ex);
+            }
+        }
+        return outboxEntries;
+    }
+
+    /**
+     * Apply entries with the delegate recorder, then delete their rows.
+     * An entry which fails is left in the outbox and will be replayed after its lease expires.
+     *
+     * @param outboxEntries outboxEntries
+     * @return The number of entries applied.
+     */
+    protected int apply(List<OutboxEntry> outboxEntries) {
+        List<Object[]> appliedIds = new ArrayList<>(outboxEntries.size());
+        for (OutboxEntry outboxEntry : outboxEntries) {
+            try {
+                this.delegate.record(outboxEntry.getRecordPayload());
+                appliedIds.add(new Object[] { outboxEntry.getId() });
+            } catch (Exception ex) {
+                log.error("Failed to apply outbox payload [" + outboxEntry.getId() + "].", ex);
+            }
+        }
+        if (!appliedIds.isEmpty())
+            jdbcTemplate.batchUpdate(deleteSql, appliedIds);
+        return appliedIds.size();
+    }
+
+    /**
+     * Write entries to the outbox with one batched insert, claimed by this recorder.
+     *
+     * @param outboxEntries outboxEntries
+     */
+    protected void write(List<OutboxEntry> outboxEntries) {
+        Timestamp createTime = new Timestamp(System.currentTimeMillis());
+        List<Object[]> batchArgs = new ArrayList<>(outboxEntries.size());
+        for (int i = 0; i < outboxEntries.size(); i++) {
+            OutboxEntry outboxEntry = outboxEntries.get(i);
+            BPMNProcessActivityRecordPayload recordPayload = outboxEntry.getRecordPayload();
+            batchArgs.add(new Object[] {
+                    outboxEntry.getId(),
+                    recordPayload.getProcessInstanceId(),
+                    recordPayload.getSequence(),
+                    recordPayload.getClass().getName(),
+                    codec.encode(recordPayload),
+                    i,
+                    createTime,
+                    ownerId,
+                    createTime
+            });
+        }
+        jdbcTemplate.batchUpdate(insertSql, batchArgs);
+    }
+    /**
+     * Get the buffer bound to current transaction.
+     *
+     * @return The {@link OutboxTransactionBuffer}.
+     */
+    protected OutboxTransactionBuffer getOutboxTransactionBuffer() {
+        OutboxTransactionBuffer outboxBuffer = (OutboxTransactionBuffer) TransactionSynchronizationManager.getResource(this);
+        if (outboxBuffer == null) {
+            outboxBuffer = new OutboxTransactionBuffer();
+            TransactionSynchronizationManager.registerSynchronization(outboxBuffer);
+            TransactionSynchronizationManager.bindResource(this, outboxBuffer);
+        }
+        return outboxBuffer;
+    }
+
+
+    /**
+     * One row of outbox.
+     */
+    @AllArgsConstructor
+    @Getter
+    protected static class OutboxEntry {
+        private final String                            id;
+        private final BPMNProcessActivityRecordPayload  recordPayload;
+    }
+
+    /**
+     * One row of outbox, before decoding.
+     */
+    @AllArgsConstructor
+    @Getter
+    protected static class OutboxRow {
+        private final String                            id;
+        private final String                            payloadType;
+        private final String                            payload;
+    }
+
+    /**
+     * Entries waiting for the commit of current transaction.
+     */
+    protected class OutboxTransactionBuffer extends TransactionSynchronizationAdapter {
+
+        private final List<OutboxEntry>     outboxEntries = new ArrayList<>();
+
+        public void add(OutboxEntry outboxEntry) {
+            this.outboxEntries.add(outboxEntry);
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            write(this.outboxEntries);
+        }
+
+        @Override
+        public void afterCommit() {
+            TransactionSynchronizationManager.unbindResourceIfPossible(OutboxBPMNProcessActivityRecorder.this);
+            executor.execute(() -> apply(this.outboxEntries));
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(OutboxBPMNProcessActivityRecorder.this);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history.outbox;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import io.thesf.swiftframework.activiti.api.runtime.model.BPMNActivityChain;
+import io.thesf.swiftframework.activiti.api.runtime.model.impl.BPMNActivityChainImpl;
+import io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivityRecordPayload;
+import org.activiti.api.process.model.BPMNActivity;
+import org.activiti.api.process.model.BPMNSequenceFlow;
+import org.activiti.api.process.model.ProcessInstance;
+import org.activiti.api.runtime.model.impl.BPMNActivityImpl;
+import org.activiti.api.runtime.model.impl.BPMNSequenceFlowImpl;
+import org.activiti.api.runtime.model.impl.ProcessInstanceImpl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Codec between {@link BPMNProcessActivityRecordPayload} and the text stored in outbox.
+ *
+ * 1. Payloads are serialized by fields, so derived getters are not written.
+ * 2. The concrete class of each {@link BPMNActivity} is kept,
+ * so that activities created by {@literal Free Jump} are still recognized after decoding.
+ *
+ * @author VirtualCry
+ */
+public class RecordPayloadCodec {
+
+    private final ObjectMapper      objectMapper;
+
+    public RecordPayloadCodec() {
+        SimpleModule module = new SimpleModule("BPMNProcessActivityRecordPayloadModule")
+                .addAbstractTypeMapping(BPMNSequenceFlow.class, BPMNSequenceFlowImpl.class)
+                .addAbstractTypeMapping(ProcessInstance.class, ProcessInstanceImpl.class)
+                .addAbstractTypeMapping(BPMNActivityChain.class, BPMNActivityChainImpl.class);
+        module.setMixInAnnotation(BPMNActivity.class, BPMNActivityMixIn.class);
+
+        this.objectMapper = new ObjectMapper()
+                .registerModule(module)
+                .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+                .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+
+    /**
+     * Encode payload.
+     *
+     * @param recordPayload recordPayload
+     * @return The text.
+     */
+    public String encode(BPMNProcessActivityRecordPayload recordPayload) {
+        try {
+            return objectMapper.writeValueAsString(recordPayload);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex); }
+    }
+
+    /**
+     * Decode payload.
+     *
+     * @param payloadType   class name of the payload
+     * @param payload       text
+     * @return The {@link BPMNProcessActivityRecordPayload}.
+     */
+    public BPMNProcessActivityRecordPayload decode(String payloadType, String payload) {
+        try {
+            Class<?> payloadClass = Class.forName(payloadType);
+            if (!BPMNProcessActivityRecordPayload.class.isAssignableFrom(payloadClass))
+                throw new IllegalArgumentException("Unknown payload type [" + payloadType + "].");
+            return (BPMNProcessActivityRecordPayload) objectMapper.readValue(payload, payloadClass);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalArgumentException("Unknown payload type [" + payloadType + "].", ex); }
+    }
+
+
+    @JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, defaultImpl = BPMNActivityImpl.class)
+    private interface BPMNActivityMixIn {
+    }
+}
@@ -0,0 +1,38 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history.pipeline;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Implement of {@link WaitStrategy}. Busy spin on the cursor.
+ *
+ * Lowest latency, one full core per consumer. Use it only when the number of consumers is lower than physical cores.
+ *
+ * @author VirtualCry
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+    @Override
+    public long waitFor(long sequence, Sequence cursor, AtomicBoolean running) {
+        long availableSequence;
+        while ((availableSequence = cursor.get()) < sequence && running.get()) {
+            // spin
+        }
+        return availableSequence;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+    }
+}
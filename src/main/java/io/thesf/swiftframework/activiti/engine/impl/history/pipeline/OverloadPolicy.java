@@ -0,0 +1,46 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history.pipeline;
+
+/**
+ * Policy of {@link PipelinedBPMNProcessActivityRecorder} when the ring buffer is full.
+ *
+ * @author VirtualCry
+ */
+public enum OverloadPolicy {
+
+    /**
+     * Block the committing thread until consumers free a slot.
+     */
+    BLOCK,
+
+    /**
+     * Record on the committing thread. Only used when the process instance has no other payload pending or being published,
+     * while the consumer of its partition is held between two payloads, so that the payloads of one process instance are never reordered.
+     * Otherwise, block.
+     */
+    CALLER_RUNS,
+
+    /**
+     * Drop the payload and mark the process instance as shed.
+     * Later payloads of the marked process instance are dropped as well, until it is completed, unmarked, or rebuilt
+     * from history when the ring buffer is available again, see {@link PipelinedBPMNProcessActivityRecorder#setRebuildShed(boolean)}.
+     *
+     * Warning:
+     * 1. Lossy. The chain of a shed process instance stays incomplete until it is rebuilt.
+     * Roll back of such process instance may find wrong targets meanwhile. Use {@link RecordShedListener} to alert or to suspend it.
+     *
+     * @see RecordShedListener
+     */
+    SHED
+}
@@ -0,0 +1,478 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history.pipeline;
+
+import io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivityRecordPayload;
+import io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivityRecorder;
+import io.thesf.swiftframework.activiti.engine.impl.history.payloads.ProcessCompletedRecordPayload;
+import io.thesf.swiftframework.activiti.engine.impl.history.payloads.ProcessRebuildRecordPayload;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pipeline mode of {@link BPMNProcessActivityRecorder}.
+ *
+ * 1. Payloads are published into the reusable slots of a pre-allocated {@link RecordPayloadRingBuffer}
+ * instead of being recorded on the committing thread.
+ * 2. Payloads are partitioned by processInstanceId. Each partition is consumed by one {@link RecordPayloadBatchProcessor},
+ * so the payloads of one process instance are recorded in order while different instances are recorded in parallel.
+ * 3. The delegate recorder, usually {@link io.thesf.swiftframework.activiti.engine.impl.history.route.BPMNProcessActivityRecorderRouter},
+ * does the real recording on the consumer threads.
+ * 4. The ring buffer is bounded. What happens when it is full is decided by the {@link OverloadPolicy}.
+ * 5. On shutdown, payloads already entering the pipeline are still published and drained.
+ * Payloads arriving after that wait until the drain is over, then are recorded on the calling thread,
+ * so that they never overtake older payloads of the same process instance.
+ * Publishers still waiting for a slot when the consumers stop record their payloads on the calling thread.
+ * 6. With {@link OverloadPolicy#SHED} and {@link #setRebuildShed(boolean)}, the next payload of a shed process instance
+ * is replaced by a {@link ProcessRebuildRecordPayload} once the ring buffer is no more than half full,
+ * so that its chain is rebuilt from history, see {@link io.thesf.swiftframework.activiti.engine.impl.history.recorder.BPMNProcessRebuildRecorder}.
+ *
+ * Warning:
+ * 1. {@link OverloadPolicy#SHED} is lossy, the chains of shed process instances are incomplete until they are rebuilt.
+ *
+ * @author VirtualCry
+ */
+@Slf4j
+public class PipelinedBPMNProcessActivityRecorder extends BPMNProcessActivityRecorder implements InitializingBean, DisposableBean {
+
+    private static final int        DEFAULT_BUFFER_SIZE = 1024;
+    private static final long       DEFAULT_SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+    private final BPMNProcessActivityRecorder       delegate;
+    private final RecordPayloadRingBuffer           ringBuffer;
+    private final RecordPayloadBatchProcessor[]     processors;
+    private final Thread[]                          processorThreads;
+    private final OverloadPolicy                    overloadPolicy;
+    private final AtomicLongArray                   publishedCounts;
+    private final Set<String>                       shedProcessInstanceIds = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer>              pendingCounts = new ConcurrentHashMap<>();
+    private final LongAdder                         blockedCount = new LongAdder();
+    private final LongAdder                         blockedNanos = new LongAdder();
+    private final AtomicLong                        maxBlockedNanos = new AtomicLong();
+    private final LongAdder                         callerRunsCount = new LongAdder();
+    private final LongAdder                         shedCount = new LongAdder();
+    private final LongAdder                         rebuiltCount = new LongAdder();
+    private final AtomicInteger                     publishingCount = new AtomicInteger();
+    private volatile CountDownLatch                 drainLatch;
+    private volatile RecordShedListener             shedListener;
+    private volatile boolean                        rebuildShed;
+    private volatile boolean                        started;
+
+    public PipelinedBPMNProcessActivityRecorder(BPMNProcessActivityRecorder delegate) {
+        this(delegate, DEFAULT_BUFFER_SIZE, Runtime.getRuntime().availableProcessors(), new SleepingWaitStrategy());
+    }
+
+    public PipelinedBPMNProcessActivityRecorder(BPMNProcessActivityRecorder delegate,
+                                                int bufferSize,
+                                                int partitions,
+                                                WaitStrategy waitStrategy) {
+        this(delegate, bufferSize, partitions, waitStrategy, OverloadPolicy.BLOCK);
+    }
+
+    public PipelinedBPMNProcessActivityRecorder(BPMNProcessActivityRecorder delegate,
+                                                int bufferSize,
+                                                int partitions,
+                                                WaitStrategy waitStrategy,
+                                                OverloadPolicy overloadPolicy) {
+        if (partitions < 1)
+            throw new IllegalArgumentException("partitions must be > 0");
+        this.delegate = delegate;
+        this.ringBuffer = new RecordPayloadRingBuffer(bufferSize, waitStrategy);
+        this.processors = new RecordPayloadBatchProcessor[partitions];
+        this.processorThreads = new Thread[partitions];
+        this.overloadPolicy = overloadPolicy;
+        this.publishedCounts = new AtomicLongArray(partitions);
+
+        RecordPayloadBatchHandler batchHandler = recordPayload -> {
+            try {
+                delegate.record(recordPayload);
+            } finally {
+                this.leave(recordPayload);
+            }
+        };
+        Sequence[] gatingSequences = new Sequence[partitions];
+        for (int i = 0; i < partitions; i++) {
+            this.processors[i] = new RecordPayloadBatchProcessor(ringBuffer, batchHandler, i);
+            gatingSequences[i] = this.processors[i].getSequence();
+        }
+        this.ringBuffer.setGatingSequences(gatingSequences);
+    }
+
+
+    @Override
+    public void afterPropertiesSet() {
+        this.start();
+    }
+
+    @Override
+    public void destroy() {
+        this.shutdown(DEFAULT_SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void setShedListener(RecordShedListener shedListener) {
+        this.shedListener = shedListener;
+    }
+
+    /**
+     * Rebuild shed process instances from history, see {@link PipelinedBPMNProcessActivityRecorder}.
+     * A {@link io.thesf.swiftframework.activiti.engine.impl.history.recorder.BPMNProcessRebuildRecorder} must be routed by the delegate.
+     *
+     * @param rebuildShed   rebuildShed
+     */
+    public void setRebuildShed(boolean rebuildShed) {
+        this.rebuildShed = rebuildShed;
+    }
+
+    /**
+     * Start the consumer threads.
+     */
+    public synchronized void start() {
+        if (this.started)
+            return;
+        for (int i = 0; i < processors.length; i++) {
+            Thread processorThread = new Thread(processors[i], "bpmn-activity-recorder-" + i);
+            processorThread.setDaemon(true);
+            processorThread.start();
+            this.processorThreads[i] = processorThread;
+        }
+        this.started = true;
+    }
+
+    /**
+     * Wait until all published payloads are recorded, then stop the consumer threads.
+     * Payloads arriving meanwhile wait for the drain, see {@link PipelinedBPMNProcessActivityRecorder}.
+     *
+     * @param timeout   timeout
+     * @param unit      unit
+     */
+    public synchronized void shutdown(long timeout, TimeUnit unit) {
+        if (!this.started)
+            return;
+        CountDownLatch candidateLatch = new CountDownLatch(1);
+        this.drainLatch = candidateLatch;
+        this.started = false;
+
+        try {
+            // Wait for the publishers which entered before stopping, then for the consumers.
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while ((publishingCount.get() > 0 || ringBuffer.getDepth() > 0) && System.nanoTime() < deadline)
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            if (publishingCount.get() > 0 || ringBuffer.getDepth() > 0)
+                log.warn("Recorder pipeline stopped with {} payloads not recorded.", ringBuffer.getDepth());
+
+            for (RecordPayloadBatchProcessor processor : processors)
+                processor.halt();
+            ringBuffer.halt();
+            for (Thread processorThread : processorThreads) {
+                try {
+                    processorThread.join(TimeUnit.NANOSECONDS.toMillis(Math.max(deadline - System.nanoTime(), 1)) + 1);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        } finally {
+            candidateLatch.countDown();
+        }
+    }
+
+    @Override
+    public void record(BPMNProcessActivityRecordPayload recordPayload) {
+        if (!this.enter()) {
+            this.delegate.record(recordPayload);
+            return;
+        }
+        try {
+            this.publish(recordPayload);
+        } finally {
+            publishingCount.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void recordAll(List<BPMNProcessActivityRecordPayload> recordPayloads) {
+        if (!this.enter()) {
+            this.delegate.recordAll(recordPayloads);
+            return;
+        }
+        try {
+            if (overloadPolicy != OverloadPolicy.BLOCK || !shedProcessInstanceIds.isEmpty()) {
+                for (BPMNProcessActivityRecordPayload recordPayload : recordPayloads)
+                    this.publish(recordPayload);
+                return;
+            }
+
+            int size = recordPayloads.size();
+            int index = 0;
+            while (index < size) {
+                int n = Math.min(size - index, ringBuffer.getBufferSize());
+                int[] partitions = new int[n];
+                for (int i = 0; i < n; i++) {
+                    partitions[i] = this.partitionOf(recordPayloads.get(index + i));
+                    publishedCounts.incrementAndGet(partitions[i]);
+                }
+                long hi = ringBuffer.tryNext(n);
+                if (hi < 0)
+                    hi = this.nextBlocking(n);
+                if (hi < 0) {
+                    // Halted while waiting, the consumers are gone.
+                    for (int partition : partitions)
+                        publishedCounts.decrementAndGet(partition);
+                    this.delegate.recordAll(recordPayloads.subList(index, size));
+                    return;
+                }
+                long lo = hi - n + 1;
+                long publishNanos = System.nanoTime();
+                for (long sequence = lo; sequence <= hi; sequence++) {
+                    ringBuffer.get(sequence).set(recordPayloads.get(index), partitions[(int) (sequence - lo)], publishNanos);
+                    index++;
+                }
+                ringBuffer.publish(lo, hi);
+            }
+        } finally {
+            publishingCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Get the number of payloads published but not recorded yet.
+     *
+     * @return The depth.
+     */
+    public long getDepth() {
+        return ringBuffer.getDepth();
+    }
+
+    /**
+     * Get the process instances marked as shed by {@link OverloadPolicy#SHED}. Their chains are incomplete.
+     *
+     * @return The {@link Set<String>}.
+     */
+    public Set<String> getShedProcessInstanceIds() {
+        return Collections.unmodifiableSet(shedProcessInstanceIds);
+    }
+
+    /**
+     * Unmark the process instance, so that its later payloads are recorded again.
+     * The payloads dropped before are not recovered, unless the process instance is rebuilt.
+     *
+     * @param processInstanceId processInstanceId
+     */
+    public void clearShed(String processInstanceId) {
+        shedProcessInstanceIds.remove(processInstanceId);
+    }
+
+    /**
+     * Get a snapshot of metrics.
+     *
+     * @return The {@link RecordPipelineMetrics}.
+     */
+    public RecordPipelineMetrics getMetrics() {
+        long publishedCount = 0;
+        for (int i = 0; i < publishedCounts.length(); i++)
+            publishedCount += publishedCounts.get(i);
+        long recordedCount = 0;
+        long queueWaitNanos = 0;
+        long maxQueueWaitNanos = 0;
+        for (RecordPayloadBatchProcessor processor : processors) {
+            recordedCount += processor.getRecordedCount();
+            queueWaitNanos += processor.getQueueWaitNanos();
+            maxQueueWaitNanos = Math.max(maxQueueWaitNanos, processor.getMaxQueueWaitNanos());
+        }
+        return RecordPipelineMetrics.builder()
+                .capacity(ringBuffer.getBufferSize())
+                .depth(ringBuffer.getDepth())
+                .publishedCount(publishedCount)
+                .recordedCount(recordedCount)
+                .blockedCount(blockedCount.sum())
+                .blockedNanos(blockedNanos.sum())
+                .maxBlockedNanos(maxBlockedNanos.get())
+                .callerRunsCount(callerRunsCount.sum())
+                .shedCount(shedCount.sum())
+                .rebuiltCount(rebuiltCount.sum())
+                .shedProcessInstanceCount(shedProcessInstanceIds.size())
+                .queueWaitNanos(queueWaitNanos)
+                .maxQueueWaitNanos(maxQueueWaitNanos)
+                .build();
+    }
+
+    protected int partitionOf(BPMNProcessActivityRecordPayload recordPayload) {
+        String processInstanceId = recordPayload.getProcessInstanceId();
+        int hash = processInstanceId == null ? 0 : processInstanceId.hashCode();
+        return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % processors.length;
+    }
+
+    /**
+     * Enter the pipeline, or wait for the drain if it has been stopped.
+     *
+     * @return Whether entered. If entered, the caller must leave by decrementing {@link #publishingCount}.
+     */
+    private boolean enter() {
+        publishingCount.incrementAndGet();
+        if (this.started)
+            return true;
+        publishingCount.decrementAndGet();
+
+        CountDownLatch candidateLatch = this.drainLatch;
+        if (candidateLatch != null) {
+            try {
+                candidateLatch.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return false;
+    }
+
+    private void publish(BPMNProcessActivityRecordPayload recordPayload) {
+        if (!shedProcessInstanceIds.isEmpty() && shedProcessInstanceIds.contains(recordPayload.getProcessInstanceId())) {
+            recordPayload = this.unshed(recordPayload);
+            if (recordPayload == null)
+                return;
+        }
+
+        int partition = this.partitionOf(recordPayload);
+        // Counted before claiming a slot, so that CALLER_RUNS sees payloads being published as pending.
+        publishedCounts.incrementAndGet(partition);
+        this.enter(recordPayload);
+        long sequence = ringBuffer.tryNext(1);
+        if (sequence < 0) {
+            // Completion is never shed, it releases the chain of the process instance.
+            if (overloadPolicy == OverloadPolicy.SHED && !(recordPayload instanceof ProcessCompletedRecordPayload)) {
+                publishedCounts.decrementAndGet(partition);
+                this.shed(recordPayload);
+                return;
+            }
+            if (overloadPolicy == OverloadPolicy.CALLER_RUNS && this.tryCallerRuns(recordPayload, partition))
+                return;
+            sequence = this.nextBlocking(1);
+            if (sequence < 0) {
+                // Halted while waiting, the consumers are gone.
+                publishedCounts.decrementAndGet(partition);
+                this.leave(recordPayload);
+                this.delegate.record(recordPayload);
+                return;
+            }
+        }
+        ringBuffer.get(sequence).set(recordPayload, partition, System.nanoTime());
+        ringBuffer.publish(sequence, sequence);
+    }
+
+    /**
+     * Record the payload on the calling thread, if it is the only pending payload of its process instance.
+     * The record lock of the partition is held, so the consumer can not record concurrently,
+     * and later payloads of the process instance are recorded after it.
+     *
+     * @param recordPayload recordPayload
+     * @param partition     partition
+     * @return Whether recorded.
+     */
+    private boolean tryCallerRuns(BPMNProcessActivityRecordPayload recordPayload, int partition) {
+        String processInstanceId = recordPayload.getProcessInstanceId();
+        if (processInstanceId == null)
+            return false;
+        ReentrantLock recordLock = processors[partition].getRecordLock();
+        recordLock.lock();
+        try {
+            if (pendingCounts.getOrDefault(processInstanceId, 0) != 1)
+                return false;
+            publishedCounts.decrementAndGet(partition);
+            callerRunsCount.increment();
+            try {
+                this.delegate.record(recordPayload);
+            } finally {
+                this.leave(recordPayload);
+            }
+            return true;
+        } finally {
+            recordLock.unlock();
+        }
+    }
+
+    private long nextBlocking(int n) {
+        long start = System.nanoTime();
+        long sequence = ringBuffer.next(n);
+        long blocked = System.nanoTime() - start;
+        blockedCount.increment();
+        blockedNanos.add(blocked);
+        maxBlockedNanos.accumulateAndGet(blocked, Math::max);
+        return sequence;
+    }
+
+    /**
+     * Count the payload as pending for its process instance, until it is recorded. Only counted by {@link OverloadPolicy#CALLER_RUNS}.
+     *
+     * @param recordPayload recordPayload
+     */
+    private void enter(BPMNProcessActivityRecordPayload recordPayload) {
+        String processInstanceId = recordPayload.getProcessInstanceId();
+        if (overloadPolicy == OverloadPolicy.CALLER_RUNS && processInstanceId != null)
+            pendingCounts.merge(processInstanceId, 1, Integer::sum);
+    }
+
+    private void leave(BPMNProcessActivityRecordPayload recordPayload) {
+        String processInstanceId = recordPayload.getProcessInstanceId();
+        if (overloadPolicy == OverloadPolicy.CALLER_RUNS && processInstanceId != null)
+            pendingCounts.computeIfPresent(processInstanceId, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * Handle the payload of a shed process instance.
+     * Completion unmarks the process instance, as it removes the chain. Otherwise, the payload is replaced by a rebuild
+     * if the ring buffer is no more than half full and rebuild is enabled, or dropped.
+     *
+     * @param recordPayload recordPayload
+     * @return The payload to publish, or null if dropped.
+     */
+    private BPMNProcessActivityRecordPayload unshed(BPMNProcessActivityRecordPayload recordPayload) {
+        String processInstanceId = recordPayload.getProcessInstanceId();
+        if (recordPayload instanceof ProcessCompletedRecordPayload) {
+            shedProcessInstanceIds.remove(processInstanceId);
+            return recordPayload;
+        }
+        if (rebuildShed && ringBuffer.getDepth() <= ringBuffer.getBufferSize() / 2 && shedProcessInstanceIds.remove(processInstanceId)) {
+            rebuiltCount.increment();
+            log.info("Recorder pipeline is available. Process instance [{}] is rebuilt from history.", processInstanceId);
+            return BPMNProcessActivityRecordPayload.processRebuildRecord()
+                    .processInstanceId(processInstanceId)
+                    .build();
+        }
+        shedCount.increment();
+        return null;
+    }
+
+    private void shed(BPMNProcessActivityRecordPayload recordPayload) {
+        shedCount.increment();
+        String processInstanceId = recordPayload.getProcessInstanceId();
+        if (processInstanceId != null && shedProcessInstanceIds.add(processInstanceId)) {
+            log.warn("Recorder pipeline is full. Process instance [{}] is shed, its chain is incomplete.", processInstanceId);
+            RecordShedListener candidateListener = this.shedListener;
+            if (candidateListener != null)
+                candidateListener.onShed(processInstanceId, recordPayload);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history.pipeline;
+
+import io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivityRecordPayload;
+
+/**
+ * Handler for the payloads consumed by one {@link RecordPayloadBatchProcessor}.
+ *
+ * @author VirtualCry
+ */
+public interface RecordPayloadBatchHandler {
+
+    /**
+     * Handle one payload of current batch.
+     *
+     * @param recordPayload recordPayload
+     */
+    void onRecord(BPMNProcessActivityRecordPayload recordPayload);
+
+
+    /**
+     * Called after the last payload of current batch has been handled.
+     */
+    default void onEndOfBatch() {
+    }
+}
@@ -0,0 +1,150 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Consumer of {@link RecordPayloadRingBuffer}.
+ *
+ * 1. Each processor owns one partition and only handles the payloads published to that partition.
+ * Payloads of the same process instance are always published to the same partition, so they are handled in order.
+ * 2. All payloads that are available when the processor wakes up are handled as one batch.
+ * 3. Each payload is handled while holding the record lock of the processor, see {@link #getRecordLock()}.
+ *
+ * @author VirtualCry
+ */
+@Slf4j
+public class RecordPayloadBatchProcessor implements Runnable {
+
+    private final RecordPayloadRingBuffer       ringBuffer;
+    private final RecordPayloadBatchHandler     batchHandler;
+    private final int                           partition;
+    private final Sequence                      sequence = new Sequence();
+    private final AtomicBoolean                 running = new AtomicBoolean(true);
+    private final AtomicLong                    recordedCount = new AtomicLong();
+    private final AtomicLong                    queueWaitNanos = new AtomicLong();
+    private final AtomicLong                    maxQueueWaitNanos = new AtomicLong();
+    private final ReentrantLock                 recordLock = new ReentrantLock();
+
+    public RecordPayloadBatchProcessor(RecordPayloadRingBuffer ringBuffer, RecordPayloadBatchHandler batchHandler, int partition) {
+        this.ringBuffer = ringBuffer;
+        this.batchHandler = batchHandler;
+        this.partition = partition;
+    }
+
+
+    public Sequence getSequence() {
+        return this.sequence;
+    }
+
+    public int getPartition() {
+        return this.partition;
+    }
+
+    /**
+     * Get the number of payloads handled by this processor. Written by the processor thread only.
+     */
+    public long getRecordedCount() {
+        return this.recordedCount.get();
+    }
+
+    /**
+     * Get the lock held while handling a payload. Others recording payloads of this partition outside the ring buffer,
+     * such as {@link OverloadPolicy#CALLER_RUNS}, hold it too, so that they never record concurrently with the processor.
+     */
+    public ReentrantLock getRecordLock() {
+        return this.recordLock;
+    }
+
+    /**
+     * Get total time the handled payloads waited in the ring buffer.
+     */
+    public long getQueueWaitNanos() {
+        return this.queueWaitNanos.get();
+    }
+
+    /**
+     * Get longest time a handled payload waited in the ring buffer.
+     */
+    public long getMaxQueueWaitNanos() {
+        return this.maxQueueWaitNanos.get();
+    }
+
+    /**
+     * Stop the processor after current batch.
+     */
+    public void halt() {
+        this.running.set(false);
+        this.ringBuffer.getWaitStrategy().signalAllWhenBlocking();
+    }
+
+    @Override
+    public void run() {
+        WaitStrategy waitStrategy = ringBuffer.getWaitStrategy();
+        Sequence cursor = ringBuffer.getCursor();
+        long nextSequence = sequence.get() + 1L;
+
+        while (true) {
+            long availableSequence = waitStrategy.waitFor(nextSequence, cursor, running);
+            if (availableSequence < nextSequence) {
+                if (!running.get())
+                    break;
+                continue;
+            }
+
+            availableSequence = ringBuffer.getHighestPublishedSequence(nextSequence, availableSequence);
+
+            boolean handled = false;
+            long now = System.nanoTime();
+            while (nextSequence <= availableSequence) {
+                RecordSlot slot = ringBuffer.get(nextSequence);
+                if (slot.getPartition() == partition) {
+                    long queueWait = now - slot.getPublishNanos();
+                    queueWaitNanos.lazySet(queueWaitNanos.get() + queueWait);
+                    if (queueWait > maxQueueWaitNanos.get())
+                        maxQueueWaitNanos.lazySet(queueWait);
+                    recordLock.lock();
+                    try {
+                        batchHandler.onRecord(slot.getRecordPayload());
+                    } catch (Throwable ex) {
+                        log.error("Failed to record payload at sequence " + nextSequence + ".", ex);
+                    } finally {
+                        recordLock.unlock();
+                    }
+                    slot.clear();
+                    recordedCount.lazySet(recordedCount.get() + 1);
+                    handled = true;
+                }
+                nextSequence++;
+            }
+
+            if (handled) {
+                recordLock.lock();
+                try {
+                    batchHandler.onEndOfBatch();
+                } catch (Throwable ex) {
+                    log.error("Failed to end batch at sequence " + availableSequence + ".", ex);
+                } finally {
+                    recordLock.unlock();
+                }
+            }
+
+            sequence.set(availableSequence);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history.pipeline;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pre-allocated, multi-producer ring buffer of {@link RecordSlot}.
+ *
+ * 1. Producers claim sequences with a CAS on the cursor and mark them available after writing the slot.
+ * 2. Consumers track their own {@link Sequence}. Producers never overwrite a slot which has not been consumed by all of them.
+ * 3. Once halted, producers waiting for consumers give up, see {@link #halt()}.
+ *
+ * @author VirtualCry
+ */
+public class RecordPayloadRingBuffer {
+
+    private final int                   bufferSize;
+    private final int                   indexMask;
+    private final int                   indexShift;
+    private final RecordSlot[]          slots;
+    private final AtomicIntegerArray    availableBuffer;
+    private final Sequence              cursor = new Sequence();
+    private final Sequence              gatingSequenceCache = new Sequence();
+    private final WaitStrategy          waitStrategy;
+    private volatile Sequence[]         gatingSequences = new Sequence[0];
+    private volatile boolean            halted;
+
+    public RecordPayloadRingBuffer(int bufferSize, WaitStrategy waitStrategy) {
+        if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1)
+            throw new IllegalArgumentException("bufferSize must be a power of 2");
+        this.bufferSize = bufferSize;
+        this.indexMask = bufferSize - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(bufferSize);
+        this.slots = new RecordSlot[bufferSize];
+        for (int i = 0; i < bufferSize; i++)
+            this.slots[i] = new RecordSlot();
+        this.availableBuffer = new AtomicIntegerArray(bufferSize);
+        for (int i = 0; i < bufferSize; i++)
+            this.availableBuffer.set(i, -1);
+        this.waitStrategy = waitStrategy;
+    }
+
+
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    public Sequence getCursor() {
+        return this.cursor;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return this.waitStrategy;
+    }
+
+    /**
+     * Set the consumer sequences which producers must not overtake.
+     *
+     * @param gatingSequences   gatingSequences
+     */
+    public void setGatingSequences(Sequence... gatingSequences) {
+        this.gatingSequences = gatingSequences;
+    }
+
+    /**
+     * Halt the ring buffer when consumers stop, so that producers waiting for them give up instead of waiting forever.
+     */
+    public void halt() {
+        this.halted = true;
+    }
+
+    /**
+     * Get slot of the sequence.
+     *
+     * @param sequence  sequence
+     * @return The {@link RecordSlot}.
+     */
+    public RecordSlot get(long sequence) {
+        return this.slots[(int) sequence & indexMask];
+    }
+
+    /**
+     * Claim the next n sequences, waiting for consumers if the buffer is full.
+     *
+     * @param n number of sequences
+     * @return The highest claimed sequence, or {@literal -1} if the ring buffer is halted while waiting.
+     */
+    public long next(int n) {
+        if (n < 1 || n > bufferSize)
+            throw new IllegalArgumentException("n must be > 0 and <= bufferSize");
+
+        long current;
+        long next;
+        do {
+            current = cursor.get();
+            next = current + n;
+
+            long wrapPoint = next - bufferSize;
+            long cachedGatingSequence = gatingSequenceCache.get();
+
+            if (wrapPoint > cachedGatingSequence || cachedGatingSequence > current) {
+                long gatingSequence = this.getMinimumGatingSequence(current);
+                if (wrapPoint > gatingSequence) {
+                    if (this.halted)
+                        return -1L;
+                    LockSupport.parkNanos(1);
+                    continue;
+                }
+                gatingSequenceCache.set(gatingSequence);
+            }
+            else if (cursor.compareAndSet(current, next))
+                break;
+        } while (true);
+
+        return next;
+    }
+
+    /**
+     * Try to claim the next n sequences without waiting.
+     *
+     * @param n number of sequences
+     * @return The highest claimed sequence, or {@literal -1} if there is not enough capacity.
+     */
+    public long tryNext(int n) {
+        if (n < 1 || n > bufferSize)
+            throw new IllegalArgumentException("n must be > 0 and <= bufferSize");
+
+        long current;
+        long next;
+        do {
+            current = cursor.get();
+            next = current + n;
+            if (!this.hasAvailableCapacity(n, current))
+                return -1L;
+        } while (!cursor.compareAndSet(current, next));
+
+        return next;
+    }
+
+    /**
+     * Mark the sequences as available to consumers.
+     *
+     * @param lo    lowest sequence, inclusive.
+     * @param hi    highest sequence, inclusive.
+     */
+    public void publish(long lo, long hi) {
+        for (long sequence = lo; sequence <= hi; sequence++)
+            this.availableBuffer.lazySet((int) sequence & indexMask, (int) (sequence >>> indexShift));
+        this.waitStrategy.signalAllWhenBlocking();
+    }
+
+    /**
+     * Get the highest sequence that can be read safely, between the lower bound and the available sequence.
+     *
+     * @param lowerBound            lowerBound
+     * @param availableSequence     availableSequence
+     * @return The highest published sequence.
+     */
+    public long getHighestPublishedSequence(long lowerBound, long availableSequence) {
+        for (long sequence = lowerBound; sequence <= availableSequence; sequence++) {
+            if (!this.isAvailable(sequence))
+                return sequence - 1;
+        }
+        return availableSequence;
+    }
+
+    /**
+     * Get the number of slots claimed but not consumed yet.
+     *
+     * @return The depth.
+     */
+    public long getDepth() {
+        long produced = cursor.get();
+        return produced - this.getMinimumGatingSequence(produced);
+    }
+
+    private boolean isAvailable(long sequence) {
+        return this.availableBuffer.get((int) sequence & indexMask) == (int) (sequence >>> indexShift);
+    }
+
+    private boolean hasAvailableCapacity(int requiredCapacity, long cursorValue) {
+        long wrapPoint = (cursorValue + requiredCapacity) - bufferSize;
+        long cachedGatingSequence = gatingSequenceCache.get();
+
+        if (wrapPoint > cachedGatingSequence || cachedGatingSequence > cursorValue) {
+            long minSequence = this.getMinimumGatingSequence(cursorValue);
+            gatingSequenceCache.set(minSequence);
+            return wrapPoint <= minSequence;
+        }
+        return true;
+    }
+
+    private long getMinimumGatingSequence(long minimum) {
+        for (Sequence gatingSequence : this.gatingSequences)
+            minimum = Math.min(minimum, gatingSequence.get());
+        return minimum;
+    }
+}
@@ -0,0 +1,65 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history.pipeline;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Snapshot of {@link PipelinedBPMNProcessActivityRecorder} metrics.
+ *
+ * @author VirtualCry
+ */
+@Builder
+@Getter
+@ToString
+public class RecordPipelineMetrics {
+
+    /** Number of slots of the ring buffer. */
+    private final int           capacity;
+    /** Number of payloads published but not recorded yet. */
+    private final long          depth;
+    /** Number of payloads published into the ring buffer. */
+    private final long          publishedCount;
+    /** Number of payloads recorded by consumers. */
+    private final long          recordedCount;
+    /** Number of times a committing thread was blocked by a full ring buffer. */
+    private final long          blockedCount;
+    /** Total time committing threads were blocked. */
+    private final long          blockedNanos;
+    /** Longest time a committing thread was blocked. */
+    private final long          maxBlockedNanos;
+    /** Number of payloads recorded on the committing thread by {@link OverloadPolicy#CALLER_RUNS}. */
+    private final long          callerRunsCount;
+    /** Number of payloads dropped by {@link OverloadPolicy#SHED}. */
+    private final long          shedCount;
+    /** Number of shed process instances replaced by a rebuild from history. */
+    private final long          rebuiltCount;
+    /** Number of process instances currently marked as shed. */
+    private final int           shedProcessInstanceCount;
+    /** Total time payloads waited in the ring buffer before being recorded. */
+    private final long          queueWaitNanos;
+    /** Longest time a payload waited in the ring buffer before being recorded. */
+    private final long          maxQueueWaitNanos;
+
+
+    /**
+     * Get average time payloads waited in the ring buffer.
+     *
+     * @return nanos
+     */
+    public long getAverageQueueWaitNanos() {
+        return recordedCount == 0 ? 0 : queueWaitNanos / recordedCount;
+    }
+}
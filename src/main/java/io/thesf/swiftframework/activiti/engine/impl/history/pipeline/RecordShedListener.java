@@ -0,0 +1,36 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history.pipeline;
+
+import io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivityRecordPayload;
+
+/**
+ * Notified when a process instance is marked as shed by {@link OverloadPolicy#SHED}.
+ *
+ * Warning:
+ * 1. Called on the committing thread. Implementations should be fast, such as raising an alert.
+ * 2. The dropped payloads are lost. The chain of the process instance is rebuilt from history only if rebuild is enabled,
+ * see {@link PipelinedBPMNProcessActivityRecorder#setRebuildShed(boolean)}.
+ *
+ * @author VirtualCry
+ */
+public interface RecordShedListener {
+
+    /**
+     * Called once when the process instance is marked.
+     *
+     * @param processInstanceId processInstanceId
+     * @param recordPayload     the first dropped payload
+     */
+    void onShed(String processInstanceId, BPMNProcessActivityRecordPayload recordPayload);
+}
@@ -0,0 +1,43 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history.pipeline;
+
+import io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivityRecordPayload;
+import lombok.Getter;
+
+/**
+ * Reusable slot of {@link RecordPayloadRingBuffer}. Slots are allocated once and overwritten by producers.
+ *
+ * 1. The payload is cleared by the consumer after recording, so that consumed slots do not hold payloads,
+ * and the bpmn model objects they refer to. The partition is kept, as consumers of other partitions still read it.
+ *
+ * @author VirtualCry
+ */
+@Getter
+public class RecordSlot {
+
+    protected BPMNProcessActivityRecordPayload  recordPayload;
+    protected int                               partition;
+    protected long                              publishNanos;
+
+
+    void set(BPMNProcessActivityRecordPayload recordPayload, int partition, long publishNanos) {
+        this.recordPayload = recordPayload;
+        this.partition = partition;
+        this.publishNanos = publishNanos;
+    }
+
+    void clear() {
+        this.recordPayload = null;
+    }
+}
@@ -0,0 +1,66 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history.pipeline;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Sequence counter padded to its own cache line, so that producer and consumer counters do not false share.
+ *
+ * @author VirtualCry
+ */
+@SuppressWarnings("unused")
+public class Sequence {
+
+    public static final long INITIAL_VALUE = -1L;
+
+    private static final AtomicLongFieldUpdater<Sequence> VALUE_UPDATER = AtomicLongFieldUpdater.newUpdater(Sequence.class, "value");
+
+    protected long                  p1, p2, p3, p4, p5, p6, p7;
+    private volatile long           value;
+    protected long                  p9, p10, p11, p12, p13, p14, p15;
+
+    public Sequence() {
+        this(INITIAL_VALUE);
+    }
+
+    public Sequence(long initialValue) {
+        this.value = initialValue;
+    }
+
+
+    public long get() {
+        return this.value;
+    }
+
+    public void set(long value) {
+        VALUE_UPDATER.lazySet(this, value);
+    }
+
+    public void setVolatile(long value) {
+        this.value = value;
+    }
+
+    public boolean compareAndSet(long expectedValue, long newValue) {
+        return VALUE_UPDATER.compareAndSet(this, expectedValue, newValue);
+    }
+
+    public long addAndGet(long increment) {
+        return VALUE_UPDATER.addAndGet(this, increment);
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(this.get());
+    }
+}
@@ -0,0 +1,63 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history.pipeline;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Implement of {@link WaitStrategy}. Spin, then yield, then park for a short period.
+ *
+ * Good compromise between CPU usage and latency. This is the default strategy of the recorder pipeline.
+ *
+ * @author VirtualCry
+ */
+public class SleepingWaitStrategy implements WaitStrategy {
+
+    private static final int    DEFAULT_RETRIES = 200;
+    private static final long   DEFAULT_SLEEP_NANOS = 100;
+
+    private final int           retries;
+    private final long          sleepNanos;
+
+    public SleepingWaitStrategy() {
+        this(DEFAULT_RETRIES, DEFAULT_SLEEP_NANOS);
+    }
+
+    public SleepingWaitStrategy(int retries, long sleepNanos) {
+        this.retries = retries;
+        this.sleepNanos = sleepNanos;
+    }
+
+
+    @Override
+    public long waitFor(long sequence, Sequence cursor, AtomicBoolean running) {
+        long availableSequence;
+        int counter = retries;
+        while ((availableSequence = cursor.get()) < sequence && running.get()) {
+            if (counter > 100)
+                --counter;
+            else if (counter > 0) {
+                --counter;
+                Thread.yield();
+            }
+            else
+                LockSupport.parkNanos(sleepNanos);
+        }
+        return availableSequence;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+    }
+}
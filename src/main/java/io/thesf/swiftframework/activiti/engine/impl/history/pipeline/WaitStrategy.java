@@ -0,0 +1,43 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history.pipeline;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Strategy used by consumers to wait for the producer cursor.
+ *
+ * @see BlockingWaitStrategy
+ * @see SleepingWaitStrategy
+ * @see YieldingWaitStrategy
+ * @see BusySpinWaitStrategy
+ * @author VirtualCry
+ */
+public interface WaitStrategy {
+
+    /**
+     * Wait until the cursor reaches the sequence or the consumer is halted.
+     *
+     * @param sequence  sequence to wait for
+     * @param cursor    cursor of the producers
+     * @param running   running flag of the consumer
+     * @return The cursor value seen, which may be less than the sequence when the consumer is halted.
+     */
+    long waitFor(long sequence, Sequence cursor, AtomicBoolean running);
+
+
+    /**
+     * Wake up all consumers blocked in {@link #waitFor(long, Sequence, AtomicBoolean)}.
+     */
+    void signalAllWhenBlocking();
+}
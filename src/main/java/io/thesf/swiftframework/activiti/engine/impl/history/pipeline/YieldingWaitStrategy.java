@@ -0,0 +1,44 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history.pipeline;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Implement of {@link WaitStrategy}. Spin, then yield the thread.
+ *
+ * Low latency, but burns CPU when idle. Use it only when consumers have dedicated cores.
+ *
+ * @author VirtualCry
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+
+    private static final int    SPIN_TRIES = 100;
+
+    @Override
+    public long waitFor(long sequence, Sequence cursor, AtomicBoolean running) {
+        long availableSequence;
+        int counter = SPIN_TRIES;
+        while ((availableSequence = cursor.get()) < sequence && running.get()) {
+            if (counter == 0)
+                Thread.yield();
+            else
+                --counter;
+        }
+        return availableSequence;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+    }
+}
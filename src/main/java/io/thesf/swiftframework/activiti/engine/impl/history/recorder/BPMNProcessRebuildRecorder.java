@@ -0,0 +1,85 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history.recorder;
+
+import io.thesf.swiftframework.activiti.cache.data.BPMNProcessChainCacheManager;
+import io.thesf.swiftframework.activiti.engine.impl.cmd.GetHistoricRecordPayloadsCmd;
+import io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivityPayloadRecorder;
+import io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivityRecordPayload;
+import io.thesf.swiftframework.activiti.engine.impl.history.payloads.FreeJumpRecordPayload;
+import io.thesf.swiftframework.activiti.engine.impl.history.payloads.ProcessRebuildRecordPayload;
+import io.thesf.swiftframework.activiti.engine.impl.history.payloads.SequenceFlowTakenRecordPayload;
+import org.activiti.engine.ManagementService;
+
+import java.util.List;
+
+/**
+ * One kind of BPMN process activity recorder. - {@literal Process Rebuild}
+ *
+ * 1. The chain of the process instance is dropped, then rebuilt by replaying the payloads derived from history,
+ * see {@link GetHistoricRecordPayloadsCmd}, as one update of the chain.
+ * 2. Used by {@link io.thesf.swiftframework.activiti.engine.impl.history.pipeline.PipelinedBPMNProcessActivityRecorder}
+ * to rebuild process instances shed under overload.
+ *
+ * Warning:
+ * 1. History is read in a new command, on the recording thread.
+ *
+ * @author VirtualCry
+ */
+public class BPMNProcessRebuildRecorder implements BPMNProcessActivityPayloadRecorder<ProcessRebuildRecordPayload> {
+
+    private final BPMNProcessChainCacheManager              bpmnProcessChainCacheManager;
+    private final ManagementService                         managementService;
+    private final BPMNProcessSequenceFlowTokenRecorder      sequenceFlowTokenRecorder;
+    private final BPMNProcessFreeJumpRecorder               freeJumpRecorder;
+
+    public BPMNProcessRebuildRecorder(BPMNProcessChainCacheManager bpmnProcessChainCacheManager,
+                                      ManagementService managementService,
+                                      BPMNProcessSequenceFlowTokenRecorder sequenceFlowTokenRecorder,
+                                      BPMNProcessFreeJumpRecorder freeJumpRecorder) {
+        this.bpmnProcessChainCacheManager = bpmnProcessChainCacheManager;
+        this.managementService = managementService;
+        this.sequenceFlowTokenRecorder = sequenceFlowTokenRecorder;
+        this.freeJumpRecorder = freeJumpRecorder;
+    }
+
+
+    @Override
+    public Class<ProcessRebuildRecordPayload> getPayloadType() {
+        return ProcessRebuildRecordPayload.class;
+    }
+
+    @Override
+    public void record(ProcessRebuildRecordPayload recordPayload) {
+        this.record(recordPayload.getProcessInstanceId());
+    }
+
+
+    /**
+     * Record when {@literal process rebuild}.
+     *
+     * @param processInstanceId processInstanceId
+     */
+    public void record(String processInstanceId) {
+        List<BPMNProcessActivityRecordPayload> historicRecordPayloads = this.managementService.executeCommand(new GetHistoricRecordPayloadsCmd(processInstanceId));
+        this.bpmnProcessChainCacheManager.batchUpdate(processInstanceId, () -> {
+            this.bpmnProcessChainCacheManager.remove(processInstanceId);
+            for (BPMNProcessActivityRecordPayload historicRecordPayload : historicRecordPayloads) {
+                if (historicRecordPayload instanceof SequenceFlowTakenRecordPayload)
+                    this.sequenceFlowTokenRecorder.record((SequenceFlowTakenRecordPayload) historicRecordPayload);
+                else if (historicRecordPayload instanceof FreeJumpRecordPayload)
+                    this.freeJumpRecorder.record((FreeJumpRecordPayload) historicRecordPayload);
+            }
+        });
+    }
+}
@@ -1,68 +1,152 @@
-/* Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package io.thesf.swiftframework.activiti.engine.impl.history.route;
-
-import io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivityRecordPayload;
-import io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivityRecorder;
-import io.thesf.swiftframework.activiti.engine.impl.history.payloads.FreeJumpRecordPayload;
-import io.thesf.swiftframework.activiti.engine.impl.history.payloads.ProcessCompletedRecordPayload;
-import io.thesf.swiftframework.activiti.engine.impl.history.payloads.RollBackRecordPayload;
-import io.thesf.swiftframework.activiti.engine.impl.history.payloads.SequenceFlowTakenRecordPayload;
-import io.thesf.swiftframework.activiti.engine.impl.history.recorder.BPMNProcessCompletedRecorder;
-import io.thesf.swiftframework.activiti.engine.impl.history.recorder.BPMNProcessFreeJumpRecorder;
-import io.thesf.swiftframework.activiti.engine.impl.history.recorder.BPMNProcessRollBackRecorder;
-import io.thesf.swiftframework.activiti.engine.impl.history.recorder.BPMNProcessSequenceFlowTokenRecorder;
-import org.springframework.beans.BeansException;
-import org.springframework.context.ApplicationContext;
-import org.springframework.context.ApplicationContextAware;
-
-/**
- * Route to different execute task base on the kind of {@link BPMNProcessActivityRecordPayload}.
- *
- * @author VirtualCry
- */
-public class BPMNProcessActivityRecorderRouter extends BPMNProcessActivityRecorder implements ApplicationContextAware {
-
-    private ApplicationContext  ctx;
-
-    @Override
-    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
-        this.ctx = applicationContext;
-    }
-
-    @Override
-    protected Runnable selectExecuteTask(BPMNProcessActivityRecordPayload recordPayload) {
-        if (recordPayload instanceof SequenceFlowTakenRecordPayload) {
-            BPMNProcessSequenceFlowTokenRecorder recorder = this.ctx.getBean(BPMNProcessSequenceFlowTokenRecorder.class);
-            SequenceFlowTakenRecordPayload payload = (SequenceFlowTakenRecordPayload) recordPayload;
-            return () -> recorder.record(payload.getBpmnSequenceFlow());
-        }
-        else if (recordPayload instanceof FreeJumpRecordPayload) {
-            BPMNProcessFreeJumpRecorder recorder = this.ctx.getBean(BPMNProcessFreeJumpRecorder.class);
-            FreeJumpRecordPayload payload = (FreeJumpRecordPayload) recordPayload;
-            return () -> recorder.record(payload.getSourceActivities(), payload.getTargetActivities());
-        }
-        else if (recordPayload instanceof RollBackRecordPayload) {
-            BPMNProcessRollBackRecorder recorder = this.ctx.getBean(BPMNProcessRollBackRecorder.class);
-            RollBackRecordPayload payload = (RollBackRecordPayload) recordPayload;
-            return () -> recorder.record(payload.getProcessInstanceId(), payload.getTurnBackActivityChains(), payload.getRecoveryActivityChains());
-        }
-        else if (recordPayload instanceof ProcessCompletedRecordPayload) {
-            BPMNProcessCompletedRecorder recorder = this.ctx.getBean(BPMNProcessCompletedRecorder.class);
-            ProcessCompletedRecordPayload payload = (ProcessCompletedRecordPayload) recordPayload;
-            return () -> recorder.record(payload.getProcessInstance());
-        }
-        else
-            return () -> { };
-    }
-}
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.history.route;
+
+import io.thesf.swiftframework.activiti.cache.data.BPMNProcessChainCacheManager;
+import io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivityPayloadRecorder;
+import io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivityRecordPayload;
+import io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivityRecorder;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+
+import java.util.*;
+
+/**
+ * Route to different recorders base on the kind of {@link BPMNProcessActivityRecordPayload}.
+ *
+ * 1. All {@link BPMNProcessActivityPayloadRecorder}s are resolved once at startup into a class-keyed dispatch table.
+ * 2. A payload whose class is not registered directly is routed by its nearest registered super class,
+ * and the result is remembered in the dispatch table.
+ * 3. Consecutive payloads of one process instance passed to {@link #recordAll(List)} are applied as one update of its chain,
+ * see {@link BPMNProcessChainCacheManager#batchUpdate(String, Runnable)}, so the chain is read and written once per process instance.
+ *
+ * @author VirtualCry
+ */
+public class BPMNProcessActivityRecorderRouter extends BPMNProcessActivityRecorder
+        implements ApplicationContextAware, SmartInitializingSingleton {
+
+    private static final BPMNProcessActivityPayloadRecorder<?>[] NO_RECORDERS = new BPMNProcessActivityPayloadRecorder<?>[0];
+
+    private ApplicationContext                                                      ctx;
+    @Getter @Setter
+    private BPMNProcessChainCacheManager                                            bpmnProcessChainCacheManager;
+    private volatile Map<Class<?>, BPMNProcessActivityPayloadRecorder<?>[]>         dispatchTable = Collections.emptyMap();
+
+    public BPMNProcessActivityRecorderRouter() {
+    }
+
+    public BPMNProcessActivityRecorderRouter(Collection<? extends BPMNProcessActivityPayloadRecorder<?>> recorders) {
+        this.register(recorders);
+    }
+
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.ctx = applicationContext;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void afterSingletonsInstantiated() {
+        Collection<BPMNProcessActivityPayloadRecorder> recorders = this.ctx.getBeansOfType(BPMNProcessActivityPayloadRecorder.class).values();
+        List<BPMNProcessActivityPayloadRecorder<?>> candidateRecorders = new ArrayList<>();
+        recorders.forEach(candidateRecorders::add);
+        this.register(candidateRecorders);
+        if (this.bpmnProcessChainCacheManager == null)
+            this.bpmnProcessChainCacheManager = this.ctx.getBeanProvider(BPMNProcessChainCacheManager.class).getIfAvailable();
+    }
+
+    /**
+     * Build the dispatch table.
+     *
+     * @param recorders recorders
+     */
+    protected synchronized void register(Collection<? extends BPMNProcessActivityPayloadRecorder<?>> recorders) {
+        List<BPMNProcessActivityPayloadRecorder<?>> sortedRecorders = new ArrayList<>(recorders);
+        AnnotationAwareOrderComparator.sort(sortedRecorders);
+
+        Map<Class<?>, List<BPMNProcessActivityPayloadRecorder<?>>> candidateTable = new LinkedHashMap<>();
+        sortedRecorders.forEach(recorder -> candidateTable
+                .computeIfAbsent(recorder.getPayloadType(), payloadType -> new ArrayList<>())
+                .add(recorder));
+
+        Map<Class<?>, BPMNProcessActivityPayloadRecorder<?>[]> newDispatchTable = new IdentityHashMap<>();
+        candidateTable.forEach((payloadType, payloadRecorders) ->
+                newDispatchTable.put(payloadType, payloadRecorders.toArray(NO_RECORDERS)));
+        this.dispatchTable = newDispatchTable;
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void record(BPMNProcessActivityRecordPayload recordPayload) {
+        BPMNProcessActivityPayloadRecorder<?>[] recorders = this.dispatchTable.get(recordPayload.getClass());
+        if (recorders == null)
+            recorders = this.resolve(recordPayload.getClass());
+        for (BPMNProcessActivityPayloadRecorder recorder : recorders)
+            recorder.record(recordPayload);
+    }
+
+    @Override
+    public void recordAll(List<BPMNProcessActivityRecordPayload> recordPayloads) {
+        BPMNProcessChainCacheManager cacheManager = this.bpmnProcessChainCacheManager;
+        if (cacheManager == null) {
+            super.recordAll(recordPayloads);
+            return;
+        }
+
+        int size = recordPayloads.size();
+        for (int from = 0, to; from < size; from = to) {
+            String processInstanceId = recordPayloads.get(from).getProcessInstanceId();
+            for (to = from + 1; to < size; to++) {
+                if (!Objects.equals(processInstanceId, recordPayloads.get(to).getProcessInstanceId()))
+                    break;
+            }
+            if (to - from == 1) {
+                this.record(recordPayloads.get(from));
+                continue;
+            }
+            List<BPMNProcessActivityRecordPayload> instancePayloads = recordPayloads.subList(from, to);
+            cacheManager.batchUpdate(processInstanceId, () -> instancePayloads.forEach(this::record));
+        }
+    }
+
+    /**
+     * Resolve recorders for payload type which is not registered directly.
+     *
+     * @param payloadType   payloadType
+     * @return The recorders.
+     */
+    protected synchronized BPMNProcessActivityPayloadRecorder<?>[] resolve(Class<?> payloadType) {
+        Map<Class<?>, BPMNProcessActivityPayloadRecorder<?>[]> currentDispatchTable = this.dispatchTable;
+        if (currentDispatchTable.containsKey(payloadType))
+            return currentDispatchTable.get(payloadType);
+
+        BPMNProcessActivityPayloadRecorder<?>[] recorders = NO_RECORDERS;
+        for (Class<?> candidateType = payloadType.getSuperclass(); candidateType != null; candidateType = candidateType.getSuperclass()) {
+            if (currentDispatchTable.containsKey(candidateType)) {
+                recorders = currentDispatchTable.get(candidateType);
+                break;
+            }
+        }
+
+        Map<Class<?>, BPMNProcessActivityPayloadRecorder<?>[]> newDispatchTable = new IdentityHashMap<>(currentDispatchTable);
+        newDispatchTable.put(payloadType, recorders);
+        this.dispatchTable = newDispatchTable;
+        return recorders;
+    }
+}
@@ -0,0 +1,58 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.interceptor;
+
+import io.thesf.swiftframework.activiti.engine.impl.metrics.CommandMetricsRegistry;
+import org.activiti.engine.impl.interceptor.AbstractCommandInterceptor;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandConfig;
+
+/**
+ * Command interceptor, which records latency and allocated bytes of each command by its class.
+ *
+ * 1. Installed before the default interceptors, so the latency includes the transaction, flush and commit.
+ * 2. Commands executed through the command executor inside another command are recorded too, and their cost
+ * is included in the outer command as well.
+ *
+ * Warning:
+ * 1. Commands executed directly with {@link Command#execute(org.activiti.engine.impl.interceptor.CommandContext)}
+ * are not recorded, since they do not go through the interceptors.
+ *
+ * @see SpringCommandContextFactory#setCommandMetricsRegistry(CommandMetricsRegistry)
+ * @author VirtualCry
+ */
+public class CommandMetricsInterceptor extends AbstractCommandInterceptor {
+
+    private final CommandMetricsRegistry        commandMetricsRegistry;
+
+    public CommandMetricsInterceptor(CommandMetricsRegistry commandMetricsRegistry) {
+        this.commandMetricsRegistry = commandMetricsRegistry;
+    }
+
+
+    @Override
+    public <T> T execute(CommandConfig config, Command<T> command) {
+        long startAllocatedBytes = commandMetricsRegistry.allocatedBytes();
+        long startTime = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = next.execute(config, command);
+            failed = false;
+            return result;
+        } finally {
+            long latencyNanos = System.nanoTime() - startTime;
+            long allocatedBytes = startAllocatedBytes >= 0L ? commandMetricsRegistry.allocatedBytes() - startAllocatedBytes : -1L;
+            commandMetricsRegistry.record(command.getClass(), latencyNanos, allocatedBytes, failed);
+        }
+    }
+}
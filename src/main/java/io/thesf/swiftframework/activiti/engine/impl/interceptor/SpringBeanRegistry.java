@@ -0,0 +1,132 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.interceptor;
+
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.beans.factory.NoUniqueBeanDefinitionException;
+import org.springframework.context.ApplicationContext;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Registry of beans used by commands, resolved once by type.
+ *
+ * 1. Once started, a type is resolved from {@link ApplicationContext} at its first lookup, then served from the registry.
+ * The absence of a bean is remembered as well.
+ * 2. Types of the extension are resolved at startup, see {@link SpringCommandContextFactory}.
+ * 3. Before started, such as while the application context is refreshing, lookups go to {@link ApplicationContext} directly.
+ * 4. If a type has several beans and none is primary, the bean named after the type ignoring case,
+ * such as {@literal bpmnProcessActivityRecorder}, is used, as {@link javax.annotation.Resource} fields named after their type do.
+ *
+ * Warning:
+ * 1. Only types whose beans are all singletons are remembered. Beans of other scopes are looked up each time,
+ * while whether a type is remembered is decided once after started.
+ * 2. Beans registered after startup are not visible for types resolved already.
+ *
+ * @author VirtualCry
+ */
+public class SpringBeanRegistry {
+
+    private static final Object                 NONE = new Object();
+
+    private final ApplicationContext            ctx;
+    private final Map<Class<?>, Object>         beans = new ConcurrentHashMap<>();
+    private final Map<Class<?>, List<?>>        beanLists = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Boolean>        cacheableTypes = new ConcurrentHashMap<>();
+    private volatile boolean                    started;
+
+    public SpringBeanRegistry(ApplicationContext ctx) {
+        this.ctx = ctx;
+    }
+
+
+    /**
+     * Start to remember beans, and resolve the types now.
+     *
+     * @param beanTypes types to resolve at startup
+     */
+    public void start(Collection<Class<?>> beanTypes) {
+        this.started = true;
+        beanTypes.forEach(this::getBeanIfAvailable);
+    }
+
+    /**
+     * Get bean by bean's type.
+     *
+     * @param beanType beanType
+     * @return The bean.
+     */
+    public <T> T getBean(Class<T> beanType) {
+        T bean = this.getBeanIfAvailable(beanType);
+        if (bean == null)
+            throw new NoSuchBeanDefinitionException(beanType);
+        return bean;
+    }
+
+    /**
+     * Get bean by bean's type if it is defined.
+     *
+     * @param beanType beanType
+     * @return The bean, or null if not defined.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getBeanIfAvailable(Class<T> beanType) {
+        Object bean = beans.get(beanType);
+        if (bean == null) {
+            bean = this.resolveBean(beanType);
+            if (bean == null)
+                bean = NONE;
+            if (this.isCacheable(beanType))
+                beans.put(beanType, bean);
+        }
+        return bean != NONE ? (T) bean : null;
+    }
+
+    /**
+     * Get beans by bean's type.
+     *
+     * @param beanType beanType
+     * @return The beans.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getBeans(Class<T> beanType) {
+        List<?> beanList = beanLists.get(beanType);
+        if (beanList == null) {
+            beanList = Collections.unmodifiableList(Stream.of(ctx.getBeanNamesForType(beanType))
+                    .map(candidateName -> ctx.getBean(candidateName, beanType))
+                    .collect(Collectors.toList()));
+            if (this.isCacheable(beanType))
+                beanLists.put(beanType, beanList);
+        }
+        return (List<T>) beanList;
+    }
+
+    private <T> T resolveBean(Class<T> beanType) {
+        try {
+            return ctx.getBeanProvider(beanType).getIfAvailable();
+        } catch (NoUniqueBeanDefinitionException ex) {
+            return Stream.of(ctx.getBeanNamesForType(beanType))
+                    .filter(candidateName -> candidateName.equalsIgnoreCase(beanType.getSimpleName()))
+                    .findFirst()
+                    .map(candidateName -> ctx.getBean(candidateName, beanType))
+                    .orElseThrow(() -> ex);
+        }
+    }
+
+    private boolean isCacheable(Class<?> beanType) {
+        return started && cacheableTypes.computeIfAbsent(beanType, key -> Stream.of(ctx.getBeanNamesForType(key)).allMatch(ctx::isSingleton));
+    }
+}
@@ -1,86 +1,194 @@
-/* Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package io.thesf.swiftframework.activiti.engine.impl.interceptor;
-
-import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
-import org.activiti.engine.impl.interceptor.Command;
-import org.activiti.engine.impl.interceptor.CommandContext;
-import org.springframework.context.ApplicationContext;
-
-import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
-
-/**
- * Extension for {@link CommandContext}, which can get bean from {@link ApplicationContext}.
- *
- * @author VirtualCry
- */
-public class SpringCommandContext extends CommandContext {
-
-    private final ApplicationContext      ctx;
-
-    public SpringCommandContext(Command<?> command,
-                                ProcessEngineConfigurationImpl processEngineConfiguration,
-                                ApplicationContext ctx) {
-        super(command, processEngineConfiguration);
-        this.ctx = ctx;
-    }
-
-
-    /**
-     * Get applicationContext instance.
-     */
-    public ApplicationContext getApplicationContext(){
-        return ctx;
-    }
-
-    /**
-     * Get bean by bean's name.
-     *
-     * @param beanName beanName
-     */
-    public Object getBean(String beanName){
-        return ctx.getBean(beanName);
-    }
-
-    /**
-     * Get bean by bean's type.
-     *
-     * @param beanType beanType
-     */
-    public <T> T getBean(Class<T> beanType){
-        return ctx.getBean(beanType);
-    }
-
-    /**
-     * Get bean by bean's name and type.
-     *
-     * @param beanName beanName
-     * @param beanType beanType
-     */
-    public <T> T getBean(String beanName, Class<T> beanType){
-        return ctx.getBean(beanName, beanType);
-    }
-
-    /**
-     * Get beans by bean's type.
-     *
-     * @param beanType beanType
-     */
-    public <T> List<T> getBeans(Class<T> beanType){
-        return Stream.of(ctx.getBeanNamesForType(beanType))
-                .map(candidateName -> ctx.getBean(candidateName, beanType))
-                .collect(Collectors.toList());
-    }
-}
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.interceptor;
+
+import org.activiti.bpmn.model.Process;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.persistence.entity.ExecutionEntity;
+import org.activiti.engine.impl.persistence.entity.TaskEntity;
+import org.activiti.engine.impl.util.ProcessDefinitionUtil;
+import org.springframework.context.ApplicationContext;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Extension for {@link CommandContext}, which can get bean from {@link ApplicationContext}.
+ *
+ * 1. Beans got by type are served from {@link SpringBeanRegistry}.
+ * 2. Entities and models looked up by several steps of the command can be memoized in the scratch of the command context,
+ * see {@link #memoize(String, Object, Function)}.
+ *
+ * Warning:
+ * 1. Memoized values are not refreshed during the command.
+ * Do not memoize values that the command itself will change, such as the task list after completing a task.
+ *
+ * @author VirtualCry
+ */
+public class SpringCommandContext extends CommandContext {
+
+    private static final String         ROOT_EXECUTION_REGION = "rootExecution";
+    private static final String         PROCESS_REGION = "process";
+    private static final String         TASKS_REGION = "tasks";
+
+    private final ApplicationContext                ctx;
+    private final SpringBeanRegistry                beanRegistry;
+    private final Map<String, Map<Object, Object>>  scratch = new HashMap<>();
+
+    public SpringCommandContext(Command<?> command,
+                                ProcessEngineConfigurationImpl processEngineConfiguration,
+                                ApplicationContext ctx) {
+        this(command, processEngineConfiguration, ctx, new SpringBeanRegistry(ctx));
+    }
+
+    public SpringCommandContext(Command<?> command,
+                                ProcessEngineConfigurationImpl processEngineConfiguration,
+                                ApplicationContext ctx,
+                                SpringBeanRegistry beanRegistry) {
+        super(command, processEngineConfiguration);
+        this.ctx = ctx;
+        this.beanRegistry = beanRegistry;
+    }
+
+
+    /**
+     * Get applicationContext instance.
+     */
+    public ApplicationContext getApplicationContext(){
+        return ctx;
+    }
+
+    /**
+     * Get bean by bean's name.
+     *
+     * @param beanName beanName
+     */
+    public Object getBean(String beanName){
+        return ctx.getBean(beanName);
+    }
+
+    /**
+     * Get bean by bean's type.
+     *
+     * @param beanType beanType
+     */
+    public <T> T getBean(Class<T> beanType){
+        return beanRegistry.getBean(beanType);
+    }
+
+    /**
+     * Get bean by bean's type if it is defined.
+     *
+     * @param beanType beanType
+     * @return The bean, or null if not defined.
+     */
+    public <T> T getBeanIfAvailable(Class<T> beanType){
+        return beanRegistry.getBeanIfAvailable(beanType);
+    }
+
+    /**
+     * Get bean by bean's name and type.
+     *
+     * @param beanName beanName
+     * @param beanType beanType
+     */
+    public <T> T getBean(String beanName, Class<T> beanType){
+        return ctx.getBean(beanName, beanType);
+    }
+
+    /**
+     * Get beans by bean's type.
+     *
+     * @param beanType beanType
+     */
+    public <T> List<T> getBeans(Class<T> beanType){
+        return beanRegistry.getBeans(beanType);
+    }
+
+    /**
+     * Get value from the scratch of current command, or load it at the first time.
+     * Null values are memoized as well.
+     *
+     * @param region    region of the scratch, such as the kind of value
+     * @param key       key in the region
+     * @param loader    loader for the value
+     * @return The value.
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> V memoize(String region, K key, Function<? super K, ? extends V> loader) {
+        Map<Object, Object> values = scratch.computeIfAbsent(region, name -> new HashMap<>());
+        if (values.containsKey(key))
+            return (V) values.get(key);
+        V value = loader.apply(key);
+        values.put(key, value);
+        return value;
+    }
+
+    /**
+     * Evict value from the scratch of current command, such as after the command itself has changed it.
+     *
+     * @param region    region of the scratch
+     * @param key       key in the region
+     */
+    public void evict(String region, Object key) {
+        Map<Object, Object> values = scratch.get(region);
+        if (values != null)
+            values.remove(key);
+    }
+
+    /**
+     * Evict root execution and tasks of the process instance memoized in current command,
+     * such as after the executions of the process instance have been deleted and created again.
+     *
+     * @param processInstanceId processInstanceId
+     */
+    public void evictProcessInstance(String processInstanceId) {
+        this.evict(ROOT_EXECUTION_REGION, processInstanceId);
+        this.evict(TASKS_REGION, processInstanceId);
+    }
+
+    /**
+     * Get root execution of the process instance, memoized in current command.
+     *
+     * @param processInstanceId processInstanceId
+     * @return The root execution, or null if the process instance has been ended.
+     */
+    public ExecutionEntity getRootExecution(String processInstanceId) {
+        return this.memoize(ROOT_EXECUTION_REGION, processInstanceId, this.getExecutionEntityManager()::findByRootProcessInstanceId);
+    }
+
+    /**
+     * Get bpmn process of the process definition, memoized in current command.
+     *
+     * @param processDefinitionId processDefinitionId
+     * @return The {@link Process}.
+     */
+    public Process getProcess(String processDefinitionId) {
+        return this.memoize(PROCESS_REGION, processDefinitionId, ProcessDefinitionUtil::getProcess);
+    }
+
+    /**
+     * Get tasks of the process instance, memoized in current command.
+     * The list is loaded before any change of current command, see the warning of {@link SpringCommandContext}.
+     *
+     * @param processInstanceId processInstanceId
+     * @return The tasks.
+     */
+    public List<TaskEntity> getTasks(String processInstanceId) {
+        return this.memoize(TASKS_REGION, processInstanceId, this.getTaskEntityManager()::findTasksByProcessInstanceId);
+    }
+}
@@ -1,40 +1,117 @@
-/* Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-package io.thesf.swiftframework.activiti.engine.impl.interceptor;
-
-import org.activiti.engine.impl.interceptor.Command;
-import org.activiti.engine.impl.interceptor.CommandContext;
-import org.activiti.engine.impl.interceptor.CommandContextFactory;
-import org.springframework.beans.BeansException;
-import org.springframework.context.ApplicationContext;
-import org.springframework.context.ApplicationContextAware;
-
-/**
- * Extension for {@link CommandContextFactory}, which can create {@link SpringCommandContext}.
- *
- * @author VirtualCry
- */
-public class SpringCommandContextFactory extends CommandContextFactory implements ApplicationContextAware {
-
-    private ApplicationContext      ctx;
-
-    @Override
-    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
-        this.ctx = applicationContext;
-    }
-
-    @Override
-    public CommandContext createCommandContext(Command<?> cmd) {
-        return new SpringCommandContext(cmd, processEngineConfiguration, ctx);
-    }
-}
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.interceptor;
+
+import io.thesf.swiftframework.activiti.cache.data.BPMNProcessChainCacheManager;
+import io.thesf.swiftframework.activiti.cache.data.TaskAssigneeDefinitionCacheManager;
+import io.thesf.swiftframework.activiti.cache.data.TaskAssigneeTemplateCacheManager;
+import io.thesf.swiftframework.activiti.engine.impl.bpmn.analysis.ProcessDefinitionAnalyzer;
+import io.thesf.swiftframework.activiti.engine.impl.bpmn.assignee.TaskAssigneePrefetcher;
+import io.thesf.swiftframework.activiti.engine.impl.bpmn.condition.SequenceFlowConditionEvaluator;
+import io.thesf.swiftframework.activiti.engine.impl.bpmn.jump.JumpTargetResolver;
+import io.thesf.swiftframework.activiti.engine.impl.history.BPMNProcessActivityRecorder;
+import io.thesf.swiftframework.activiti.engine.impl.metrics.CommandMetricsRegistry;
+import org.activiti.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.activiti.engine.impl.interceptor.Command;
+import org.activiti.engine.impl.interceptor.CommandContext;
+import org.activiti.engine.impl.interceptor.CommandContextFactory;
+import org.activiti.engine.impl.interceptor.CommandInterceptor;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Extension for {@link CommandContextFactory}, which can create {@link SpringCommandContext}.
+ *
+ * 1. All command contexts share one {@link SpringBeanRegistry}.
+ * 2. Beans of the extension are resolved after all singletons are instantiated, see {@link #BEAN_TYPES}.
+ * 3. Set a {@link CommandMetricsRegistry} to record metrics of commands with {@link CommandMetricsInterceptor}.
+ * The registry is exposed through JMX, named after the process engine.
+ *
+ * Warning:
+ * 1. The registry must be set before the process engine is built, as the interceptor is installed while the engine initializes.
+ *
+ * @author VirtualCry
+ */
+public class SpringCommandContextFactory extends CommandContextFactory implements ApplicationContextAware, SmartInitializingSingleton, DisposableBean {
+
+    public static final Collection<Class<?>> BEAN_TYPES = Arrays.asList(
+            BPMNProcessActivityRecorder.class,
+            BPMNProcessChainCacheManager.class,
+            TaskAssigneeDefinitionCacheManager.class,
+            TaskAssigneeTemplateCacheManager.class,
+            TaskAssigneePrefetcher.class,
+            JumpTargetResolver.class,
+            ProcessDefinitionAnalyzer.class,
+            SequenceFlowConditionEvaluator.class
+    );
+
+    private ApplicationContext          ctx;
+    private SpringBeanRegistry          beanRegistry;
+    private CommandMetricsRegistry      commandMetricsRegistry;
+
+    public CommandMetricsRegistry getCommandMetricsRegistry() {
+        return commandMetricsRegistry;
+    }
+
+    public void setCommandMetricsRegistry(CommandMetricsRegistry commandMetricsRegistry) {
+        this.commandMetricsRegistry = commandMetricsRegistry;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.ctx = applicationContext;
+        this.beanRegistry = new SpringBeanRegistry(applicationContext);
+    }
+
+    @Override
+    public void setProcessEngineConfiguration(ProcessEngineConfigurationImpl processEngineConfiguration) {
+        super.setProcessEngineConfiguration(processEngineConfiguration);
+        if (commandMetricsRegistry == null)
+            return;
+        List<CommandInterceptor> preCommandInterceptors = processEngineConfiguration.getCustomPreCommandInterceptors() != null
+                ? new ArrayList<>(processEngineConfiguration.getCustomPreCommandInterceptors())
+                : new ArrayList<>();
+        if (preCommandInterceptors.stream().noneMatch(CommandMetricsInterceptor.class::isInstance)) {
+            preCommandInterceptors.add(0, new CommandMetricsInterceptor(commandMetricsRegistry));
+            processEngineConfiguration.setCustomPreCommandInterceptors(preCommandInterceptors);
+        }
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        this.beanRegistry.start(BEAN_TYPES);
+        if (commandMetricsRegistry != null)
+            commandMetricsRegistry.registerMBean(processEngineConfiguration != null
+                    ? processEngineConfiguration.getProcessEngineName()
+                    : "default");
+    }
+
+    @Override
+    public void destroy() {
+        if (commandMetricsRegistry != null)
+            commandMetricsRegistry.unregisterMBean();
+    }
+
+    @Override
+    public CommandContext createCommandContext(Command<?> cmd) {
+        return new SpringCommandContext(cmd, processEngineConfiguration, ctx, beanRegistry);
+    }
+}
@@ -0,0 +1,82 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics recorded for one command class.
+ *
+ * @author VirtualCry
+ */
+public class CommandMetrics {
+
+    private final String            commandName;
+    private final Histogram         latencies = new Histogram();
+    private final Histogram         allocatedBytes = new Histogram();
+    private final LongAdder         failedCount = new LongAdder();
+
+    public CommandMetrics(String commandName) {
+        this.commandName = commandName;
+    }
+
+
+    /**
+     * Record one execution of the command.
+     *
+     * @param latencyNanos      latency in nanoseconds
+     * @param allocatedBytes    bytes allocated by the executing thread, or negative if not tracked
+     * @param failed            whether the command threw
+     */
+    public void record(long latencyNanos, long allocatedBytes, boolean failed) {
+        this.latencies.record(latencyNanos);
+        if (allocatedBytes >= 0L)
+            this.allocatedBytes.record(allocatedBytes);
+        if (failed)
+            this.failedCount.increment();
+    }
+
+    /**
+     * Take a snapshot of the metrics.
+     *
+     * @return The {@link CommandMetricsSnapshot}.
+     */
+    public CommandMetricsSnapshot snapshot() {
+        Histogram.Snapshot latencySnapshot = this.latencies.snapshot();
+        Histogram.Snapshot allocationSnapshot = this.allocatedBytes.snapshot();
+        return new CommandMetricsSnapshot(
+                commandName,
+                latencySnapshot.getCount(),
+                failedCount.sum(),
+                latencySnapshot.getMean(),
+                latencySnapshot.getValueAtPercentile(50D),
+                latencySnapshot.getValueAtPercentile(90D),
+                latencySnapshot.getValueAtPercentile(99D),
+                latencySnapshot.getValueAtPercentile(99.9D),
+                latencySnapshot.getMax(),
+                allocationSnapshot.getMean(),
+                allocationSnapshot.getValueAtPercentile(99D),
+                allocationSnapshot.getMax(),
+                allocationSnapshot.getSum()
+        );
+    }
+
+    /**
+     * Clear the metrics.
+     */
+    public void reset() {
+        this.latencies.reset();
+        this.allocatedBytes.reset();
+        this.failedCount.reset();
+    }
+}
@@ -0,0 +1,52 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Management interface of {@link CommandMetricsRegistry}.
+ *
+ * @author VirtualCry
+ */
+public interface CommandMetricsMXBean {
+
+    /**
+     * Whether bytes allocated by commands are tracked.
+     */
+    boolean isAllocationTracked();
+
+    /**
+     * Get names of the commands recorded.
+     */
+    List<String> getCommandNames();
+
+    /**
+     * Get snapshots of all commands, by command name.
+     */
+    Map<String, CommandMetricsSnapshot> getSnapshots();
+
+    /**
+     * Get snapshot of the command.
+     *
+     * @param commandName class name of the command
+     * @return The snapshot, or null if the command is not recorded.
+     */
+    CommandMetricsSnapshot getSnapshot(String commandName);
+
+    /**
+     * Clear all metrics.
+     */
+    void reset();
+}
@@ -0,0 +1,153 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of {@link CommandMetrics} by command class, and the snapshot API of them.
+ *
+ * 1. Commands are recorded by {@link io.thesf.swiftframework.activiti.engine.impl.interceptor.CommandMetricsInterceptor}.
+ * 2. Bytes allocated by commands are tracked when the JVM supports per-thread allocation counters, see {@link #allocatedBytes()}.
+ * 3. The registry can be exposed through JMX, see {@link #registerMBean(String)}.
+ *
+ * Warning:
+ * 1. Allocated bytes are counted for the executing thread only, work handed to other threads is not included.
+ *
+ * @author VirtualCry
+ */
+@Slf4j
+public class CommandMetricsRegistry implements CommandMetricsMXBean {
+
+    public static final String      OBJECT_NAME_PREFIX = "io.thesf.swiftframework.activiti:type=CommandMetrics,name=";
+
+    private final Map<Class<?>, CommandMetrics>             commandMetrics = new ConcurrentHashMap<>();
+    private final com.sun.management.ThreadMXBean           threadMXBean;
+    private ObjectName                                      objectName;
+
+    public CommandMetricsRegistry() {
+        this(true);
+    }
+
+    public CommandMetricsRegistry(boolean trackAllocation) {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        this.threadMXBean = trackAllocation
+                && threadMXBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled()
+                ? (com.sun.management.ThreadMXBean) threadMXBean
+                : null;
+    }
+
+
+    /**
+     * Get bytes allocated by current thread so far.
+     *
+     * @return The bytes, or -1 if allocation is not tracked.
+     */
+    public long allocatedBytes() {
+        return threadMXBean != null ? threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1L;
+    }
+
+    /**
+     * Record one execution of the command.
+     *
+     * @param commandClass      class of the command
+     * @param latencyNanos      latency in nanoseconds
+     * @param allocatedBytes    bytes allocated by the executing thread, or negative if not tracked
+     * @param failed            whether the command threw
+     */
+    public void record(Class<?> commandClass, long latencyNanos, long allocatedBytes, boolean failed) {
+        CommandMetrics metrics = commandMetrics.get(commandClass);
+        if (metrics == null)
+            metrics = commandMetrics.computeIfAbsent(commandClass, key -> new CommandMetrics(key.getName()));
+        metrics.record(latencyNanos, allocatedBytes, failed);
+    }
+
+    /**
+     * Register the registry to the platform {@link MBeanServer}.
+     *
+     * @param name name of the registry, such as the name of the process engine
+     */
+    public synchronized void registerMBean(String name) {
+        if (this.objectName != null)
+            return;
+        try {
+            ObjectName objectName = new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (JMException ex) {
+            log.warn("Failed to register command metrics [" + name + "] to JMX.", ex);
+        }
+    }
+
+    /**
+     * Unregister the registry from the platform {@link MBeanServer}.
+     */
+    public synchronized void unregisterMBean() {
+        if (this.objectName == null)
+            return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+        } catch (JMException ex) {
+            log.warn("Failed to unregister command metrics [" + this.objectName + "] from JMX.", ex);
+        } finally {
+            this.objectName = null;
+        }
+    }
+
+    @Override
+    public boolean isAllocationTracked() {
+        return threadMXBean != null;
+    }
+
+    @Override
+    public List<String> getCommandNames() {
+        List<String> commandNames = new ArrayList<>();
+        commandMetrics.keySet().forEach(commandClass -> commandNames.add(commandClass.getName()));
+        Collections.sort(commandNames);
+        return commandNames;
+    }
+
+    @Override
+    public Map<String, CommandMetricsSnapshot> getSnapshots() {
+        Map<String, CommandMetricsSnapshot> snapshots = new TreeMap<>();
+        commandMetrics.values().forEach(metrics -> {
+            CommandMetricsSnapshot snapshot = metrics.snapshot();
+            snapshots.put(snapshot.getCommandName(), snapshot);
+        });
+        return snapshots;
+    }
+
+    @Override
+    public CommandMetricsSnapshot getSnapshot(String commandName) {
+        return commandMetrics.entrySet().stream()
+                .filter(entry -> entry.getKey().getName().equals(commandName))
+                .map(entry -> entry.getValue().snapshot())
+                .findFirst()
+                .orElse(null);
+    }
+
+    @Override
+    public void reset() {
+        commandMetrics.values().forEach(CommandMetrics::reset);
+    }
+}
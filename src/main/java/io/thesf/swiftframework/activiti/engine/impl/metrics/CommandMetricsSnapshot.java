@@ -0,0 +1,43 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Metrics of one command class at a moment.
+ *
+ * 1. Latencies are in nanoseconds, from entering to leaving the command executor, including flush and commit.
+ * 2. Allocated bytes are those allocated by the executing thread, and are all 0 if allocation is not tracked.
+ *
+ * @author VirtualCry
+ */
+@AllArgsConstructor
+@Getter
+public class CommandMetricsSnapshot {
+
+    private final String        commandName;
+    private final long          count;
+    private final long          failedCount;
+    private final double        meanNanos;
+    private final long          p50Nanos;
+    private final long          p90Nanos;
+    private final long          p99Nanos;
+    private final long          p999Nanos;
+    private final long          maxNanos;
+    private final double        meanAllocatedBytes;
+    private final long          p99AllocatedBytes;
+    private final long          maxAllocatedBytes;
+    private final long          totalAllocatedBytes;
+}
@@ -0,0 +1,140 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative long values, with buckets in the way of {@literal HdrHistogram}.
+ *
+ * 1. Values below {@link #SUB_BUCKET_COUNT} have a bucket each. Above, every power of two is split into
+ * {@code SUB_BUCKET_COUNT / 2} linear buckets, so the relative error of a recorded value is at most about 3%.
+ * 2. Recording is lock free: one increment of a bucket, one of the sum, and a compare-and-set of the max when it grows.
+ *
+ * Warning:
+ * 1. {@link #snapshot()} is not atomic with recording, so a snapshot taken under load may be off by the values in flight.
+ *
+ * @author VirtualCry
+ */
+public class Histogram {
+
+    public static final int         SUB_BUCKET_BITS = 6;
+    public static final int         SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int        SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+    private static final int        BUCKET_COUNT = SUB_BUCKET_COUNT + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT;
+
+    private final AtomicLongArray   counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder         sum = new LongAdder();
+    private final AtomicLong        max = new AtomicLong();
+
+
+    /**
+     * Record a value. Negative values are recorded as zero.
+     *
+     * @param value value
+     */
+    public void record(long value) {
+        long recordValue = Math.max(value, 0L);
+        counts.incrementAndGet(indexOf(recordValue));
+        sum.add(recordValue);
+        long currentMax;
+        while (recordValue > (currentMax = max.get()) && !max.compareAndSet(currentMax, recordValue)) {
+            // retry
+        }
+    }
+
+    /**
+     * Take a snapshot of recorded values.
+     *
+     * @return The {@link Snapshot}.
+     */
+    public Snapshot snapshot() {
+        long[] snapshotCounts = new long[BUCKET_COUNT];
+        long totalCount = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshotCounts[i] = counts.get(i);
+            totalCount += snapshotCounts[i];
+        }
+        return new Snapshot(snapshotCounts, totalCount, sum.sum(), max.get());
+    }
+
+    /**
+     * Clear recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            counts.set(i, 0L);
+        sum.reset();
+        max.set(0L);
+    }
+
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT)
+            return (int) value;
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS + 1;
+        return SUB_BUCKET_COUNT + (exponent - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT + (int) (value >>> shift) - SUB_BUCKET_HALF_COUNT;
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+        int exponent = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + SUB_BUCKET_BITS;
+        int shift = exponent - SUB_BUCKET_BITS + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+
+    /**
+     * Recorded values at a moment.
+     */
+    @AllArgsConstructor
+    public static class Snapshot {
+
+        private final long[]            counts;
+        @Getter private final long      count;
+        @Getter private final long      sum;
+        @Getter private final long      max;
+
+        public double getMean() {
+            return count == 0L ? 0D : (double) sum / count;
+        }
+
+        /**
+         * Get the value at the percentile, which is the highest value of its bucket but never above the max.
+         *
+         * @param percentile percentile, from 0 to 100
+         * @return The value, or 0 if nothing recorded.
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0L)
+                return 0L;
+            long countAtPercentile = Math.max((long) Math.ceil(Math.min(percentile, 100D) / 100D * count), 1L);
+            long totalCount = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                totalCount += counts[i];
+                if (totalCount >= countAtPercentile)
+                    return Math.min(highestValueOf(i), max);
+            }
+            return max;
+        }
+    }
+}
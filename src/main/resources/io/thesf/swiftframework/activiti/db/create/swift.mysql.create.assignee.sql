@@ -0,0 +1,21 @@
+create table ACT_SWIFT_TASK_ASSIGNEE (
+    ID_ varchar(64) not null,
+    PROC_INST_ID_ varchar(64) not null,
+    TASK_DEF_KEY_ varchar(255) not null,
+    ASSIGNEE_ varchar(4000),
+    primary key (ID_)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE utf8_bin;
+
+create index ACT_IDX_SWIFT_ASSIGNEE_PROC on ACT_SWIFT_TASK_ASSIGNEE(PROC_INST_ID_, TASK_DEF_KEY_);
+
+create table ACT_SWIFT_TASK_ASSIGNEE_USER (
+    ASSIGNEE_ varchar(255) not null,
+    DEF_ID_ varchar(64) not null,
+    PROC_INST_ID_ varchar(64) not null,
+    TASK_DEF_KEY_ varchar(255) not null,
+    primary key (ASSIGNEE_, DEF_ID_)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE utf8_bin;
+
+create index ACT_IDX_SWIFT_ASSIGNEE_USER_ORDER on ACT_SWIFT_TASK_ASSIGNEE_USER(ASSIGNEE_, PROC_INST_ID_, TASK_DEF_KEY_, DEF_ID_);
+create index ACT_IDX_SWIFT_ASSIGNEE_USER_DEF on ACT_SWIFT_TASK_ASSIGNEE_USER(DEF_ID_);
+create index ACT_IDX_SWIFT_ASSIGNEE_USER_PROC on ACT_SWIFT_TASK_ASSIGNEE_USER(PROC_INST_ID_);
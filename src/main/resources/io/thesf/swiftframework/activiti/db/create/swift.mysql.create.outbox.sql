@@ -0,0 +1,16 @@
+create table ACT_SWIFT_RECORD_OUTBOX (
+    ID_ varchar(64) not null,
+    PROC_INST_ID_ varchar(64) not null,
+    SEQ_ bigint not null,
+    PAYLOAD_TYPE_ varchar(255) not null,
+    PAYLOAD_ longtext not null,
+    ORDER_ integer not null,
+    CREATE_TIME_ timestamp(3) not null,
+    CLAIM_ID_ varchar(64) not null,
+    CLAIM_TIME_ timestamp(3) not null,
+    primary key (ID_)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COLLATE utf8_bin;
+
+create index ACT_IDX_SWIFT_OUTBOX_SEQ on ACT_SWIFT_RECORD_OUTBOX(PROC_INST_ID_, SEQ_);
+create index ACT_IDX_SWIFT_OUTBOX_CLAIM_TIME on ACT_SWIFT_RECORD_OUTBOX(CLAIM_TIME_);
+create index ACT_IDX_SWIFT_OUTBOX_CLAIM on ACT_SWIFT_RECORD_OUTBOX(CLAIM_ID_, PROC_INST_ID_);
@@ -0,0 +1,109 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.thesf.swiftframework.activiti.engine.impl.bpmn.behavior;
+
+import io.thesf.swiftframework.activiti.cache.LocalCacheManagerImpl;
+import io.thesf.swiftframework.activiti.cache.data.TaskAssigneeDefinitionCacheManager;
+import io.thesf.swiftframework.activiti.cache.data.TaskAssigneeDefinitionCacheManagerImpl;
+import io.thesf.swiftframework.activiti.engine.impl.interceptor.SpringCommandContextFactory;
+import io.thesf.swiftframework.activiti.spring.bpmn.parser.SwiftDefaultActivityBehaviorFactory;
+import org.activiti.engine.ProcessEngine;
+import org.activiti.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.activiti.engine.runtime.Job;
+import org.activiti.engine.runtime.ProcessInstance;
+import org.activiti.engine.task.Task;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test of {@link InnerAssignParallelMultiInstanceBehavior} creating instances in chunks.
+ *
+ * @author VirtualCry
+ */
+public class InnerAssignParallelMultiInstanceBehaviorTest {
+
+    private static final int                CHUNK_SIZE = 2;
+    private static final List<String>       USERS = Arrays.asList("u0", "u1", "u2", "u3", "u4");
+
+    private GenericApplicationContext       ctx;
+    private ProcessEngine                   processEngine;
+
+    @Before
+    public void setUp() {
+        ctx = new GenericApplicationContext();
+        ctx.registerBean(TaskAssigneeDefinitionCacheManager.class,
+                () -> new TaskAssigneeDefinitionCacheManagerImpl(new LocalCacheManagerImpl<>()));
+        ctx.registerBean(SpringCommandContextFactory.class);
+        ctx.refresh();
+
+        SwiftDefaultActivityBehaviorFactory activityBehaviorFactory = new SwiftDefaultActivityBehaviorFactory();
+        activityBehaviorFactory.setMultiInstanceChunkSize(CHUNK_SIZE);
+
+        StandaloneInMemProcessEngineConfiguration configuration = new StandaloneInMemProcessEngineConfiguration();
+        configuration.setJdbcUrl("jdbc:h2:mem:" + getClass().getSimpleName() + ";DB_CLOSE_DELAY=1000");
+        configuration.setActivityBehaviorFactory(activityBehaviorFactory);
+        configuration.setCustomJobHandlers(Collections.singletonList(new ContinueMultiInstanceChunkJobHandler()));
+        configuration.setCommandContextFactory(ctx.getBean(SpringCommandContextFactory.class));
+        configuration.setAsyncExecutorActivate(false);
+        processEngine = configuration.buildProcessEngine();
+
+        processEngine.getRepositoryService().createDeployment()
+                .addClasspathResource("io/thesf/swiftframework/activiti/engine/impl/bpmn/behavior/chunkedMultiInstance.bpmn20.xml")
+                .deploy();
+    }
+
+    @After
+    public void tearDown() {
+        processEngine.close();
+        ctx.close();
+    }
+
+    @Test
+    public void testChunkJobsCreateRemainingInstances() {
+        ProcessInstance processInstance = processEngine.getRuntimeService()
+                .startProcessInstanceByKey("chunkedMultiInstance", Collections.singletonMap("users", USERS));
+
+        // Only the first chunk is created by the starting transaction
+        assertEquals(CHUNK_SIZE, this.findTasks(processInstance).size());
+        List<Job> jobs = processEngine.getManagementService().createJobQuery()
+                .processInstanceId(processInstance.getId())
+                .list();
+        assertEquals(2, jobs.size());
+
+        // Each chunk job creates and executes its instances
+        jobs.forEach(job -> processEngine.getManagementService().executeJob(job.getId()));
+        List<Task> tasks = this.findTasks(processInstance);
+        assertEquals(USERS, tasks.stream().map(Task::getAssignee).sorted().collect(Collectors.toList()));
+
+        // The activity completes once all instances complete
+        tasks.forEach(task -> processEngine.getTaskService().complete(task.getId()));
+        assertNull(processEngine.getRuntimeService().createProcessInstanceQuery()
+                .processInstanceId(processInstance.getId())
+                .singleResult());
+    }
+
+    private List<Task> findTasks(ProcessInstance processInstance) {
+        return processEngine.getTaskService().createTaskQuery()
+                .processInstanceId(processInstance.getId())
+                .list();
+    }
+}